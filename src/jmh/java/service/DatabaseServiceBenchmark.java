@@ -0,0 +1,110 @@
+package service;
+
+import model.Book;
+import model.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import util.DatabaseUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service calls through the real pool. Runs against whatever {@code -Ddb.url} names: by default an
+ * in-memory H2 database in PostgreSQL mode that is created and seeded here, or a local PostgreSQL
+ * (via {@code -Pjmh.dbUrl}) whose existing data is used as is. Only read paths are measured, since
+ * the borrow/return statements rely on PostgreSQL-only writable CTEs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseServiceBenchmark {
+    private static final int SEED_BOOKS = 10_000;
+    private static final int SEED_MEMBERS = 1_000;
+
+    private final DatabaseService direct = new DatabaseService();
+    private final DatabaseService cached = new CachingDatabaseService(1_000, 30, TimeUnit.SECONDS);
+
+    @Setup
+    public void setUp() throws SQLException {
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            if ("H2".equals(conn.getMetaData().getDatabaseProductName())) {
+                seed(conn);
+            }
+        }
+    }
+
+    private static void seed(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS books (code VARCHAR(20) PRIMARY KEY, title VARCHAR(255), author VARCHAR(255))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS members (id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "name VARCHAR(255), email VARCHAR(255) UNIQUE, join_date DATE)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS borrowings (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "book_code VARCHAR(20), member_id INT, borrow_date DATE, return_date DATE)");
+            stmt.execute("DELETE FROM borrowings");
+            stmt.execute("DELETE FROM books");
+            stmt.execute("DELETE FROM members");
+        }
+        try (PreparedStatement books = conn.prepareStatement("INSERT INTO books (code, title, author) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < SEED_BOOKS; i++) {
+                books.setString(1, Integer.toString(100_000 + i));
+                books.setString(2, "Benchmark Title " + i);
+                books.setString(3, "Author " + (i % 500));
+                books.addBatch();
+            }
+            books.executeBatch();
+        }
+        try (PreparedStatement members = conn.prepareStatement(
+                "INSERT INTO members (id, name, email, join_date) VALUES (?, ?, ?, CURRENT_DATE)")) {
+            for (int i = 1; i <= SEED_MEMBERS; i++) {
+                members.setInt(1, i);
+                members.setString(2, "Member " + i);
+                members.setString(3, "member" + i + "@example.com");
+                members.addBatch();
+            }
+            members.executeBatch();
+        }
+    }
+
+    @Benchmark
+    public Page<Book> firstBooksPage() throws SQLException {
+        return direct.getBooksPage(null, null, 50);
+    }
+
+    @Benchmark
+    public Page<Book> deepBooksPage() throws SQLException {
+        return direct.getBooksPage("105000", null, 50);
+    }
+
+    @Benchmark
+    public Page<Book> firstBooksPageCached() throws SQLException {
+        return cached.getBooksPage(null, null, 50);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Page<Book> firstBooksPageContended() throws SQLException {
+        return direct.getBooksPage(null, null, 50);
+    }
+
+    @Benchmark
+    public List<Book> allBooks() throws SQLException {
+        return direct.getAllBooks();
+    }
+}
@@ -0,0 +1,125 @@
+package servlet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import service.DatabaseService;
+
+import util.FormBodyDecoder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * PUT body decoding, old and new, each reading the body from a stream and fetching both fields,
+ * plus {@code MemberServlet.isValidEmail}, which is private and reached through a method handle.
+ * The {@code legacy} benchmarks run a copy of the {@code getReader().lines()} and
+ * {@code parseFormData} code the servlets used before {@link FormBodyDecoder}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormBenchmark {
+    private static final MethodHandle MEMBER_IS_VALID_EMAIL;
+
+    static {
+        try {
+            MethodHandles.Lookup members = MethodHandles.privateLookupIn(MemberServlet.class, MethodHandles.lookup());
+            MEMBER_IS_VALID_EMAIL = members.findVirtual(MemberServlet.class, "isValidEmail",
+                    MethodType.methodType(boolean.class, String.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // isValidEmail does not touch the database; the service is only there to satisfy the constructor.
+    private final MemberServlet memberServlet = new MemberServlet(new DatabaseService());
+
+    public String simpleBody = "title=Dune&author=Frank%20Herbert";
+    public String encodedBody = "title=Les+Mis%C3%A9rables+%E2%80%94+Tome+I&author=Victor+Hugo+%26+Co";
+    public String validEmail = "firstname.lastname+library@example.co.uk";
+    public String invalidEmail = "not-an-email-address-but-fairly-long-anyway";
+
+    private final byte[] simpleBytes = simpleBody.getBytes(StandardCharsets.UTF_8);
+    private final byte[] encodedBytes = encodedBody.getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public void legacySimple(Blackhole blackhole) throws IOException {
+        legacyTitleAndAuthor(simpleBytes, blackhole);
+    }
+
+    @Benchmark
+    public void legacyEncoded(Blackhole blackhole) throws IOException {
+        legacyTitleAndAuthor(encodedBytes, blackhole);
+    }
+
+    @Benchmark
+    public void decoderSimple(Blackhole blackhole) throws IOException {
+        decoderTitleAndAuthor(simpleBytes, blackhole);
+    }
+
+    @Benchmark
+    public void decoderEncoded(Blackhole blackhole) throws IOException {
+        decoderTitleAndAuthor(encodedBytes, blackhole);
+    }
+
+    @Benchmark
+    public boolean isValidEmail() throws Throwable {
+        return (boolean) MEMBER_IS_VALID_EMAIL.invoke(memberServlet, validEmail);
+    }
+
+    @Benchmark
+    public boolean isValidEmailRejects() throws Throwable {
+        return (boolean) MEMBER_IS_VALID_EMAIL.invoke(memberServlet, invalidEmail);
+    }
+
+    private static void legacyTitleAndAuthor(byte[] body, Blackhole blackhole) throws IOException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+        Map<String, String> params = parseFormData(reader.lines().collect(Collectors.joining()));
+        blackhole.consume(params.get("title"));
+        blackhole.consume(params.get("author"));
+    }
+
+    private static void decoderTitleAndAuthor(byte[] body, Blackhole blackhole) throws IOException {
+        FormBodyDecoder params = FormBodyDecoder.read(new ByteArrayInputStream(body), body.length,
+                FormBodyDecoder.DEFAULT_MAX_BYTES);
+        blackhole.consume(params.get("title"));
+        blackhole.consume(params.get("author"));
+    }
+
+    private static Map<String, String> parseFormData(String formData) {
+        Map<String, String> params = new HashMap<>();
+        String[] pairs = formData.split("&");
+        for (String pair : pairs) {
+            String[] keyValue = pair.split("=");
+            if (keyValue.length == 2) {
+                String key = URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8);
+                String value = URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8);
+                params.put(key, value);
+            }
+        }
+        return params;
+    }
+}
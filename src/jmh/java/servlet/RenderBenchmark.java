@@ -0,0 +1,133 @@
+package servlet;
+
+import model.Book;
+import model.Borrowing;
+import model.Member;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.Template;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The row-rendering loops behind each list page's {@code doGet}, and template compilation and
+ * rendering. Reads the real templates from {@code src/main/webapp/templates}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+    private static final Path TEMPLATES = Path.of("src/main/webapp/templates");
+
+    @Param({"50", "500"})
+    public int rows;
+
+    private String booksSource;
+    private Template booksTemplate;
+    private Template membersTemplate;
+    private Template borrowingsTemplate;
+    private List<Book> books;
+    private List<Member> members;
+    private List<Borrowing> borrowings;
+    private Map<String, String> values;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setUp() throws IOException {
+        booksSource = Files.readString(TEMPLATES.resolve("books.html"));
+        booksTemplate = Template.compile("books.html", booksSource);
+        membersTemplate = Template.compile("members.html", Files.readString(TEMPLATES.resolve("members.html")));
+        borrowingsTemplate = Template.compile("borrowings.html", Files.readString(TEMPLATES.resolve("borrowings.html")));
+
+        books = new ArrayList<>();
+        members = new ArrayList<>();
+        borrowings = new ArrayList<>();
+        LocalDate date = LocalDate.of(2024, 3, 1);
+        for (int i = 0; i < rows; i++) {
+            books.add(new Book(Integer.toString(1000 + i), "The Title of Book <" + i + ">", "Author & Co " + i));
+            members.add(new Member(i, "Member Name " + i, "member" + i + "@example.com", date));
+            borrowings.add(new Borrowing(Integer.toString(1000 + i), i, date, i % 2 == 0 ? null : date.plusDays(14)));
+        }
+        values = Map.of("messages", "<div class=\"success\">Book added successfully</div>",
+                "pagination", "<div class=\"pagination\"><a href=\"/books?after=1049&amp;limit=50\">Next &raquo;</a></div>");
+        out = new ByteArrayOutputStream(256 * 1024);
+    }
+
+    @Benchmark
+    public int renderBooks() throws IOException {
+        out.reset();
+        TableWriter table = new TableWriter(out, booksTemplate, "books", values, false);
+        for (Book book : books) {
+            table.row(book.code(), book.title(), book.author());
+        }
+        table.finish();
+        return out.size();
+    }
+
+    @Benchmark
+    public int renderMembers() throws IOException {
+        out.reset();
+        TableWriter table = new TableWriter(out, membersTemplate, "members", values, false);
+        for (Member member : members) {
+            table.row(member.getId(), member.getName(), member.getEmail(), member.getJoinDate());
+        }
+        table.finish();
+        return out.size();
+    }
+
+    @Benchmark
+    public int renderBorrowings() throws IOException {
+        out.reset();
+        TableWriter table = new TableWriter(out, borrowingsTemplate, "borrowings", values, false);
+        for (Borrowing borrowing : borrowings) {
+            table.row(borrowing.bookCode(), borrowing.memberId(), borrowing.borrowDate(),
+                    borrowing.returnDate() != null ? borrowing.returnDate() : "Not Returned");
+        }
+        table.finish();
+        return out.size();
+    }
+
+    @Benchmark
+    public Template compileTemplate() {
+        return Template.compile("books.html", booksSource);
+    }
+
+    /**
+     * Baseline: how the servlets filled templates before they were compiled, by re-reading the
+     * file and replacing placeholders in a String.
+     */
+    @Benchmark
+    public int loadAndReplaceTemplate() throws IOException {
+        StringBuilder rowsHtml = new StringBuilder();
+        for (Book book : books) {
+            rowsHtml.append("<tr><td>").append(Html.escape(book.code())).append("</td><td>")
+                    .append(Html.escape(book.title())).append("</td><td>")
+                    .append(Html.escape(book.author())).append("</td></tr>\n");
+        }
+        String html = Files.readString(TEMPLATES.resolve("books.html"))
+                .replace("${messages}", values.get("messages"))
+                .replace("${books}", rowsHtml.toString())
+                .replace("${pagination}", values.get("pagination"));
+        return html.length();
+    }
+}
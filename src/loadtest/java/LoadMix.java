@@ -0,0 +1,109 @@
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Weighted request mix, e.g. {@code books=70,borrow=10,return=10,member=10}. Book codes and member
+ * ids are drawn uniformly from the seeded ranges.
+ */
+final class LoadMix {
+
+    enum Operation {
+        BOOKS("books"), BORROW("borrow"), RETURN("return"), MEMBER("member");
+
+        final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final String baseUrl;
+    private final List<String> bookCodes;
+    private final List<Integer> memberIds;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    LoadMix(String baseUrl, String spec, List<String> bookCodes, List<Integer> memberIds) {
+        this.baseUrl = baseUrl;
+        this.bookCodes = bookCodes;
+        this.memberIds = memberIds;
+
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            String[] keyValue = part.trim().split("=");
+            Operation operation = null;
+            for (Operation candidate : Operation.values()) {
+                if (candidate.key.equals(keyValue[0].trim())) {
+                    operation = candidate;
+                }
+            }
+            if (operation == null || keyValue.length != 2) {
+                throw new IllegalArgumentException("Bad mix entry '" + part + "'; expected e.g. books=70,borrow=10");
+            }
+            weights.put(operation, Integer.parseInt(keyValue[1].trim()));
+        }
+
+        List<Operation> operations = new ArrayList<>();
+        List<Integer> cumulative = new ArrayList<>();
+        int sum = 0;
+        for (Map.Entry<Operation, Integer> entry : weights.entrySet()) {
+            if (entry.getValue() > 0) {
+                sum += entry.getValue();
+                operations.add(entry.getKey());
+                cumulative.add(sum);
+            }
+        }
+        if (sum == 0) {
+            throw new IllegalArgumentException("Mix '" + spec + "' has no positive weights");
+        }
+        this.operations = operations.toArray(new Operation[0]);
+        this.cumulativeWeights = cumulative.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    List<Operation> operations() {
+        return List.of(operations);
+    }
+
+    Operation pick(SplittableRandom random) {
+        int ticket = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (ticket < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    HttpRequest request(Operation operation, SplittableRandom random) {
+        String bookCode = bookCodes.get(random.nextInt(bookCodes.size()));
+        int memberId = memberIds.get(random.nextInt(memberIds.size()));
+        HttpRequest.Builder builder = HttpRequest.newBuilder().timeout(TIMEOUT)
+                // JSON status bodies instead of redirects, so the status code says what happened.
+                .header("Accept", "application/json");
+        return switch (operation) {
+            case BOOKS -> builder.uri(URI.create(baseUrl + "/books?limit=50")).GET().build();
+            case BORROW -> form(builder.uri(URI.create(baseUrl + "/borrow")),
+                    "bookCode=" + bookCode + "&memberId=" + memberId).build();
+            case RETURN -> form(builder.uri(URI.create(baseUrl + "/borrow/return")), "bookCode=" + bookCode).build();
+            case MEMBER -> builder.uri(URI.create(baseUrl + "/members/" + memberId))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .PUT(HttpRequest.BodyPublishers.ofString(
+                            "name=Load+Test+" + memberId + "+" + random.nextInt(1000)
+                                    + "&email=loadtest-m" + memberId + "%40example.com"))
+                    .build();
+        };
+    }
+
+    private static HttpRequest.Builder form(HttpRequest.Builder builder, String body) {
+        return builder.header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+    }
+}
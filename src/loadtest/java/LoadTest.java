@@ -0,0 +1,233 @@
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.apache.catalina.startup.Tomcat;
+import util.DatabaseUtil;
+import util.LatencyHistogram;
+import util.MigrationRunner;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load test: boots the real server on a free port, seeds a database and drives it at a
+ * fixed arrival rate with {@link OpenLoadGenerator}.
+ *
+ * <pre>
+ * ./gradlew loadTest [-Ploadtest.rate=200] [-Ploadtest.duration=60] [-Ploadtest.warmup=10]
+ *                    [-Ploadtest.mix=books=70,borrow=10,return=10,member=10]
+ *                    [-Pdb.url=jdbc:postgresql://localhost/library_load -Pdb.user=... -Pdb.password=...]
+ * </pre>
+ *
+ * Without a database URL an embedded PostgreSQL is started in a temporary directory. Against an
+ * existing database the seed rows use book codes from {@value #FIRST_BOOK_CODE} and
+ * {@code loadtest-N@example.com} members, so run it on a scratch database.
+ */
+public class LoadTest {
+
+    private static final int FIRST_BOOK_CODE = 800000;
+
+    public static void main(String[] args) throws Exception {
+        double rate = Double.parseDouble(System.getProperty("loadtest.rate", "200"));
+        long duration = Long.parseLong(System.getProperty("loadtest.duration", "60"));
+        long warmup = Long.parseLong(System.getProperty("loadtest.warmup", "10"));
+        String mixSpec = System.getProperty("loadtest.mix", "books=70,borrow=10,return=10,member=10");
+        int books = Integer.parseInt(System.getProperty("loadtest.books", "10000"));
+        int members = Integer.parseInt(System.getProperty("loadtest.members", "1000"));
+        int maxInFlight = Integer.parseInt(System.getProperty("loadtest.maxInFlight", "2000"));
+        String docBase = Paths.get(System.getProperty("loadtest.webapp", "src/main/webapp")).toAbsolutePath().toString();
+
+        EmbeddedPostgres embedded = null;
+        if (System.getProperty("db.url", System.getenv("DB_URL")) == null) {
+            embedded = EmbeddedPostgres.builder().start();
+            // Must be set before DatabaseUtil is first touched; it reads them once.
+            System.setProperty("db.url", embedded.getJdbcUrl("postgres", "postgres"));
+            System.setProperty("db.user", "postgres");
+            System.setProperty("db.password", "");
+            System.out.println("Started embedded PostgreSQL on port " + embedded.getPort());
+        }
+
+        Tomcat tomcat = null;
+        try (Connection connection = DriverManager.getConnection(System.getProperty("db.url", System.getenv("DB_URL")),
+                System.getProperty("db.user", System.getenv("DB_USER")),
+                System.getProperty("db.password", System.getenv("DB_PASSWORD")))) {
+            createSchema(connection);
+            List<String> bookCodes = seedBooks(connection, books);
+            List<Integer> memberIds = seedMembers(connection, members);
+
+            tomcat = Main.start(0, docBase);
+            String baseUrl = "http://localhost:" + tomcat.getConnector().getLocalPort();
+            System.out.printf("Server at %s; %d books, %d members%n", baseUrl, bookCodes.size(), memberIds.size());
+
+            HttpClient client = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .executor(Executors.newFixedThreadPool(8))
+                    .build();
+            LoadMix mix = new LoadMix(baseUrl, mixSpec, bookCodes, memberIds);
+            OpenLoadGenerator generator = new OpenLoadGenerator(client, mix, maxInFlight);
+
+            if (warmup > 0) {
+                System.out.printf("Warming up for %ds at %.0f req/s%n", warmup, rate);
+                generator.run(rate, warmup, TimeUnit.SECONDS, null);
+            }
+
+            Map<LoadMix.Operation, OpenLoadGenerator.Stats> stats = new EnumMap<>(LoadMix.Operation.class);
+            for (LoadMix.Operation operation : mix.operations()) {
+                stats.put(operation, new OpenLoadGenerator.Stats());
+            }
+            System.out.printf("Measuring for %ds at %.0f req/s (%s)%n", duration, rate, mixSpec);
+            long started = System.nanoTime();
+            generator.run(rate, duration, TimeUnit.SECONDS, stats);
+            double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+
+            report(stats, elapsedSeconds, rate, generator.getSkipped());
+            saveServerMetrics(client, baseUrl);
+        } finally {
+            if (tomcat != null) {
+                tomcat.stop();
+                tomcat.destroy();
+            }
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+        // The pool and executors are non-daemon; nothing else needs to finish.
+        System.exit(0);
+    }
+
+    private static void createSchema(Connection connection) throws SQLException, IOException {
+        // The same runner Main.start uses; running it first lets the seed data go in before the server starts.
+        new MigrationRunner(DatabaseUtil.getDataSource(), "db/migration").migrate();
+        try (Statement statement = connection.createStatement()) {
+            // Start from a clean slate so BORROW/RETURN see a predictable mix of outcomes.
+            statement.execute("DELETE FROM borrowings WHERE book_code IN "
+                    + "(SELECT code FROM books WHERE code >= '" + FIRST_BOOK_CODE + "')");
+        }
+    }
+
+    private static List<String> seedBooks(Connection connection, int count) throws SQLException {
+        List<String> codes = new ArrayList<>(count);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO books (code, title, author) VALUES (?, ?, ?) ON CONFLICT (code) DO NOTHING")) {
+            for (int i = 0; i < count; i++) {
+                String code = String.valueOf(FIRST_BOOK_CODE + i);
+                codes.add(code);
+                insert.setString(1, code);
+                insert.setString(2, "Load Test Volume " + i);
+                insert.setString(3, "Author " + (i % 500));
+                insert.addBatch();
+                if (i % 1000 == 999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        return codes;
+    }
+
+    private static List<Integer> seedMembers(Connection connection, int count) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO members (name, email) VALUES (?, ?) ON CONFLICT (email) DO NOTHING")) {
+            for (int i = 0; i < count; i++) {
+                insert.setString(1, "Load Test " + i);
+                insert.setString(2, "loadtest-" + i + "@example.com");
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        List<Integer> ids = new ArrayList<>(count);
+        try (Statement select = connection.createStatement();
+             ResultSet rs = select.executeQuery("SELECT id FROM members WHERE email LIKE 'loadtest-%@example.com'")) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    private static void report(Map<LoadMix.Operation, OpenLoadGenerator.Stats> stats, double elapsedSeconds,
+                               double offeredRate, long skipped) throws IOException {
+        LatencyHistogram all = new LatencyHistogram();
+        System.out.println();
+        System.out.printf("%-8s %8s %8s %8s %8s %8s %9s %9s %9s %9s %9s%n", "op", "count", "ok", "4xx", "503",
+                "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<LoadMix.Operation, OpenLoadGenerator.Stats> entry : stats.entrySet()) {
+            OpenLoadGenerator.Stats s = entry.getValue();
+            all.add(s.responseTime);
+            printRow(entry.getKey().key, s.responseTime, s.count(OpenLoadGenerator.Outcome.OK),
+                    s.count(OpenLoadGenerator.Outcome.REJECTED), s.count(OpenLoadGenerator.Outcome.SHED),
+                    s.count(OpenLoadGenerator.Outcome.ERROR));
+        }
+        long ok = 0, rejected = 0, shed = 0, errors = 0;
+        for (OpenLoadGenerator.Stats s : stats.values()) {
+            ok += s.count(OpenLoadGenerator.Outcome.OK);
+            rejected += s.count(OpenLoadGenerator.Outcome.REJECTED);
+            shed += s.count(OpenLoadGenerator.Outcome.SHED);
+            errors += s.count(OpenLoadGenerator.Outcome.ERROR);
+        }
+        printRow("total", all, ok, rejected, shed, errors);
+
+        System.out.println();
+        System.out.printf("Offered %.1f req/s, completed %.1f req/s (%.1f successful) over %.1fs%n",
+                offeredRate, all.getCount() / elapsedSeconds, (ok + rejected) / elapsedSeconds, elapsedSeconds);
+        if (skipped > 0) {
+            System.out.printf("%d requests not sent: client reached loadtest.maxInFlight%n", skipped);
+        }
+        System.out.println("Latencies are measured from each request's scheduled start (open model).");
+
+        Path out = Paths.get("build", "reports", "loadtest");
+        Files.createDirectories(out);
+        for (Map.Entry<LoadMix.Operation, OpenLoadGenerator.Stats> entry : stats.entrySet()) {
+            writeDistribution(out.resolve(entry.getKey().key + ".txt"), entry.getValue());
+        }
+        System.out.println("Percentile distributions written to " + out.toAbsolutePath());
+    }
+
+    private static void saveServerMetrics(HttpClient client, String baseUrl) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/metrics")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        Path file = Paths.get("build", "reports", "loadtest", "server-metrics.txt");
+        Files.writeString(file, response.body(), StandardCharsets.UTF_8);
+        System.out.println("Server metrics written to " + file.toAbsolutePath());
+    }
+
+    private static void printRow(String name, LatencyHistogram h, long ok, long rejected, long shed, long errors) {
+        System.out.printf("%-8s %8d %8d %8d %8d %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, h.getCount(), ok,
+                rejected, shed, errors, millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(90)),
+                millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)), millis(h.getMax()));
+    }
+
+    private static void writeDistribution(Path file, OpenLoadGenerator.Stats stats) throws IOException {
+        double[] percentiles = {0, 10, 25, 50, 75, 90, 95, 99, 99.5, 99.9, 99.99, 100};
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            writer.println("percentile\tresponse_ms\tservice_ms");
+            for (double p : percentiles) {
+                writer.printf("%.2f\t%.3f\t%.3f%n", p, millis(stats.responseTime.getValueAtPercentile(p)),
+                        millis(stats.serviceTime.getValueAtPercentile(p)));
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
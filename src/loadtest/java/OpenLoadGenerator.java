@@ -0,0 +1,126 @@
+import util.LatencyHistogram;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load: requests are issued on a fixed schedule whether or not earlier ones have
+ * answered, and each latency is measured from the request's scheduled start. A stalled server
+ * therefore shows up as queueing delay in the percentiles instead of silently lowering the offered
+ * rate (coordinated omission). Service time, measured from the actual send, is kept alongside.
+ */
+final class OpenLoadGenerator {
+
+    enum Outcome {
+        OK, REJECTED, SHED, ERROR
+    }
+
+    static final class Stats {
+        final LatencyHistogram responseTime = new LatencyHistogram();
+        final LatencyHistogram serviceTime = new LatencyHistogram();
+        final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+
+        Stats() {
+            for (Outcome outcome : Outcome.values()) {
+                outcomes.put(outcome, new LongAdder());
+            }
+        }
+
+        long count(Outcome outcome) {
+            return outcomes.get(outcome).sum();
+        }
+    }
+
+    private final HttpClient client;
+    private final LoadMix mix;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder skipped = new LongAdder();
+
+    OpenLoadGenerator(HttpClient client, LoadMix mix, int maxInFlight) {
+        this.client = client;
+        this.mix = mix;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Offers {@code rate} requests per second for {@code duration}, then waits for stragglers.
+     *
+     * @param stats where to record, or {@code null} to discard (warm-up)
+     */
+    void run(double rate, long duration, TimeUnit unit, Map<LoadMix.Operation, Stats> stats)
+            throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(42);
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long end = start + unit.toNanos(duration);
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+
+            LoadMix.Operation operation = mix.pick(random);
+            Stats target = stats != null ? stats.get(operation) : null;
+            if (inFlight.get() >= maxInFlight) {
+                // The client itself is saturated; count it instead of queueing without bound.
+                skipped.increment();
+                if (target != null) {
+                    target.outcomes.get(Outcome.ERROR).increment();
+                }
+                continue;
+            }
+
+            HttpRequest request = mix.request(operation, random);
+            long sentAt = System.nanoTime();
+            inFlight.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                long done = System.nanoTime();
+                inFlight.decrementAndGet();
+                if (target == null) {
+                    return;
+                }
+                target.responseTime.record(done - intended);
+                target.serviceTime.record(done - sentAt);
+                target.outcomes.get(classify(response, error)).increment();
+            });
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    long getSkipped() {
+        return skipped.sum();
+    }
+
+    private static Outcome classify(HttpResponse<?> response, Throwable error) {
+        if (error != null) {
+            return Outcome.ERROR;
+        }
+        int status = response.statusCode();
+        if (status == 503) {
+            return Outcome.SHED;
+        }
+        if (status >= 500) {
+            return Outcome.ERROR;
+        }
+        // 404/409 are business answers (already borrowed, nothing to return), not failures.
+        return status >= 400 ? Outcome.REJECTED : Outcome.OK;
+    }
+}
@@ -1,39 +1,215 @@
 import org.apache.catalina.Context;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+import service.BookSearchIndex;
+import service.CachingDatabaseService;
 import service.DatabaseService;
+import service.ExportTable;
+import service.MemberSuggestIndex;
 
 import servlet.*;
+import util.ConnectionPool;
+import util.DatabaseUtil;
+import util.DbExecutor;
+import util.Logger;
+import util.Metrics;
+import util.MigrationRunner;
+import util.TemplateEngine;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.List;
 
 public class Main {
+    private static final Logger LOG = Logger.getLogger(Main.class);
+
+    private static final String DEFAULT_DOC_BASE = "C:\\Users\\Admin\\Downloads\\Servlets\\Mziuri\\src\\main\\webapp";
+
+    public static void main(String[] args) throws LifecycleException, IOException, SQLException {
+        if (args.length > 0 && args[0].equals("rebuild-circulation-stats")) {
+            // Recovery: recompute the report aggregates from the full borrowings history, then exit.
+            DatabaseService.getInstance().rebuildCirculationStats();
+            LOG.info("Circulation statistics rebuilt");
+            DatabaseUtil.getDataSource().close();
+            return;
+        }
+        String docBase = System.getenv("WEBAPP_DIR") != null ? System.getenv("WEBAPP_DIR") : DEFAULT_DOC_BASE;
+        Tomcat tomcat = start(8080, docBase);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                tomcat.stop();
+            } catch (LifecycleException e) {
+                LOG.error("Error stopping Tomcat", e);
+            }
+            // Write queued borrows and returns while their connections can still be had.
+            DatabaseService.getInstance().close();
+            DatabaseUtil.getDataSource().close();
+        }, "shutdown"));
+        tomcat.getServer().await();
+    }
 
-    public static void main(String[] args) throws LifecycleException {
+    /**
+     * Configures and starts the server; returns once it is accepting requests. Port 0 picks a free
+     * port, readable from {@code tomcat.getConnector().getLocalPort()}.
+     */
+    public static Tomcat start(int port, String docBase) throws LifecycleException, IOException, SQLException {
         Tomcat tomcat = new Tomcat();
         tomcat.setBaseDir("tomcatSvr");
-        tomcat.setPort(8080);
+        tomcat.setPort(port);
+        tomcat.getConnector(); // creates the default HTTP connector
+        configureExecution(tomcat);
 
         String contextPath = "";
-        String docBase = "C:\\Users\\Admin\\Downloads\\Servlets\\Mziuri\\src\\main\\webapp";
 
         Context context = tomcat.addContext(contextPath, docBase);
 
+        TemplateEngine templates = new TemplateEngine(Paths.get(docBase, "templates"));
+        if (Boolean.parseBoolean(System.getenv("TEMPLATE_DEV_MODE"))) {
+            templates.watch();
+        }
+        context.addServletContainerInitializer(
+                (classes, servletContext) -> servletContext.setAttribute(TemplateEngine.CONTEXT_ATTRIBUTE, templates), null);
+
+        migrate();
         DatabaseService dbService = DatabaseService.getInstance();
 
+        Metrics metrics = Metrics.getDefault();
+        registerGauges(metrics, dbService);
+        FilterDef metricsFilter = new FilterDef();
+        metricsFilter.setFilterName("metricsFilter");
+        metricsFilter.setFilter(new MetricsFilter(metrics));
+        // Must be async-capable, or every request behind it loses async support and runs inline.
+        metricsFilter.setAsyncSupported("true");
+        context.addFilterDef(metricsFilter);
+        FilterMap metricsFilterMap = new FilterMap();
+        metricsFilterMap.setFilterName("metricsFilter");
+        metricsFilterMap.addURLPattern("/*");
+        context.addFilterMap(metricsFilterMap);
+
+        Tomcat.addServlet(context, "metricsServlet", new MetricsServlet(metrics));
+        context.addServletMappingDecoded("/metrics", "metricsServlet");
+
         Tomcat.addServlet(context, "homeServlet", new HomeServlet());
         context.addServletMappingDecoded("/home", "homeServlet");
 
-        Tomcat.addServlet(context, "borrowingServlet", new BorrowingServlet(dbService));
+        Tomcat.addServlet(context, "borrowingServlet", new BorrowingServlet(dbService)).setAsyncSupported(true);
         context.addServletMappingDecoded("/borrow/*", "borrowingServlet");
 
-        Tomcat.addServlet(context, "bookServlet", new BookServlet(dbService));
+        Tomcat.addServlet(context, "bookServlet", new BookServlet(dbService)).setAsyncSupported(true);
         context.addServletMappingDecoded("/books", "bookServlet");
         context.addServletMappingDecoded("/books/*", "bookServlet");
 
-        Tomcat.addServlet(context, "memberServlet", new MemberServlet(dbService));
+        Tomcat.addServlet(context, "bookImportServlet", new BookImportServlet(dbService));
+        context.addServletMappingDecoded("/books/import", "bookImportServlet");
+
+        BookSearchIndex searchIndex = new BookSearchIndex();
+        dbService.addCatalogListener(searchIndex);
+        try {
+            searchIndex.rebuild(dbService.getAllBooks());
+        } catch (SQLException e) {
+            LOG.error("Could not build the search index; it will fill as books are saved", e);
+        }
+        Tomcat.addServlet(context, "bookSearchServlet", new BookSearchServlet(searchIndex));
+        context.addServletMappingDecoded("/books/search", "bookSearchServlet");
+
+        Tomcat.addServlet(context, "memberServlet", new MemberServlet(dbService)).setAsyncSupported(true);
         context.addServletMappingDecoded("/members/*", "memberServlet");
 
+        MemberSuggestIndex suggestIndex = new MemberSuggestIndex();
+        dbService.addCatalogListener(suggestIndex);
+        try {
+            suggestIndex.rebuild(dbService.getAllMembers());
+        } catch (SQLException e) {
+            LOG.error("Could not build the member suggest index; it will fill as members are saved", e);
+        }
+        Tomcat.addServlet(context, "memberSuggestServlet", new MemberSuggestServlet(suggestIndex));
+        context.addServletMappingDecoded("/members/suggest", "memberSuggestServlet");
+
+        Tomcat.addServlet(context, "reportServlet", new ReportServlet(dbService)).setAsyncSupported(true);
+        context.addServletMappingDecoded("/reports", "reportServlet");
+
+        Tomcat.addServlet(context, "borrowingExportServlet", new ExportServlet(dbService, ExportTable.BORROWINGS));
+        context.addServletMappingDecoded("/borrow/export", "borrowingExportServlet");
+        Tomcat.addServlet(context, "bookExportServlet", new ExportServlet(dbService, ExportTable.BOOKS));
+        context.addServletMappingDecoded("/books/export", "bookExportServlet");
+        Tomcat.addServlet(context, "memberExportServlet", new ExportServlet(dbService, ExportTable.MEMBERS));
+        context.addServletMappingDecoded("/members/export", "memberExportServlet");
+
         tomcat.start();
-        tomcat.getConnector();
-        tomcat.getServer().await();
+        return tomcat;
+    }
+
+    /**
+     * Brings the schema up to date before anything queries it. With {@code DB_MIGRATE=false}, for
+     * databases managed elsewhere, nothing is applied but startup still fails while any script is
+     * missing: borrowing, {@code /reports} and the borrowings page depend on V1-V3.
+     */
+    private static void migrate() throws SQLException, IOException {
+        MigrationRunner migrations = new MigrationRunner(DatabaseUtil.getDataSource(), "db/migration");
+        if ("false".equalsIgnoreCase(System.getenv("DB_MIGRATE"))) {
+            List<String> pending = migrations.pending();
+            if (!pending.isEmpty()) {
+                throw new IllegalStateException("DB_MIGRATE=false but the schema lacks " + pending
+                        + "; apply them, or start once without DB_MIGRATE=false");
+            }
+            LOG.info("DB_MIGRATE=false, schema already up to date");
+            return;
+        }
+        migrations.migrate();
+        List<String> unindexed = migrations.verifyIndexOnlyLookups();
+        if (!unindexed.isEmpty()) {
+            LOG.warn("Lookups without an index-only plan: {}", unindexed);
+        }
+    }
+
+    private static void registerGauges(Metrics metrics, DatabaseService dbService) {
+        ConnectionPool pool = DatabaseUtil.getDataSource();
+        metrics.gauge("db_pool_connections_active", "Connections checked out of the pool.", pool::getActiveCount);
+        metrics.gauge("db_pool_connections_idle", "Open connections waiting in the pool.", pool::getIdleCount);
+        metrics.gauge("db_pool_connections_max", "Configured pool size.", pool::getMaxSize);
+        metrics.gauge("db_pool_waiting_threads", "Threads blocked waiting for a connection.", pool::getWaitingCount);
+        metrics.counter("db_pool_timeouts_total", "Connection requests that timed out.", pool::getTimeoutCount);
+        metrics.counter("db_pool_connections_created_total", "Connections opened.", pool::getCreatedCount);
+        metrics.counter("db_pool_leaks_total", "Connections reported as held past the leak threshold.", pool::getLeakCount);
+        metrics.gauge("db_executor_threads_active", "DB workers running a request.", DbExecutor::getActiveCount);
+        metrics.gauge("db_executor_queue_size", "Requests queued for a DB worker.", DbExecutor::getQueueSize);
+        metrics.gauge("db_executor_queue_capacity", "DB executor queue capacity.", DbExecutor::getQueueCapacity);
+        metrics.counter("db_executor_rejected_total", "Requests shed with 503 because the queue was full.",
+                DbExecutor::getRejectedCount);
+        metrics.gauge("db_inline_requests_active", "Requests handled inline in virtual-thread mode.",
+                AsyncDbServlet::getInlineActiveCount);
+        metrics.counter("db_inline_rejected_total", "Inline requests shed with 503 because the cap was reached.",
+                AsyncDbServlet::getInlineRejectedCount);
+        if (dbService instanceof CachingDatabaseService caching) {
+            caching.registerMetrics(metrics);
+        }
+    }
+
+    /**
+     * {@code EXECUTION_MODE=virtual} runs each request on its own virtual thread instead of Tomcat's
+     * platform thread pool. Virtual mode wins over the async hand-off to {@link DbExecutor}: handing a
+     * virtual thread's blocking work to a bounded platform pool would only reintroduce the limit
+     * virtual threads remove, so the servlets run inline and the executor sits idle. Left at that,
+     * nothing but the JDBC pool would bound the work in flight, and every request beyond the pool
+     * size would wait up to {@code DB_POOL_MAX_WAIT_MS} for a connection. So at most as many requests
+     * as the executor could hold (threads plus queue) run inline at once, and the rest get the same
+     * 503 a full queue gives. There is no per-request deadline in this mode. Run with
+     * {@code -Djdk.tracePinnedThreads=short} to report any carrier pinning.
+     */
+    private static void configureExecution(Tomcat tomcat) {
+        String mode = System.getenv("EXECUTION_MODE");
+        if (!"virtual".equalsIgnoreCase(mode)) {
+            LOG.info("Execution mode: platform threads");
+            return;
+        }
+        tomcat.getConnector().setProperty("useVirtualThreads", "true");
+        int inFlight = DbExecutor.getThreadCount() + DbExecutor.getQueueCapacity();
+        AsyncDbServlet.setAsyncEnabled(false);
+        AsyncDbServlet.setInlineLimit(inFlight);
+        LOG.info("Execution mode: virtual thread per request, handlers inline, up to {} at once "
+                + "on {} connections", inFlight, DatabaseUtil.getDataSource().getMaxSize());
     }
-}
\ No newline at end of file
+}
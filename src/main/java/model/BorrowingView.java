@@ -0,0 +1,11 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * A loan with the book title and member name joined in, as listed on the borrowings page. Title
+ * and name are {@code null} if the book or member row is gone.
+ */
+public record BorrowingView(long id, String bookCode, String bookTitle, int memberId, String memberName,
+                            LocalDate borrowDate, LocalDate returnDate) {
+}
@@ -0,0 +1,6 @@
+package model;
+
+import java.util.List;
+
+public record Page<T>(List<T> items, String firstKey, String lastKey, boolean hasPrevious, boolean hasNext) {
+}
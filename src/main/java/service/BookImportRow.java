@@ -0,0 +1,11 @@
+package service;
+
+/**
+ * One record of an import upload. {@code error} is set when the record could not be parsed.
+ */
+public record BookImportRow(long line, String code, String title, String author, String error) {
+
+    public static BookImportRow invalid(long line, String error) {
+        return new BookImportRow(line, null, null, null, error);
+    }
+}
@@ -0,0 +1,86 @@
+package service;
+
+import util.CsvReader;
+import util.FlatJson;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Pulls import records one at a time from an upload, so an import never holds more than one
+ * batch in memory.
+ */
+@FunctionalInterface
+public interface BookImportSource {
+
+    /**
+     * @return the next record, or {@code null} at end of input
+     */
+    BookImportRow next() throws IOException;
+
+    /**
+     * CSV with columns {@code code,title,author}. A header row naming those columns may reorder them.
+     */
+    static BookImportSource csv(Reader reader) {
+        CsvReader csv = new CsvReader(reader);
+        int[] columns = {0, 1, 2};
+        boolean[] first = {true};
+        return () -> {
+            while (true) {
+                List<String> record = csv.next();
+                if (record == null) {
+                    return null;
+                }
+                long line = csv.getRecordLine();
+                if (record.size() == 1 && record.get(0).isBlank()) {
+                    continue;
+                }
+                if (first[0]) {
+                    first[0] = false;
+                    List<String> header = record.stream().map(h -> h.trim().toLowerCase(Locale.ROOT)).toList();
+                    if (header.contains("code")) {
+                        columns[0] = header.indexOf("code");
+                        columns[1] = header.indexOf("title");
+                        columns[2] = header.indexOf("author");
+                        continue;
+                    }
+                }
+                return new BookImportRow(line, column(record, columns[0]), column(record, columns[1]),
+                        column(record, columns[2]), null);
+            }
+        };
+    }
+
+    /**
+     * One JSON object per line with {@code code}, {@code title} and {@code author} members.
+     */
+    static BookImportSource ndjson(Reader reader) {
+        BufferedReader lines = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        long[] lineNumber = {0};
+        return () -> {
+            String text;
+            while ((text = lines.readLine()) != null) {
+                lineNumber[0]++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                try {
+                    Map<String, String> object = FlatJson.parseObject(text);
+                    return new BookImportRow(lineNumber[0], object.get("code"), object.get("title"),
+                            object.get("author"), null);
+                } catch (IllegalArgumentException e) {
+                    return BookImportRow.invalid(lineNumber[0], "Malformed JSON: " + e.getMessage());
+                }
+            }
+            return null;
+        };
+    }
+
+    private static String column(List<String> record, int index) {
+        return index >= 0 && index < record.size() ? record.get(index).trim() : null;
+    }
+}
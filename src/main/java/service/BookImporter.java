@@ -0,0 +1,213 @@
+package service;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import util.DatabaseUtil;
+import util.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads books in batches, one transaction per batch, checking a pooled connection out only while
+ * a batch is written. With {@code COPY} each batch is streamed into a session temp table and moved
+ * into {@code books} with {@code ON CONFLICT DO NOTHING RETURNING code}, which tells exactly which
+ * rows were duplicates; the fallback uses a JDBC batch of the same insert. If a batch fails, its
+ * rows are retried one transaction each, so only the rows that cannot be written are reported
+ * failed.
+ */
+class BookImporter {
+    private static final Logger LOG = Logger.getLogger(BookImporter.class);
+    private static final int COPY_CHUNK_BYTES = 64 * 1024;
+
+    private final int batchSize;
+    private final boolean useCopy;
+
+    BookImporter(int batchSize, boolean useCopy) {
+        this.batchSize = batchSize;
+        this.useCopy = useCopy;
+    }
+
+    ImportReport run(BookImportSource source) throws SQLException, IOException {
+        boolean copy = useCopy && supportsCopy();
+        ImportReport report = new ImportReport(copy ? "copy" : "batch");
+        List<BookImportRow> batch = new ArrayList<>(batchSize);
+
+        BookImportRow row;
+        while ((row = source.next()) != null) {
+            report.received();
+            String problem = validate(row);
+            if (problem != null) {
+                report.invalid(row.line(), row.code(), problem);
+                continue;
+            }
+            batch.add(row);
+            if (batch.size() >= batchSize) {
+                flush(batch, copy, report);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch, copy, report);
+        }
+        LOG.info("Imported books via {}: {} received, {} inserted, {} duplicates, {} invalid, {} failed",
+                report.getMethod(), report.getReceived(), report.getInserted(), report.getDuplicates(),
+                report.getInvalid(), report.getFailed());
+        return report;
+    }
+
+    private static String validate(BookImportRow row) {
+        if (row.error() != null) {
+            return row.error();
+        }
+        if (row.code() == null || row.code().isEmpty() || row.title() == null || row.title().isEmpty()
+                || row.author() == null || row.author().isEmpty()) {
+            return "All fields are required";
+        }
+        try {
+            Integer.parseInt(row.code());
+        } catch (NumberFormatException e) {
+            return "Book code must be a number";
+        }
+        return null;
+    }
+
+    private static boolean supportsCopy() throws SQLException {
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            return conn.isWrapperFor(PGConnection.class);
+        }
+    }
+
+    private void flush(List<BookImportRow> batch, boolean copy, ImportReport report) throws SQLException {
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                write(conn, batch, copy, report);
+                return;
+            } catch (SQLException e) {
+                if (batch.size() == 1) {
+                    report.failed(batch.get(0).line(), batch.get(0).code(), e.getSQLState(), e.getMessage());
+                    return;
+                }
+                LOG.warn("Import batch of {} rows starting at line {} failed, writing them one at a time: {}",
+                        batch.size(), batch.get(0).line(), e.getMessage());
+            }
+            // A single row is cheaper as a plain insert than through the temp table.
+            for (BookImportRow row : batch) {
+                try {
+                    write(conn, List.of(row), false, report);
+                } catch (SQLException e) {
+                    report.failed(row.line(), row.code(), e.getSQLState(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes {@code rows} in one transaction and, once it has committed, counts them into {@code report}.
+     */
+    private static void write(Connection conn, List<BookImportRow> rows, boolean copy, ImportReport report)
+            throws SQLException {
+        boolean[] inserted;
+        try {
+            inserted = copy ? copyBatch(conn, rows) : insertBatch(conn, rows);
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            if (inserted[i]) {
+                report.inserted(1);
+            } else {
+                report.duplicate(rows.get(i).line(), rows.get(i).code());
+            }
+        }
+    }
+
+    /**
+     * @return per row, whether it was inserted rather than a duplicate
+     */
+    private static boolean[] copyBatch(Connection conn, List<BookImportRow> batch) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS book_import " +
+                    "(line bigint, code text, title text, author text) ON COMMIT DELETE ROWS");
+        }
+
+        CopyIn copyIn = conn.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY book_import (line, code, title, author) FROM STDIN WITH (FORMAT csv)");
+        try {
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream(COPY_CHUNK_BYTES + 1024);
+            for (BookImportRow row : batch) {
+                String record = row.line() + "," + quote(row.code()) + "," + quote(row.title()) + ","
+                        + quote(row.author()) + "\n";
+                byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+                chunk.write(bytes, 0, bytes.length);
+                if (chunk.size() >= COPY_CHUNK_BYTES) {
+                    copyIn.writeToCopy(chunk.toByteArray(), 0, chunk.size());
+                    chunk.reset();
+                }
+            }
+            if (chunk.size() > 0) {
+                copyIn.writeToCopy(chunk.toByteArray(), 0, chunk.size());
+            }
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+
+        Set<String> insertedCodes = new HashSet<>();
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO books (code, title, author) " +
+                "SELECT DISTINCT ON (code) code, title, author FROM book_import ORDER BY code, line " +
+                "ON CONFLICT DO NOTHING RETURNING code");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                insertedCodes.add(rs.getString(1));
+            }
+        }
+
+        // DISTINCT ON keeps the lowest line per code, i.e. the first occurrence in the batch.
+        Set<String> seen = new HashSet<>();
+        boolean[] inserted = new boolean[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            String code = batch.get(i).code();
+            inserted[i] = insertedCodes.contains(code) && seen.add(code);
+        }
+        return inserted;
+    }
+
+    private static boolean[] insertBatch(Connection conn, List<BookImportRow> batch) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO books (code, title, author) VALUES (?, ?, ?) ON CONFLICT DO NOTHING")) {
+            for (BookImportRow row : batch) {
+                stmt.setString(1, row.code());
+                stmt.setString(2, row.title());
+                stmt.setString(3, row.author());
+                stmt.addBatch();
+            }
+            int[] counts = stmt.executeBatch();
+            boolean[] inserted = new boolean[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                inserted[i] = counts[i] != 0;
+            }
+            return inserted;
+        }
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,319 @@
+package service;
+
+import model.Book;
+import util.Logger;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over book titles and authors, ranked with BM25.
+ * <p>
+ * Readers never lock. Writers are serialized and update in an order that keeps every read
+ * self-consistent: a book's document is replaced first, then postings for its new terms are added,
+ * then postings for terms it lost are removed. A reader that meets a posting always scores it
+ * against the document currently stored for that code, so a stale posting can only cost a lookup.
+ * Terms are kept sorted, which makes prefix matching of the last query word a range scan.
+ * <p>
+ * A rebuild fills a fresh index while the old one keeps serving and taking updates. Updates that
+ * arrive during the rebuild are also journaled and replayed onto the fresh index before it is
+ * swapped in, so none are lost whether or not the rebuild's source already saw them.
+ */
+public class BookSearchIndex implements CatalogListener {
+    private static final Logger LOG = Logger.getLogger(BookSearchIndex.class);
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Prefix matches rank below exact ones and fan out to at most this many terms.
+    private static final double PREFIX_WEIGHT = 0.5;
+    private static final int MAX_PREFIX_TERMS = 64;
+
+    public record Hit(Book book, double score) {
+    }
+
+    private record Document(Book book, Map<String, Integer> termFrequencies, int length) {
+    }
+
+    /**
+     * An update seen during a rebuild; {@code book} is {@code null} for a delete.
+     */
+    private record Change(String code, Book book) {
+        void applyTo(State state) {
+            if (book != null) {
+                put(state, book);
+            } else {
+                remove(state, code);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Loader<E extends Exception> {
+        void load(Consumer<Book> sink) throws E;
+    }
+
+    private static final class State {
+        final ConcurrentHashMap<String, Document> documents = new ConcurrentHashMap<>();
+        final ConcurrentSkipListMap<String, ConcurrentHashMap<String, Boolean>> postings = new ConcurrentSkipListMap<>();
+        final AtomicLong totalLength = new AtomicLong();
+    }
+
+    private static final Executor RELOADS = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "search-index-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Executor reloads;
+    private final AtomicBoolean reloadQueued = new AtomicBoolean();
+    // Serializes rebuilds; writers only ever take writeLock.
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile State state = new State();
+    // Updates seen while a rebuild is loading, guarded by writeLock; null when none is running.
+    private List<Change> journal;
+
+    public BookSearchIndex() {
+        this(RELOADS);
+    }
+
+    /**
+     * @param reloads runs the rebuilds requested by {@link #booksReloaded}
+     */
+    BookSearchIndex(Executor reloads) {
+        this.reloads = reloads;
+    }
+
+    /**
+     * Replaces the whole index; readers keep using the old one until it is swapped in.
+     */
+    public void rebuild(Collection<Book> books) {
+        rebuild(books::forEach);
+    }
+
+    private <E extends Exception> void rebuild(Loader<E> loader) throws E {
+        rebuildLock.lock();
+        try {
+            List<Change> changes = new ArrayList<>();
+            setJournal(changes);
+            State fresh = new State();
+            try {
+                loader.load(book -> put(fresh, book));
+            } catch (Exception e) {
+                setJournal(null);
+                throw e;
+            }
+            writeLock.lock();
+            try {
+                for (Change change : changes) {
+                    change.applyTo(fresh);
+                }
+                journal = null;
+                state = fresh;
+            } finally {
+                writeLock.unlock();
+            }
+            LOG.info("Search index built with {} books and {} terms ({} updates replayed)",
+                    fresh.documents.size(), fresh.postings.size(), changes.size());
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void setJournal(List<Change> changes) {
+        writeLock.lock();
+        try {
+            journal = changes;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void bookSaved(Book book) {
+        update(new Change(book.code(), book));
+    }
+
+    @Override
+    public void bookDeleted(String code) {
+        update(new Change(code, null));
+    }
+
+    private void update(Change change) {
+        writeLock.lock();
+        try {
+            change.applyTo(state);
+            if (journal != null) {
+                journal.add(change);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Queues a rebuild from {@code source} on a background thread, since it reads every book. Reloads
+     * that arrive before the queued rebuild starts share it.
+     */
+    @Override
+    public void booksReloaded(DatabaseService source) {
+        if (!reloadQueued.compareAndSet(false, true)) {
+            return;
+        }
+        reloads.execute(() -> {
+            reloadQueued.set(false);
+            try {
+                // Read past any listing cache: it may not have been invalidated yet when this runs.
+                rebuild(sink -> source.streamBooks(null, sink::accept));
+            } catch (Exception e) {
+                LOG.error("Could not rebuild search index; results may be stale until the next rebuild", e);
+            }
+        });
+    }
+
+    public int size() {
+        return state.documents.size();
+    }
+
+    /**
+     * @param prefix also match terms that start with the last query word, for search-as-you-type
+     * @return up to {@code limit} books, best first
+     */
+    public List<Hit> search(String query, int limit, boolean prefix) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        State current = state;
+        int documentCount = current.documents.size();
+        if (documentCount == 0) {
+            return List.of();
+        }
+        double averageLength = Math.max(1.0, (double) current.totalLength.get() / documentCount);
+
+        Map<String, Double> scores = new HashMap<>();
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            score(current, term, 1.0, documentCount, averageLength, scores);
+            if (prefix && i == terms.size() - 1) {
+                NavigableMap<String, ConcurrentHashMap<String, Boolean>> expansions =
+                        current.postings.subMap(term, false, term + Character.MAX_VALUE, false);
+                int expanded = 0;
+                for (String candidate : expansions.keySet()) {
+                    if (expanded++ == MAX_PREFIX_TERMS) {
+                        break;
+                    }
+                    score(current, candidate, PREFIX_WEIGHT, documentCount, averageLength, scores);
+                }
+            }
+        }
+
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(Hit::score));
+        for (Map.Entry<String, Double> entry : scores.entrySet()) {
+            Document document = current.documents.get(entry.getKey());
+            if (document == null) {
+                continue;
+            }
+            top.offer(new Hit(document.book(), entry.getValue()));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed().thenComparing(hit -> hit.book().code()));
+        return hits;
+    }
+
+    private static void score(State state, String term, double weight, int documentCount, double averageLength,
+                              Map<String, Double> scores) {
+        ConcurrentHashMap<String, Boolean> codes = state.postings.get(term);
+        if (codes == null || codes.isEmpty()) {
+            return;
+        }
+        int documentFrequency = codes.size();
+        double idf = Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        for (String code : codes.keySet()) {
+            Document document = state.documents.get(code);
+            Integer frequency = document != null ? document.termFrequencies().get(term) : null;
+            if (frequency == null) {
+                continue; // posting left behind by a concurrent update
+            }
+            double norm = K1 * (1 - B + B * document.length() / averageLength);
+            scores.merge(code, weight * idf * frequency * (K1 + 1) / (frequency + norm), Double::sum);
+        }
+    }
+
+    private static void put(State state, Book book) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = 0;
+        for (String term : tokenize(book.title() + " " + book.author())) {
+            frequencies.merge(term, 1, Integer::sum);
+            length++;
+        }
+        Document document = new Document(book, Map.copyOf(frequencies), length);
+        Document previous = state.documents.put(book.code(), document);
+        state.totalLength.addAndGet(length - (previous != null ? previous.length() : 0));
+        for (String term : frequencies.keySet()) {
+            state.postings.computeIfAbsent(term, t -> new ConcurrentHashMap<>()).put(book.code(), Boolean.TRUE);
+        }
+        if (previous != null) {
+            removePostings(state, book.code(), previous.termFrequencies().keySet(), frequencies);
+        }
+    }
+
+    private static void remove(State state, String code) {
+        Document removed = state.documents.remove(code);
+        if (removed != null) {
+            state.totalLength.addAndGet(-removed.length());
+            removePostings(state, code, removed.termFrequencies().keySet(), Map.of());
+        }
+    }
+
+    private static void removePostings(State state, String code, Collection<String> terms, Map<String, Integer> keep) {
+        for (String term : terms) {
+            if (keep.containsKey(term)) {
+                continue;
+            }
+            state.postings.computeIfPresent(term, (t, codes) -> {
+                codes.remove(code);
+                return codes.isEmpty() ? null : codes;
+            });
+        }
+    }
+
+    /**
+     * Case-folded, accent-stripped words of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_WORD.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,8 @@
+package service;
+
+public enum BorrowResult {
+    SUCCESS,
+    MEMBER_NOT_FOUND,
+    BOOK_NOT_FOUND,
+    ALREADY_BORROWED
+}
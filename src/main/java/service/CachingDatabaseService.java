@@ -0,0 +1,165 @@
+package service;
+
+import model.Book;
+import model.Member;
+import model.Page;
+import util.LruCache;
+import util.Metrics;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-through cache in front of the catalog queries. Listings of a table are dropped whenever
+ * that table is written. Borrowings are not cached.
+ */
+public class CachingDatabaseService extends DatabaseService {
+
+    private record PageKey(Object after, Object before, int limit) {
+    }
+
+    @FunctionalInterface
+    private interface Loader<V> {
+        V load() throws SQLException;
+    }
+
+    private static final String ALL = "all";
+
+    private final LruCache<Object, Object> bookListings;
+    private final LruCache<Object, Object> memberListings;
+
+    public CachingDatabaseService(int maxEntries, long ttl, TimeUnit unit) {
+        bookListings = new LruCache<>(maxEntries, ttl, unit);
+        memberListings = new LruCache<>(maxEntries, ttl, unit);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Book> getAllBooks() throws SQLException {
+        return (List<Book>) readThrough(bookListings, ALL, () -> List.copyOf(super.getAllBooks()));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Page<Book> getBooksPage(String afterCode, String beforeCode, int limit) throws SQLException {
+        return (Page<Book>) readThrough(bookListings, new PageKey(afterCode, beforeCode, limit),
+                () -> immutable(super.getBooksPage(afterCode, beforeCode, limit)));
+    }
+
+    @Override
+    public void addBook(String code, String title, String author) throws SQLException {
+        try {
+            super.addBook(code, title, author);
+        } finally {
+            bookListings.invalidateAll();
+        }
+    }
+
+    @Override
+    public ImportReport importBooks(BookImportSource source, int batchSize, boolean useCopy)
+            throws SQLException, IOException {
+        try {
+            return super.importBooks(source, batchSize, useCopy);
+        } finally {
+            bookListings.invalidateAll();
+        }
+    }
+
+    @Override
+    public void updateBook(String code, String title, String author) throws SQLException {
+        try {
+            super.updateBook(code, title, author);
+        } finally {
+            bookListings.invalidateAll();
+        }
+    }
+
+    @Override
+    public void deleteBook(String code) throws SQLException {
+        try {
+            super.deleteBook(code);
+        } finally {
+            bookListings.invalidateAll();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Member> getAllMembers() throws SQLException {
+        return (List<Member>) readThrough(memberListings, ALL, () -> List.copyOf(super.getAllMembers()));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Page<Member> getMembersPage(Integer afterId, Integer beforeId, int limit) throws SQLException {
+        return (Page<Member>) readThrough(memberListings, new PageKey(afterId, beforeId, limit),
+                () -> immutable(super.getMembersPage(afterId, beforeId, limit)));
+    }
+
+    @Override
+    public int addMember(String name, String email) throws SQLException {
+        try {
+            return super.addMember(name, email);
+        } finally {
+            memberListings.invalidateAll();
+        }
+    }
+
+    @Override
+    public void updateMember(int id, String name, String email) throws SQLException {
+        try {
+            super.updateMember(id, name, email);
+        } finally {
+            memberListings.invalidateAll();
+        }
+    }
+
+    @Override
+    public void deleteMember(int id) throws SQLException {
+        try {
+            super.deleteMember(id);
+        } finally {
+            memberListings.invalidateAll();
+        }
+    }
+
+    /**
+     * Exposes each cache's hits, misses, evictions and size, read from {@link LruCache#stats()} at
+     * scrape time.
+     */
+    public void registerMetrics(Metrics metrics) {
+        Map<String, LruCache<?, ?>> caches = new LinkedHashMap<>();
+        caches.put("book_listings", bookListings);
+        caches.put("member_listings", memberListings);
+        caches.forEach((name, cache) -> {
+            String prefix = "db_cache_" + name;
+            metrics.counter(prefix + "_hits_total", "Reads answered from the " + name + " cache.",
+                    () -> cache.stats().hits());
+            metrics.counter(prefix + "_misses_total", "Reads of the " + name + " cache that went to the database.",
+                    () -> cache.stats().misses());
+            metrics.counter(prefix + "_evictions_total", "Entries evicted from the " + name + " cache.",
+                    () -> cache.stats().evictions());
+            metrics.gauge(prefix + "_entries", "Entries held in the " + name + " cache.", () -> cache.stats().size());
+        });
+    }
+
+    private static <K, V> V readThrough(LruCache<K, V> cache, K key, Loader<V> loader) throws SQLException {
+        V cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = cache.generation();
+        V loaded = loader.load();
+        cache.putIfCurrent(key, loaded, generation);
+        return loaded;
+    }
+
+    private static <T> Page<T> immutable(Page<T> page) {
+        return new Page<>(List.copyOf(page.items()), page.firstKey(), page.lastKey(),
+                page.hasPrevious(), page.hasNext());
+    }
+}
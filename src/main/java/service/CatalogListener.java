@@ -0,0 +1,35 @@
+package service;
+
+import model.Book;
+import model.Member;
+
+/**
+ * Notified by {@link DatabaseService} after a catalog write has committed. Called on the writing
+ * thread, so implementations should be quick.
+ */
+public interface CatalogListener {
+
+    default void bookSaved(Book book) {
+    }
+
+    default void bookDeleted(String code) {
+    }
+
+    /**
+     * A bulk write touched an unknown set of books. Re-reading them belongs on another thread.
+     */
+    default void booksReloaded(DatabaseService source) {
+    }
+
+    default void memberSaved(Member member) {
+    }
+
+    /**
+     * The join date is unchanged by an update and not re-read, hence no {@link Member} here.
+     */
+    default void memberUpdated(int id, String name, String email) {
+    }
+
+    default void memberDeleted(int id) {
+    }
+}
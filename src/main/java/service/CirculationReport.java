@@ -0,0 +1,24 @@
+package service;
+
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Read from the aggregate tables that {@code db/migration/V2__circulation_stats.sql} keeps current.
+ *
+ * @param topBooks      most borrowed books, all time
+ * @param activeMembers members with loans out, most first
+ * @param monthly       loans and returns per month in the requested range, oldest first
+ */
+public record CirculationReport(List<BookLoans> topBooks, List<MemberLoans> activeMembers,
+                                List<MonthlyCirculation> monthly) {
+
+    public record BookLoans(String code, String title, String author, long loans) {
+    }
+
+    public record MemberLoans(int id, String name, int activeLoans, long totalLoans) {
+    }
+
+    public record MonthlyCirculation(YearMonth month, long loans, long returns) {
+    }
+}
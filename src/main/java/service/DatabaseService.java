@@ -1,203 +1,765 @@
 package service;
 
 import util.DatabaseUtil;
+import util.Env;
+import util.Logger;
+import util.Metrics;
+import util.WriteCoalescer;
 import model.Book;
 import model.Member;
 import model.Borrowing;
+import model.BorrowingView;
+import model.Page;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 public class DatabaseService {
-    private static DatabaseService instance;
+    private static final Logger LOG = Logger.getLogger(DatabaseService.class);
+    private static final int STREAM_FETCH_SIZE = 500;
+    // Timed per public method; with caching in front, only calls that reach the database show up.
+    private static final Metrics METRICS = Metrics.getDefault();
+    private static final String BORROWING_VIEW_SELECT =
+            "SELECT id, book_code, book_title, member_id, member_name, borrow_date, return_date FROM borrowing_view";
+
+    private final List<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile WriteCoalescer<LoanRequest, BorrowResult> borrowBatches;
+    private volatile WriteCoalescer<String, ReturnResult> returnBatches;
+    // Query timeout for borrow and return statements once batching is on; 0 means none.
+    private volatile int writeTimeoutSeconds;
+
+    private record LoanRequest(String bookCode, int memberId) {
+    }
+
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface DbCall<T, X extends Exception> {
+        T call() throws SQLException, X;
+    }
+
+    @FunctionalInterface
+    private interface DbAction<X extends Exception> {
+        void run() throws SQLException, X;
+    }
 
     public DatabaseService() {
     }
 
-    public static synchronized DatabaseService getInstance() {
-        if (instance == null) {
-            instance = new DatabaseService();
+    public void addCatalogListener(CatalogListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Routes {@link #borrow} and {@link #returnLoan} through {@link WriteCoalescer}s, so concurrent
+     * borrows (and, separately, returns) are written as one multi-row statement and one commit.
+     * Each caller still gets its own result. A request waits up to {@code maxWait} for others to
+     * join it, so this only pays off when many arrive at once.
+     *
+     * <p>Batches run on the coalescers' own threads, out of reach of a request's deadline, so each
+     * borrow or return statement gets a query timeout of {@code timeout}. A caller gives up after
+     * twice that plus {@code maxWait}: long enough for the batch ahead of its own and then its own.
+     */
+    public void enableWriteBatching(int maxBatchSize, long maxWait, long timeout, TimeUnit unit) {
+        writeTimeoutSeconds = (int) Math.max(1, (unit.toMillis(timeout) + 999) / 1000);
+        long callerTimeout = 2 * timeout + maxWait;
+        WriteCoalescer<LoanRequest, BorrowResult> borrows =
+                new WriteCoalescer<>("borrow", maxBatchSize, maxWait, callerTimeout, unit, this::borrowAll);
+        WriteCoalescer<String, ReturnResult> returns =
+                new WriteCoalescer<>("return", maxBatchSize, maxWait, callerTimeout, unit, this::returnAll);
+        METRICS.counter("db_borrow_batches_total", "Borrow batches written.", borrows::getBatchCount);
+        METRICS.counter("db_borrow_batched_requests_total", "Borrows written in batches.", borrows::getRequestCount);
+        METRICS.counter("db_return_batches_total", "Return batches written.", returns::getBatchCount);
+        METRICS.counter("db_return_batched_requests_total", "Returns written in batches.", returns::getRequestCount);
+        METRICS.gauge("db_write_batch_queue_size", "Borrows and returns waiting for the next batch.",
+                () -> borrows.getQueueSize() + returns.getQueueSize());
+        borrowBatches = borrows;
+        returnBatches = returns;
+        LOG.info("Write batching on: up to {} borrows or returns per statement, waiting up to {} {}",
+                maxBatchSize, maxWait, unit.toString().toLowerCase());
+    }
+
+    /**
+     * Stops write batching; borrows and returns already queued are still written.
+     */
+    public void close() {
+        WriteCoalescer<LoanRequest, BorrowResult> borrows = borrowBatches;
+        WriteCoalescer<String, ReturnResult> returns = returnBatches;
+        borrowBatches = null;
+        returnBatches = null;
+        if (borrows != null) {
+            borrows.close();
+        }
+        if (returns != null) {
+            returns.close();
         }
-        return instance;
     }
 
-    public List<Book> getAllBooks() throws SQLException {
-        List<Book> books = new ArrayList<>();
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM books");
-             ResultSet rs = stmt.executeQuery()) {
+    // Lazy holder rather than a synchronized accessor: no monitor on the request path, so a virtual
+    // thread calling getInstance() can never pin its carrier.
+    private static final class Holder {
+        static final DatabaseService INSTANCE = create();
 
-            while (rs.next()) {
-                books.add(new Book(
-                        rs.getString("code"),
-                        rs.getString("title"),
-                        rs.getString("author")
-                ));
+        private static DatabaseService create() {
+            DatabaseService service = "false".equalsIgnoreCase(System.getenv("DB_CACHE_ENABLED"))
+                    ? new DatabaseService()
+                    : new CachingDatabaseService(Env.getInt("DB_CACHE_MAX_ENTRIES", 1_000),
+                            Env.getInt("DB_CACHE_TTL_MS", 30_000), TimeUnit.MILLISECONDS);
+            if (Boolean.parseBoolean(System.getenv("DB_WRITE_BATCHING"))) {
+                service.enableWriteBatching(Env.getInt("DB_WRITE_BATCH_SIZE", 64),
+                        Env.getInt("DB_WRITE_BATCH_WAIT_MS", 2), Env.getInt("DB_WRITE_TIMEOUT_MS", 10_000),
+                        TimeUnit.MILLISECONDS);
             }
+            return service;
         }
-        return books;
     }
 
-    public void addBook(String code, String title, String author) throws SQLException {
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(
-                     "INSERT INTO books (code, title, author) VALUES (?, ?, ?)")) {
+    /**
+     * Returns the shared service. Catalog reads are cached unless {@code DB_CACHE_ENABLED=false};
+     * {@code DB_CACHE_MAX_ENTRIES} and {@code DB_CACHE_TTL_MS} size the caches.
+     * {@code DB_WRITE_BATCHING=true} turns on {@link #enableWriteBatching}, sized by
+     * {@code DB_WRITE_BATCH_SIZE}, {@code DB_WRITE_BATCH_WAIT_MS} and {@code DB_WRITE_TIMEOUT_MS}.
+     */
+    public static DatabaseService getInstance() {
+        return Holder.INSTANCE;
+    }
 
-            stmt.setString(1, code);
-            stmt.setString(2, title);
-            stmt.setString(3, author);
-            stmt.executeUpdate();
+    /**
+     * Runs {@code call} as public method {@code method}, recording its duration in {@code db_call_seconds}.
+     */
+    private static <T, X extends Exception> T timed(String method, DbCall<T, X> call) throws SQLException, X {
+        long start = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            METRICS.recordDbCall(method, start);
         }
     }
 
+    private static <X extends Exception> void timed(String method, DbAction<X> action) throws SQLException, X {
+        timed(method, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public List<Book> getAllBooks() throws SQLException {
+        return timed("getAllBooks", () -> {
+            List<Book> books = new ArrayList<>();
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement("SELECT * FROM books");
+                 ResultSet rs = stmt.executeQuery()) {
+
+                while (rs.next()) {
+                    books.add(mapBook(rs));
+                }
+            }
+            return books;
+        });
+    }
+
+    public Page<Book> getBooksPage(String afterCode, String beforeCode, int limit) throws SQLException {
+        return timed("getBooksPage", () -> seekPage("SELECT code, title, author FROM books", "code",
+                afterCode, beforeCode, limit, DatabaseService::mapBook));
+    }
+
+    public void streamBooks(String afterCode, RowHandler<Book> handler) throws SQLException, IOException {
+        timed("streamBooks", () -> streamRows("SELECT code, title, author FROM books", "code",
+                afterCode, DatabaseService::mapBook, handler));
+    }
+
+    public void addBook(String code, String title, String author) throws SQLException {
+        timed("addBook", () -> {
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(
+                         "INSERT INTO books (code, title, author) VALUES (?, ?, ?)")) {
+
+                stmt.setString(1, code);
+                stmt.setString(2, title);
+                stmt.setString(3, author);
+                stmt.executeUpdate();
+            }
+            Book book = new Book(code, title, author);
+            for (CatalogListener listener : listeners) {
+                listener.bookSaved(book);
+            }
+        });
+    }
+
+    /**
+     * Bulk-loads books from an upload, through {@code COPY} when {@code useCopy} is set and the
+     * driver supports it, otherwise through batched inserts.
+     */
+    public ImportReport importBooks(BookImportSource source, int batchSize, boolean useCopy)
+            throws SQLException, IOException {
+        return timed("importBooks", () -> {
+            ImportReport report = new BookImporter(batchSize, useCopy).run(source);
+            if (report.getInserted() > 0) {
+                for (CatalogListener listener : listeners) {
+                    listener.booksReloaded(this);
+                }
+            }
+            return report;
+        });
+    }
+
+    /**
+     * Writes every row of {@code table} to {@code out} in key order, optionally limited to a date
+     * range (inclusive) on tables that have one. Nothing is buffered beyond the driver's fetch size.
+     *
+     * @return number of rows written
+     * @throws IllegalArgumentException if a date range is given for a table without a date column
+     */
+    public long export(ExportTable table, ExportFormat format, LocalDate from, LocalDate to, OutputStream out)
+            throws SQLException, IOException {
+        return timed("export", () -> new TableExporter(table, format, from, to).run(out));
+    }
+
     public void updateBook(String code, String title, String author) throws SQLException {
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(
-                     "UPDATE books SET title = ?, author = ? WHERE code = ?")) {
+        timed("updateBook", () -> {
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(
+                         "UPDATE books SET title = ?, author = ? WHERE code = ?")) {
 
-            stmt.setString(1, title);
-            stmt.setString(2, author);
-            stmt.setString(3, code);
-            stmt.executeUpdate();
-        }
+                stmt.setString(1, title);
+                stmt.setString(2, author);
+                stmt.setString(3, code);
+                if (stmt.executeUpdate() == 0) {
+                    return;
+                }
+            }
+            Book book = new Book(code, title, author);
+            for (CatalogListener listener : listeners) {
+                listener.bookSaved(book);
+            }
+        });
     }
 
     public void deleteBook(String code) throws SQLException {
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(
-                     "DELETE FROM books WHERE code = ?")) {
+        timed("deleteBook", () -> {
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(
+                         "DELETE FROM books WHERE code = ?")) {
 
-            stmt.setString(1, code);
-            int rowsDeleted = stmt.executeUpdate();
+                stmt.setString(1, code);
+                int rowsDeleted = stmt.executeUpdate();
 
-            if (rowsDeleted == 0) {
-                throw new SQLException("No book found with code: " + code);
+                if (rowsDeleted == 0) {
+                    throw new SQLException("No book found with code: " + code);
+                }
             }
-        }
+            for (CatalogListener listener : listeners) {
+                listener.bookDeleted(code);
+            }
+        });
     }
 
     public List<Member> getAllMembers() throws SQLException {
-        List<Member> members = new ArrayList<>();
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM members");
-             ResultSet rs = stmt.executeQuery()) {
+        return timed("getAllMembers", () -> {
+            List<Member> members = new ArrayList<>();
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement("SELECT * FROM members");
+                 ResultSet rs = stmt.executeQuery()) {
 
-            while (rs.next()) {
-                members.add(new Member(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("email"),
-                        rs.getDate("join_date").toLocalDate()
-                ));
+                while (rs.next()) {
+                    members.add(mapMember(rs));
+                }
             }
-        }
-        return members;
+            return members;
+        });
     }
 
-    public void addMember(String name, String email) throws SQLException {
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(
-                     "INSERT INTO members (name, email, join_date) VALUES (?, ?, ?)")) {
+    public Page<Member> getMembersPage(Integer afterId, Integer beforeId, int limit) throws SQLException {
+        return timed("getMembersPage", () -> seekPage("SELECT id, name, email, join_date FROM members", "id",
+                afterId, beforeId, limit, DatabaseService::mapMember));
+    }
 
-            stmt.setString(1, name);
-            stmt.setString(2, email);
-            stmt.setDate(3, java.sql.Date.valueOf(LocalDate.now()));
-            stmt.executeUpdate();
-        }
+    public void streamMembers(Integer afterId, RowHandler<Member> handler) throws SQLException, IOException {
+        timed("streamMembers", () -> streamRows("SELECT id, name, email, join_date FROM members", "id",
+                afterId, DatabaseService::mapMember, handler));
+    }
+
+    /**
+     * @return the new member's id
+     */
+    public int addMember(String name, String email) throws SQLException {
+        return timed("addMember", () -> {
+            LocalDate joinDate = LocalDate.now();
+            int id;
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(
+                         "INSERT INTO members (name, email, join_date) VALUES (?, ?, ?) RETURNING id")) {
+
+                stmt.setString(1, name);
+                stmt.setString(2, email);
+                stmt.setDate(3, java.sql.Date.valueOf(joinDate));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    id = rs.getInt(1);
+                }
+            }
+            Member member = new Member(id, name, email, joinDate);
+            for (CatalogListener listener : listeners) {
+                listener.memberSaved(member);
+            }
+            return id;
+        });
     }
 
     public void updateMember(int id, String name, String email) throws SQLException {
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(
-                     "UPDATE members SET name = ?, email = ? WHERE id = ?")) {
+        timed("updateMember", () -> {
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(
+                         "UPDATE members SET name = ?, email = ? WHERE id = ?")) {
 
-            stmt.setString(1, name);
-            stmt.setString(2, email);
-            stmt.setInt(3, id);
-            stmt.executeUpdate();
-        }
+                stmt.setString(1, name);
+                stmt.setString(2, email);
+                stmt.setInt(3, id);
+                if (stmt.executeUpdate() == 0) {
+                    return;
+                }
+            }
+            for (CatalogListener listener : listeners) {
+                listener.memberUpdated(id, name, email);
+            }
+        });
     }
 
     public void deleteMember(int id) throws SQLException {
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(
-                     "DELETE FROM members WHERE id = ?")) {
+        timed("deleteMember", () -> {
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(
+                         "DELETE FROM members WHERE id = ?")) {
 
-            stmt.setInt(1, id);
-            stmt.executeUpdate();
-        }
+                stmt.setInt(1, id);
+                if (stmt.executeUpdate() == 0) {
+                    return;
+                }
+            }
+            for (CatalogListener listener : listeners) {
+                listener.memberDeleted(id);
+            }
+        });
     }
 
     public List<Borrowing> getAllBorrowings() throws SQLException {
-        List<Borrowing> borrowings = new ArrayList<>();
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement("SELECT * FROM borrowings");
-             ResultSet rs = stmt.executeQuery()) {
+        return timed("getAllBorrowings", () -> {
+            List<Borrowing> borrowings = new ArrayList<>();
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement("SELECT * FROM borrowings");
+                 ResultSet rs = stmt.executeQuery()) {
 
-            while (rs.next()) {
-                borrowings.add(new Borrowing(
-                        rs.getString("book_code"),
-                        rs.getInt("member_id"),
-                        rs.getDate("borrow_date").toLocalDate(),
-                        rs.getDate("return_date") != null ? rs.getDate("return_date").toLocalDate() : null
-                ));
+                while (rs.next()) {
+                    borrowings.add(mapBorrowing(rs));
+                }
             }
-        }
-        return borrowings;
+            return borrowings;
+        });
+    }
+
+    /**
+     * A page of loans with titles and names, read through {@code borrowing_view}
+     * ({@code db/migration/V3__borrowing_view.sql}) in one round trip.
+     */
+    public Page<BorrowingView> getBorrowingViewsPage(Long afterId, Long beforeId, int limit) throws SQLException {
+        return timed("getBorrowingViewsPage", () -> seekPage(BORROWING_VIEW_SELECT, "id",
+                afterId, beforeId, limit, DatabaseService::mapBorrowingView));
+    }
+
+    public void streamBorrowingViews(Long afterId, RowHandler<BorrowingView> handler) throws SQLException, IOException {
+        timed("streamBorrowingViews", () -> streamRows(BORROWING_VIEW_SELECT, "id",
+                afterId, DatabaseService::mapBorrowingView, handler));
     }
 
     public void borrowBook(String bookCode, int memberId) throws SQLException {
+        timed("borrowBook", () -> {
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(
+                         "INSERT INTO borrowings (book_code, member_id, borrow_date) VALUES (?, ?, ?)")) {
+
+                stmt.setString(1, bookCode);
+                stmt.setInt(2, memberId);
+                stmt.setDate(3, java.sql.Date.valueOf(LocalDate.now()));
+                stmt.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Validates and records a loan in one statement. Two concurrent borrows of the same book
+     * cannot both succeed: the partial unique index on active loans
+     * ({@code db/migration/V1__active_loan_unique_index.sql}) makes the loser's insert a no-op.
+     * The index is the statement's conflict target, so without it this throws rather than
+     * letting both through.
+     */
+    public BorrowResult borrow(String bookCode, int memberId) throws SQLException {
+        return timed("borrow", () -> {
+            WriteCoalescer<LoanRequest, BorrowResult> batches = borrowBatches;
+            if (batches != null) {
+                return batches.submit(new LoanRequest(bookCode, memberId));
+            }
+            return borrowOne(bookCode, memberId);
+        });
+    }
+
+    private BorrowResult borrowOne(String bookCode, int memberId) throws SQLException {
         try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement stmt = conn.prepareStatement(
-                     "INSERT INTO borrowings (book_code, member_id, borrow_date) VALUES (?, ?, ?)")) {
+                     "WITH member AS (SELECT id FROM members WHERE id = ?), " +
+                     "book AS (SELECT code FROM books WHERE code = ?), " +
+                     "loan AS (" +
+                     "  INSERT INTO borrowings (book_code, member_id, borrow_date) " +
+                     "  SELECT book.code, member.id, ? FROM book, member " +
+                     "  WHERE NOT EXISTS (SELECT 1 FROM borrowings b WHERE b.book_code = book.code AND b.return_date IS NULL) " +
+                     "  ON CONFLICT (book_code) WHERE return_date IS NULL DO NOTHING " +
+                     "  RETURNING 1) " +
+                     "SELECT EXISTS (SELECT 1 FROM member), EXISTS (SELECT 1 FROM book), EXISTS (SELECT 1 FROM loan)")) {
 
-            stmt.setString(1, bookCode);
-            stmt.setInt(2, memberId);
+            stmt.setQueryTimeout(writeTimeoutSeconds);
+            stmt.setInt(1, memberId);
+            stmt.setString(2, bookCode);
             stmt.setDate(3, java.sql.Date.valueOf(LocalDate.now()));
-            stmt.executeUpdate();
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                if (!rs.getBoolean(1)) {
+                    return BorrowResult.MEMBER_NOT_FOUND;
+                }
+                if (!rs.getBoolean(2)) {
+                    return BorrowResult.BOOK_NOT_FOUND;
+                }
+                return rs.getBoolean(3) ? BorrowResult.SUCCESS : BorrowResult.ALREADY_BORROWED;
+            }
         }
     }
 
-    public int returnBook(String bookCode) throws SQLException {
+    /**
+     * {@link #borrowOne} for many requests in one statement, with the same outcome per request as
+     * running them one after another in order: of several borrows of one book only the first can
+     * succeed.
+     */
+    private List<BorrowResult> borrowAll(List<LoanRequest> requests) throws SQLException {
+        if (requests.size() == 1) {
+            return List.of(borrowOne(requests.get(0).bookCode(), requests.get(0).memberId()));
+        }
+        Integer[] memberIds = new Integer[requests.size()];
+        String[] bookCodes = new String[requests.size()];
+        for (int i = 0; i < requests.size(); i++) {
+            memberIds[i] = requests.get(i).memberId();
+            bookCodes[i] = requests.get(i).bookCode();
+        }
+        List<BorrowResult> results = new ArrayList<>(requests.size());
         try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement stmt = conn.prepareStatement(
-                     "UPDATE borrowings SET return_date = ? WHERE book_code = ? AND return_date IS NULL")) {
+                     "WITH req AS (SELECT * FROM unnest(?::int[], ?::varchar[]) WITH ORDINALITY AS r(member_id, book_code, ord)), " +
+                     "candidate AS (" +
+                     "  SELECT DISTINCT ON (r.book_code) r.ord, r.book_code, r.member_id FROM req r " +
+                     "  JOIN members m ON m.id = r.member_id JOIN books b ON b.code = r.book_code " +
+                     "  WHERE NOT EXISTS (SELECT 1 FROM borrowings x WHERE x.book_code = r.book_code AND x.return_date IS NULL) " +
+                     "  ORDER BY r.book_code, r.ord), " +
+                     "loan AS (" +
+                     "  INSERT INTO borrowings (book_code, member_id, borrow_date) " +
+                     "  SELECT book_code, member_id, ? FROM candidate " +
+                     "  ON CONFLICT (book_code) WHERE return_date IS NULL DO NOTHING " +
+                     "  RETURNING book_code) " +
+                     "SELECT EXISTS (SELECT 1 FROM members m WHERE m.id = r.member_id), " +
+                     "EXISTS (SELECT 1 FROM books b WHERE b.code = r.book_code), " +
+                     "EXISTS (SELECT 1 FROM candidate c JOIN loan l ON l.book_code = c.book_code WHERE c.ord = r.ord) " +
+                     "FROM req r ORDER BY r.ord")) {
 
-            stmt.setDate(1, java.sql.Date.valueOf(LocalDate.now()));
-            stmt.setString(2, bookCode);
-            return stmt.executeUpdate();
+            stmt.setQueryTimeout(writeTimeoutSeconds);
+            stmt.setArray(1, conn.createArrayOf("int4", memberIds));
+            stmt.setArray(2, conn.createArrayOf("varchar", bookCodes));
+            stmt.setDate(3, java.sql.Date.valueOf(LocalDate.now()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (!rs.getBoolean(1)) {
+                        results.add(BorrowResult.MEMBER_NOT_FOUND);
+                    } else if (!rs.getBoolean(2)) {
+                        results.add(BorrowResult.BOOK_NOT_FOUND);
+                    } else {
+                        results.add(rs.getBoolean(3) ? BorrowResult.SUCCESS : BorrowResult.ALREADY_BORROWED);
+                    }
+                }
+            }
         }
+        return results;
     }
 
-    public boolean memberExists(int memberId) throws SQLException {
+    public int returnBook(String bookCode) throws SQLException {
+        return timed("returnBook", () -> {
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(
+                         "UPDATE borrowings SET return_date = ? WHERE book_code = ? AND return_date IS NULL")) {
+
+                stmt.setDate(1, java.sql.Date.valueOf(LocalDate.now()));
+                stmt.setString(2, bookCode);
+                return stmt.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Closes the active loan on a book in one round trip, reporting whether the book exists and
+     * which member returned it.
+     */
+    public ReturnResult returnLoan(String bookCode) throws SQLException {
+        return timed("returnLoan", () -> {
+            WriteCoalescer<String, ReturnResult> batches = returnBatches;
+            if (batches != null) {
+                return batches.submit(bookCode);
+            }
+            return returnOne(bookCode);
+        });
+    }
+
+    private ReturnResult returnOne(String bookCode) throws SQLException {
         try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement stmt = conn.prepareStatement(
-                     "SELECT 1 FROM members WHERE id = ?")) {
-            stmt.setInt(1, memberId);
-            return stmt.executeQuery().next();
+                     "WITH book AS (SELECT code FROM books WHERE code = ?), " +
+                     "closed AS (" +
+                     "  UPDATE borrowings SET return_date = ? " +
+                     "  WHERE book_code = ? AND return_date IS NULL " +
+                     "  RETURNING member_id) " +
+                     "SELECT EXISTS (SELECT 1 FROM book), (SELECT member_id FROM closed LIMIT 1)")) {
+
+            stmt.setQueryTimeout(writeTimeoutSeconds);
+            stmt.setString(1, bookCode);
+            stmt.setDate(2, java.sql.Date.valueOf(LocalDate.now()));
+            stmt.setString(3, bookCode);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                boolean bookFound = rs.getBoolean(1);
+                int memberId = rs.getInt(2);
+                boolean returned = !rs.wasNull();
+                return new ReturnResult(bookFound, returned, returned ? memberId : null);
+            }
         }
     }
 
-    public boolean bookExists(String bookCode) throws SQLException {
+    /**
+     * {@link #returnOne} for many books in one statement. A book listed twice is returned by its
+     * first request; later ones find no active loan, as they would one after another.
+     */
+    private List<ReturnResult> returnAll(List<String> bookCodes) throws SQLException {
+        if (bookCodes.size() == 1) {
+            return List.of(returnOne(bookCodes.get(0)));
+        }
+        List<ReturnResult> results = new ArrayList<>(bookCodes.size());
         try (Connection conn = DatabaseUtil.getConnection();
              PreparedStatement stmt = conn.prepareStatement(
-                     "SELECT 1 FROM books WHERE code = ?")) {
-            stmt.setString(1, bookCode);
-            return !stmt.executeQuery().next();
+                     "WITH req AS (SELECT * FROM unnest(?::varchar[]) WITH ORDINALITY AS r(book_code, ord)), " +
+                     "closed AS (" +
+                     "  UPDATE borrowings SET return_date = ? " +
+                     "  WHERE return_date IS NULL AND book_code IN (SELECT book_code FROM req) " +
+                     "  RETURNING book_code, member_id), " +
+                     "first AS (SELECT DISTINCT ON (book_code) book_code, ord FROM req ORDER BY book_code, ord) " +
+                     "SELECT EXISTS (SELECT 1 FROM books b WHERE b.code = r.book_code), " +
+                     "(SELECT c.member_id FROM closed c JOIN first f ON f.book_code = c.book_code WHERE f.ord = r.ord LIMIT 1) " +
+                     "FROM req r ORDER BY r.ord")) {
+
+            stmt.setQueryTimeout(writeTimeoutSeconds);
+            stmt.setArray(1, conn.createArrayOf("varchar", bookCodes.toArray(new String[0])));
+            stmt.setDate(2, java.sql.Date.valueOf(LocalDate.now()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    boolean bookFound = rs.getBoolean(1);
+                    int memberId = rs.getInt(2);
+                    boolean returned = !rs.wasNull();
+                    results.add(new ReturnResult(bookFound, returned, returned ? memberId : null));
+                }
+            }
         }
+        return results;
+    }
+
+    /**
+     * Reads the circulation aggregates kept by {@code db/migration/V2__circulation_stats.sql}. Each
+     * query walks an index and stops at its limit or range, so the cost does not grow with the loan
+     * history.
+     */
+    public CirculationReport getCirculationReport(int limit, YearMonth from, YearMonth to) throws SQLException {
+        return timed("getCirculationReport", () -> {
+            List<CirculationReport.BookLoans> books = new ArrayList<>();
+            List<CirculationReport.MemberLoans> members = new ArrayList<>();
+            List<CirculationReport.MonthlyCirculation> monthly = new ArrayList<>();
+            try (Connection conn = DatabaseUtil.getConnection()) {
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT c.book_code, b.title, b.author, c.loan_count FROM book_circulation c " +
+                        "JOIN books b ON b.code = c.book_code WHERE c.loan_count > 0 " +
+                        "ORDER BY c.loan_count DESC, c.book_code LIMIT ?")) {
+                    stmt.setInt(1, limit);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            books.add(new CirculationReport.BookLoans(rs.getString(1), rs.getString(2),
+                                    rs.getString(3), rs.getLong(4)));
+                        }
+                    }
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT c.member_id, m.name, c.active_loans, c.loan_count FROM member_circulation c " +
+                        "JOIN members m ON m.id = c.member_id WHERE c.active_loans > 0 " +
+                        "ORDER BY c.active_loans DESC, c.member_id LIMIT ?")) {
+                    stmt.setInt(1, limit);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            members.add(new CirculationReport.MemberLoans(rs.getInt(1), rs.getString(2),
+                                    rs.getInt(3), rs.getLong(4)));
+                        }
+                    }
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "SELECT month, loans, returns FROM monthly_circulation " +
+                        "WHERE month BETWEEN ? AND ? ORDER BY month")) {
+                    stmt.setDate(1, java.sql.Date.valueOf(from.atDay(1)));
+                    stmt.setDate(2, java.sql.Date.valueOf(to.atDay(1)));
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            monthly.add(new CirculationReport.MonthlyCirculation(
+                                    YearMonth.from(rs.getDate(1).toLocalDate()), rs.getLong(2), rs.getLong(3)));
+                        }
+                    }
+                }
+            }
+            return new CirculationReport(books, members, monthly);
+        });
     }
 
-    public boolean isBookAlreadyBorrowed(String bookCode) throws SQLException {
+    /**
+     * Recomputes the circulation aggregates from the full borrowings history. Writes to borrowings
+     * wait until it finishes.
+     */
+    public void rebuildCirculationStats() throws SQLException {
+        timed("rebuildCirculationStats", () -> {
+            try (Connection conn = DatabaseUtil.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement("SELECT rebuild_circulation_stats()")) {
+                stmt.execute();
+            }
+        });
+    }
+
+    /**
+     * Seeks past {@code after} (or back from {@code before}) on a unique key column, so the
+     * cost of a page does not depend on how deep into the table it is.
+     */
+    private <T> Page<T> seekPage(String select, String keyColumn, Object after, Object before,
+                                 int limit, RowMapper<T> mapper) throws SQLException {
+        boolean backward = after == null && before != null;
+        Object bound = backward ? before : after;
+
+        StringBuilder sql = new StringBuilder(select);
+        if (bound != null) {
+            sql.append(" WHERE ").append(keyColumn).append(backward ? " < ?" : " > ?");
+        }
+        sql.append(" ORDER BY ").append(keyColumn).append(backward ? " DESC" : " ASC").append(" LIMIT ?");
+
+        List<T> items = new ArrayList<>(limit + 1);
+        List<String> keys = new ArrayList<>(limit + 1);
         try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(
-                     "SELECT 1 FROM borrowings WHERE book_code = ? AND return_date IS NULL")) {
-            stmt.setString(1, bookCode);
-            return stmt.executeQuery().next();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            if (bound != null) {
+                stmt.setObject(index++, bound);
+            }
+            stmt.setInt(index, limit + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    items.add(mapper.map(rs));
+                    keys.add(rs.getString(keyColumn));
+                }
+            }
+        }
+
+        boolean more = items.size() > limit;
+        if (more) {
+            items.remove(limit);
+            keys.remove(limit);
+        }
+        if (backward) {
+            Collections.reverse(items);
+            Collections.reverse(keys);
+        }
+        String firstKey = keys.isEmpty() ? null : keys.get(0);
+        String lastKey = keys.isEmpty() ? null : keys.get(keys.size() - 1);
+        boolean hasPrevious = backward ? more : bound != null;
+        boolean hasNext = backward || more;
+        return new Page<>(items, firstKey, lastKey, hasPrevious, hasNext);
+    }
+
+    /**
+     * Walks every row past {@code after} through a server-side cursor. The PostgreSQL driver only
+     * honours the fetch size with autocommit off; otherwise it buffers the whole result set.
+     */
+    private <T> void streamRows(String select, String keyColumn, Object after,
+                                RowMapper<T> mapper, RowHandler<T> handler) throws SQLException, IOException {
+        String sql = select + (after != null ? " WHERE " + keyColumn + " > ?" : "") + " ORDER BY " + keyColumn;
+        LOG.debug("Streaming rows: {}", sql);
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(STREAM_FETCH_SIZE);
+                if (after != null) {
+                    stmt.setObject(1, after);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        handler.handle(mapper.map(rs));
+                    }
+                }
+            }
+            conn.commit();
         }
     }
+
+    private static Book mapBook(ResultSet rs) throws SQLException {
+        return new Book(
+                rs.getString("code"),
+                rs.getString("title"),
+                rs.getString("author")
+        );
+    }
+
+    private static Member mapMember(ResultSet rs) throws SQLException {
+        return new Member(
+                rs.getInt("id"),
+                rs.getString("name"),
+                rs.getString("email"),
+                rs.getDate("join_date").toLocalDate()
+        );
+    }
+
+    private static Borrowing mapBorrowing(ResultSet rs) throws SQLException {
+        return new Borrowing(
+                rs.getString("book_code"),
+                rs.getInt("member_id"),
+                rs.getDate("borrow_date").toLocalDate(),
+                rs.getDate("return_date") != null ? rs.getDate("return_date").toLocalDate() : null
+        );
+    }
+
+    private static BorrowingView mapBorrowingView(ResultSet rs) throws SQLException {
+        java.sql.Date returnDate = rs.getDate("return_date");
+        return new BorrowingView(
+                rs.getLong("id"),
+                rs.getString("book_code"),
+                rs.getString("book_title"),
+                rs.getInt("member_id"),
+                rs.getString("member_name"),
+                rs.getDate("borrow_date").toLocalDate(),
+                returnDate != null ? returnDate.toLocalDate() : null
+        );
+    }
 }
\ No newline at end of file
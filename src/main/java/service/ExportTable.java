@@ -0,0 +1,56 @@
+package service;
+
+import java.util.List;
+
+/**
+ * Tables that can be dumped through {@link DatabaseService#export}. Rows are written in primary key
+ * order; {@code dateColumn} is what a date-range filter applies to, if the table has one.
+ */
+public enum ExportTable {
+    BOOKS("books", "code", null,
+            List.of(new Column("code", false), new Column("title", false), new Column("author", false))),
+    MEMBERS("members", "id", "join_date",
+            List.of(new Column("id", true), new Column("name", false), new Column("email", false),
+                    new Column("join_date", false))),
+    BORROWINGS("borrowings", "id", "borrow_date",
+            List.of(new Column("id", true), new Column("book_code", false), new Column("member_id", true),
+                    new Column("borrow_date", false), new Column("return_date", false)));
+
+    /**
+     * @param numeric written unquoted in NDJSON
+     */
+    public record Column(String name, boolean numeric) {
+    }
+
+    private final String tableName;
+    private final String keyColumn;
+    private final String dateColumn;
+    private final List<Column> columns;
+
+    ExportTable(String tableName, String keyColumn, String dateColumn, List<Column> columns) {
+        this.tableName = tableName;
+        this.keyColumn = keyColumn;
+        this.dateColumn = dateColumn;
+        this.columns = columns;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    public String getDateColumn() {
+        return dateColumn;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    public boolean supportsDateFilter() {
+        return dateColumn != null;
+    }
+}
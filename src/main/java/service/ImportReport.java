@@ -0,0 +1,85 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. Only the first {@link #MAX_REPORTED_ERRORS} rejected rows are listed
+ * individually; the counters always cover every row.
+ */
+public class ImportReport {
+    public static final int MAX_REPORTED_ERRORS = 1_000;
+
+    public record RowError(long line, String code, String sqlState, String reason) {
+    }
+
+    private final String method;
+    private long received;
+    private long inserted;
+    private long duplicates;
+    private long invalid;
+    private long failed;
+    private final List<RowError> errors = new ArrayList<>();
+
+    public ImportReport(String method) {
+        this.method = method;
+    }
+
+    void received() {
+        received++;
+    }
+
+    void inserted(long count) {
+        inserted += count;
+    }
+
+    void duplicate(long line, String code) {
+        duplicates++;
+        addError(new RowError(line, code, "23505", "Book code already exists"));
+    }
+
+    void invalid(long line, String code, String reason) {
+        invalid++;
+        addError(new RowError(line, code, null, reason));
+    }
+
+    void failed(long line, String code, String sqlState, String reason) {
+        failed++;
+        addError(new RowError(line, code, sqlState, reason));
+    }
+
+    private void addError(RowError error) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public long getInserted() {
+        return inserted;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public long getInvalid() {
+        return invalid;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public List<RowError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+}
@@ -0,0 +1,263 @@
+package service;
+
+import model.Member;
+import util.Logger;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Type-ahead over member names, name words, emails and ids.
+ * <p>
+ * Most keys live in a sorted array searched by binary search, which stays compact at a million
+ * members. Changes since the array was built go to a small concurrent skip list, and a lookup
+ * merges the two. An entry points at the {@link Member} object it was made from and counts only
+ * while that object is still the current one for its id, so updates and deletes never have to
+ * touch the array. Once enough entries are stale or pending, the array is rebuilt from a snapshot on
+ * a background thread and swapped in, dropping the pending entries it covers; writers carry on
+ * meanwhile. Readers never lock.
+ */
+public class MemberSuggestIndex implements CatalogListener {
+    private static final Logger LOG = Logger.getLogger(MemberSuggestIndex.class);
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final char ID_SEPARATOR = '\u0000';
+    private static final int MIN_COMPACTION_THRESHOLD = 10_000;
+    private static final Executor COMPACTIONS = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "member-suggest-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private record Base(String[] keys, Member[] owners) {
+    }
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ConcurrentHashMap<Integer, Member> members = new ConcurrentHashMap<>();
+    // Keyed term + '\0' + id so one term can point at many members.
+    private final ConcurrentSkipListMap<String, Member> pending = new ConcurrentSkipListMap<>();
+    private volatile Base base = new Base(new String[0], new Member[0]);
+    private final Executor compactions;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    // Guarded by writeLock. staleEntries counts base and pending entries whose member has changed;
+    // generation moves on every rebuild(), so a compaction started before one is not swapped in.
+    private int staleEntries;
+    private int generation;
+
+    public MemberSuggestIndex() {
+        this(COMPACTIONS);
+    }
+
+    /**
+     * @param compactions runs the background rebuilds of the sorted array
+     */
+    MemberSuggestIndex(Executor compactions) {
+        this.compactions = compactions;
+    }
+
+    public void rebuild(Collection<Member> all) {
+        writeLock.lock();
+        try {
+            generation++;
+            members.clear();
+            for (Member member : all) {
+                members.put(member.getId(), member);
+            }
+            base = build(members.values());
+            pending.clear();
+            staleEntries = 0;
+        } finally {
+            writeLock.unlock();
+        }
+        LOG.info("Member suggest index built with {} members and {} keys", members.size(), base.keys().length);
+    }
+
+    @Override
+    public void memberSaved(Member member) {
+        writeLock.lock();
+        try {
+            Member previous = members.put(member.getId(), member);
+            if (previous != null) {
+                staleEntries += keys(previous).size();
+            }
+            for (String key : keys(member)) {
+                pending.put(key + ID_SEPARATOR + member.getId(), member);
+            }
+            compactIfNeeded();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void memberUpdated(int id, String name, String email) {
+        writeLock.lock();
+        try {
+            Member previous = members.get(id);
+            memberSaved(new Member(id, name, email, previous != null ? previous.getJoinDate() : null));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void memberDeleted(int id) {
+        writeLock.lock();
+        try {
+            Member removed = members.remove(id);
+            if (removed != null) {
+                staleEntries += keys(removed).size();
+                compactIfNeeded();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * @return up to {@code limit} distinct members with a name word, full name, email or id
+     *         starting with {@code prefix}, in key order
+     */
+    public List<Member> suggest(String prefix, int limit) {
+        String folded = fold(prefix);
+        if (folded.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Base snapshot = base;
+        String[] keys = snapshot.keys();
+        int i = lowerBound(keys, folded);
+        Iterator<Map.Entry<String, Member>> delta =
+                pending.subMap(folded, true, folded + Character.MAX_VALUE, false).entrySet().iterator();
+        Map.Entry<String, Member> next = delta.hasNext() ? delta.next() : null;
+
+        Set<Member> found = new LinkedHashSet<>();
+        while (found.size() < limit) {
+            boolean baseHas = i < keys.length && keys[i].startsWith(folded);
+            if (!baseHas && next == null) {
+                break;
+            }
+            Member candidate;
+            if (baseHas && (next == null || keys[i].compareTo(next.getKey()) <= 0)) {
+                candidate = snapshot.owners()[i++];
+            } else {
+                candidate = next.getValue();
+                next = delta.hasNext() ? delta.next() : null;
+            }
+            if (members.get(candidate.getId()) == candidate) {
+                found.add(candidate);
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    private void compactIfNeeded() {
+        int threshold = Math.max(MIN_COMPACTION_THRESHOLD, base.keys().length / 10);
+        if (pending.size() + staleEntries > threshold && compacting.compareAndSet(false, true)) {
+            int startGeneration = generation;
+            int staleBefore = staleEntries;
+            compactions.execute(() -> compact(startGeneration, staleBefore));
+        }
+    }
+
+    /**
+     * Builds the array from the members as they are now, without the lock, then swaps it in. Pending
+     * entries for members it includes are dropped; later ones stay pending. Entries made stale before
+     * the snapshot are gone with the old array, those made stale since then still count.
+     */
+    private void compact(int startGeneration, int staleBefore) {
+        try {
+            long start = System.nanoTime();
+            Map<Integer, Member> snapshot = new HashMap<>(members);
+            Base built = build(snapshot.values());
+            writeLock.lock();
+            try {
+                if (generation != startGeneration) {
+                    return;
+                }
+                base = built;
+                pending.values().removeIf(member -> snapshot.get(member.getId()) == member);
+                staleEntries = Math.max(0, staleEntries - staleBefore);
+            } finally {
+                writeLock.unlock();
+            }
+            LOG.debug("Compacted member suggest index to {} keys in {} ms", built.keys().length,
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    private static Base build(Collection<Member> all) {
+        List<Map.Entry<String, Member>> entries = new ArrayList<>(all.size() * 5);
+        for (Member member : all) {
+            for (String key : keys(member)) {
+                entries.add(Map.entry(key + ID_SEPARATOR + member.getId(), member));
+            }
+        }
+        entries.sort(Map.Entry.comparingByKey());
+        String[] keys = new String[entries.size()];
+        Member[] owners = new Member[entries.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = entries.get(i).getKey();
+            owners[i] = entries.get(i).getValue();
+        }
+        return new Base(keys, owners);
+    }
+
+    private static int lowerBound(String[] keys, String prefix) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Set<String> keys(Member member) {
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(Integer.toString(member.getId()));
+        String name = fold(member.getName());
+        if (!name.isEmpty()) {
+            keys.add(name);
+            keys.addAll(Arrays.asList(name.split(" ")));
+        }
+        String email = fold(member.getEmail());
+        if (!email.isEmpty()) {
+            keys.add(email);
+        }
+        return keys;
+    }
+
+    private static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String stripped = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SPACES.matcher(stripped.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+}
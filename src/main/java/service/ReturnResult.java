@@ -0,0 +1,8 @@
+package service;
+
+/**
+ * Outcome of {@link DatabaseService#returnLoan(String)}. {@code memberId} is the member who held
+ * the book when an active loan was closed, otherwise {@code null}.
+ */
+public record ReturnResult(boolean bookFound, boolean returned, Integer memberId) {
+}
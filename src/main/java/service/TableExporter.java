@@ -0,0 +1,181 @@
+package service;
+
+import org.postgresql.PGConnection;
+import util.DatabaseUtil;
+import util.JsonWriter;
+import util.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Streams a whole table to an output stream in constant memory. CSV goes through
+ * {@code COPY ... TO STDOUT}, which hands the server's bytes straight to the stream; NDJSON (and CSV
+ * on drivers without the copy API) reads a forward-only cursor. COPY's text format would
+ * backslash-escape JSON produced by the server, so NDJSON is always encoded here.
+ */
+class TableExporter {
+    private static final Logger LOG = Logger.getLogger(TableExporter.class);
+    private static final int FETCH_SIZE = 1_000;
+    private static final int WRITE_BUFFER_CHARS = 64 * 1024;
+
+    private final ExportTable table;
+    private final ExportFormat format;
+    private final LocalDate from;
+    private final LocalDate to;
+
+    TableExporter(ExportTable table, ExportFormat format, LocalDate from, LocalDate to) {
+        if ((from != null || to != null) && !table.supportsDateFilter()) {
+            throw new IllegalArgumentException("Date filters are not supported for " + table.getTableName());
+        }
+        this.table = table;
+        this.format = format;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @return number of rows written
+     */
+    long run(OutputStream out) throws SQLException, IOException {
+        long start = System.nanoTime();
+        long rows;
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            if (format == ExportFormat.CSV && conn.isWrapperFor(PGConnection.class)) {
+                rows = copyOut(conn, out);
+            } else {
+                rows = cursorOut(conn, out);
+            }
+        }
+        LOG.info("Exported {} rows of {} as {} in {} ms", rows, table.getTableName(), format,
+                (System.nanoTime() - start) / 1_000_000);
+        return rows;
+    }
+
+    private long copyOut(Connection conn, OutputStream out) throws SQLException, IOException {
+        // COPY takes no bind parameters; the bounds are LocalDates, so their ISO form is safe to inline.
+        String where = where(from != null ? "'" + from + "'::date" : null, to != null ? "'" + to + "'::date" : null);
+        String sql = "COPY (SELECT " + columnList() + " FROM " + table.getTableName() + where
+                + " ORDER BY " + table.getKeyColumn() + ") TO STDOUT WITH (FORMAT csv, HEADER)";
+        LOG.debug("Export: {}", sql);
+        return conn.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+    }
+
+    private long cursorOut(Connection conn, OutputStream out) throws SQLException, IOException {
+        String sql = "SELECT " + columnList() + " FROM " + table.getTableName()
+                + where(from != null ? "?" : null, to != null ? "?" : null)
+                + " ORDER BY " + table.getKeyColumn();
+        LOG.debug("Export: {}", sql);
+
+        List<ExportTable.Column> columns = table.getColumns();
+        Writer csv = null;
+        JsonWriter json = null;
+        if (format == ExportFormat.CSV) {
+            csv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_CHARS);
+            csv.write(columnList());
+            csv.write('\n');
+        } else {
+            json = new JsonWriter(out);
+        }
+
+        long rows = 0;
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(FETCH_SIZE);
+            int index = 1;
+            if (from != null) {
+                stmt.setDate(index++, Date.valueOf(from));
+            }
+            if (to != null) {
+                stmt.setDate(index, Date.valueOf(to));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (csv != null) {
+                        writeCsv(csv, rs, columns);
+                    } else {
+                        writeJson(json, rs, columns);
+                    }
+                    rows++;
+                }
+            }
+        }
+        conn.commit();
+        if (csv != null) {
+            csv.flush();
+        } else {
+            json.flush();
+        }
+        return rows;
+    }
+
+    private String where(String lower, String upper) {
+        if (lower == null && upper == null) {
+            return "";
+        }
+        String column = table.getDateColumn();
+        if (lower != null && upper != null) {
+            return " WHERE " + column + " >= " + lower + " AND " + column + " <= " + upper;
+        }
+        return lower != null ? " WHERE " + column + " >= " + lower : " WHERE " + column + " <= " + upper;
+    }
+
+    private String columnList() {
+        return table.getColumns().stream().map(ExportTable.Column::name).collect(Collectors.joining(","));
+    }
+
+    // Same shape as COPY's CSV output: NULL is an empty unquoted field, quoting only where needed.
+    private static void writeCsv(Writer writer, ResultSet rs, List<ExportTable.Column> columns)
+            throws SQLException, IOException {
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String value = rs.getString(i + 1);
+            if (value == null) {
+                continue;
+            }
+            if (value.isEmpty() || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write('\n');
+    }
+
+    private static void writeJson(JsonWriter json, ResultSet rs, List<ExportTable.Column> columns)
+            throws SQLException, IOException {
+        json.beginObject();
+        for (int i = 0; i < columns.size(); i++) {
+            ExportTable.Column column = columns.get(i);
+            json.name(column.name());
+            if (column.numeric()) {
+                long value = rs.getLong(i + 1);
+                if (rs.wasNull()) {
+                    json.nullValue();
+                } else {
+                    json.value(value);
+                }
+            } else {
+                json.value(rs.getString(i + 1));
+            }
+        }
+        json.endObject().newline();
+    }
+}
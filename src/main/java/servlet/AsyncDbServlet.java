@@ -0,0 +1,169 @@
+package servlet;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import util.DbExecutor;
+import util.Logger;
+import util.SqlProfiler;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Base for servlets whose handlers block on JDBC. Each request is put in async mode and its
+ * {@code doGet}/{@code doPost}/... runs on {@link DbExecutor}, so the connector thread goes straight
+ * back to accepting connections. When the executor's queue is full the request is answered at once
+ * with 503 and {@code Retry-After}. Requests that cannot go async (a filter or container without
+ * async support, or {@code DB_ASYNC_ENABLED=false}) are handled inline as before. So is everything
+ * once {@link #setAsyncEnabled} has turned the hand-off off, as {@code Main} does when each request
+ * already runs on its own virtual thread; inline requests have no deadline. {@link #setInlineLimit}
+ * caps how many run inline at once, answering the rest with the same 503 as a full queue.
+ *
+ * <p>The worker always completes the response itself. The container's async timeout is off, since
+ * on expiry it would complete and recycle the request while the worker may still be writing to it.
+ * Instead, after {@link #timeoutMillis} the request's SQL is cancelled through
+ * {@link SqlProfiler.RequestStats#cancel}, which makes the handler fail and finish. Streaming
+ * responses ({@code ?stream=true}) have no deadline.
+ */
+public abstract class AsyncDbServlet extends HttpServlet {
+    private static final Logger LOG = Logger.getLogger(AsyncDbServlet.class);
+    private static volatile boolean enabled = !"false".equalsIgnoreCase(System.getenv("DB_ASYNC_ENABLED"));
+    private static volatile Semaphore inlineSlots;
+    private static volatile int inlineLimit;
+    private static final LongAdder INLINE_REJECTED = new LongAdder();
+    private static final long TIMEOUT_MS = 60_000;
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final ScheduledThreadPoolExecutor WATCHDOG = new ScheduledThreadPoolExecutor(1, task -> {
+        Thread thread = new Thread(task, "db-request-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        WATCHDOG.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Turns the executor hand-off on or off for all servlets; call before the server starts.
+     * {@code DB_ASYNC_ENABLED=false} sets the initial value.
+     */
+    public static void setAsyncEnabled(boolean asyncEnabled) {
+        enabled = asyncEnabled;
+    }
+
+    static boolean isAsyncEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Caps the requests handled inline at once; 0 for no cap. Call before the server starts.
+     */
+    public static void setInlineLimit(int maxInFlight) {
+        inlineLimit = maxInFlight;
+        inlineSlots = maxInFlight > 0 ? new Semaphore(maxInFlight) : null;
+    }
+
+    public static int getInlineActiveCount() {
+        Semaphore slots = inlineSlots;
+        return slots == null ? 0 : inlineLimit - slots.availablePermits();
+    }
+
+    public static long getInlineRejectedCount() {
+        return INLINE_REJECTED.sum();
+    }
+
+    /**
+     * How long the request may run before its SQL is cancelled; 0 for no limit.
+     */
+    protected long timeoutMillis(HttpServletRequest request) {
+        return Boolean.parseBoolean(request.getParameter("stream")) ? 0 : TIMEOUT_MS;
+    }
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (!enabled || !request.isAsyncSupported()) {
+            serviceInline(request, response);
+            return;
+        }
+
+        AsyncContext async = request.startAsync();
+        async.setTimeout(0);
+
+        // Carry the request's SQL round-trip count over to the worker thread; it is also the handle
+        // the deadline uses to cancel the request's SQL.
+        SqlProfiler.RequestStats current = SqlProfiler.current();
+        SqlProfiler.RequestStats sqlStats = current != null ? current : new SqlProfiler.RequestStats();
+        long timeout = timeoutMillis(request);
+        ScheduledFuture<?> deadline = timeout <= 0 ? null : WATCHDOG.schedule(() -> {
+            if (sqlStats.cancel()) {
+                LOG.warn("{} {} timed out after {} ms, cancelling its SQL",
+                        request.getMethod(), request.getRequestURI(), timeout);
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+        try {
+            DbExecutor.execute(() -> {
+                SqlProfiler.RequestStats previous = SqlProfiler.bind(sqlStats);
+                try {
+                    if (sqlStats.isCancelled()) {
+                        // Waited in the queue past its deadline.
+                        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Request timed out");
+                    } else {
+                        AsyncDbServlet.super.service(request, response);
+                    }
+                } catch (Exception e) {
+                    LOG.error("{} {} failed", request.getMethod(), request.getRequestURI(), e);
+                    if (!response.isCommitted()) {
+                        try {
+                            response.sendError(sqlStats.isCancelled() ? HttpServletResponse.SC_SERVICE_UNAVAILABLE
+                                    : HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                        } catch (IOException ignored) {
+                            // client is gone
+                        }
+                    }
+                } finally {
+                    if (deadline != null) {
+                        deadline.cancel(false);
+                    }
+                    SqlProfiler.bind(previous);
+                    async.complete();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+            response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server busy, please retry");
+            async.complete();
+        }
+    }
+
+    private void serviceInline(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        Semaphore slots = inlineSlots;
+        if (slots == null) {
+            super.service(request, response);
+            return;
+        }
+        if (!slots.tryAcquire()) {
+            INLINE_REJECTED.increment();
+            response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server busy, please retry");
+            return;
+        }
+        try {
+            super.service(request, response);
+        } finally {
+            slots.release();
+        }
+    }
+}
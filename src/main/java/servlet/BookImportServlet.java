@@ -0,0 +1,84 @@
+package servlet;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import service.BookImportSource;
+import service.DatabaseService;
+import service.ImportReport;
+import util.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+/**
+ * {@code POST /books/import}: bulk catalog load from a raw CSV ({@code text/csv}, the default) or
+ * NDJSON ({@code application/x-ndjson}) request body, parsed as it arrives. Query parameters:
+ * {@code mode=copy|batch} and {@code batchSize}. Replies with a plain-text report listing each
+ * rejected row.
+ */
+public class BookImportServlet extends HttpServlet {
+    private static final Logger LOG = Logger.getLogger(BookImportServlet.class);
+    private static final int DEFAULT_BATCH_SIZE = 1_000;
+    private static final int MAX_BATCH_SIZE = 50_000;
+
+    private final DatabaseService databaseService;
+
+    public BookImportServlet(DatabaseService databaseService) {
+        this.databaseService = databaseService;
+    }
+
+    @Override
+    public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        int batchSize = DEFAULT_BATCH_SIZE;
+        String batchSizeParam = request.getParameter("batchSize");
+        if (batchSizeParam != null && !batchSizeParam.isEmpty()) {
+            try {
+                batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, Integer.parseInt(batchSizeParam)));
+            } catch (NumberFormatException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "batchSize must be a number");
+                return;
+            }
+        }
+        boolean useCopy = !"batch".equalsIgnoreCase(request.getParameter("mode"));
+
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8), 64 * 1024);
+        String contentType = request.getContentType() != null ? request.getContentType().toLowerCase() : "";
+        BookImportSource source = contentType.contains("ndjson") || contentType.contains("jsonl")
+                ? BookImportSource.ndjson(reader)
+                : BookImportSource.csv(reader);
+
+        ImportReport report;
+        try {
+            report = databaseService.importBooks(source, batchSize, useCopy);
+        } catch (SQLException e) {
+            LOG.error("Book import failed", e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
+            return;
+        } catch (IOException e) {
+            LOG.warn("Book import aborted: {}", e.getMessage());
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Malformed upload: " + e.getMessage());
+            return;
+        } finally {
+            PageCache.BOOKS.bump();
+        }
+
+        response.setContentType("text/plain;charset=UTF-8");
+        PrintWriter out = response.getWriter();
+        out.println("method=" + report.getMethod());
+        out.println("received=" + report.getReceived());
+        out.println("inserted=" + report.getInserted());
+        out.println("duplicates=" + report.getDuplicates());
+        out.println("invalid=" + report.getInvalid());
+        out.println("failed=" + report.getFailed());
+        for (ImportReport.RowError error : report.getErrors()) {
+            out.println("line " + error.line() + ": code '" + error.code() + "' rejected: " + error.reason()
+                    + (error.sqlState() != null ? " (" + error.sqlState() + ")" : ""));
+        }
+    }
+}
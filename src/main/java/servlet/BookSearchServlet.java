@@ -0,0 +1,72 @@
+package servlet;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import service.BookSearchIndex;
+import util.JsonWriter;
+import util.TemplateEngine;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code GET /books/search?q=}: ranked title/author search from the in-memory index. The last word
+ * also matches as a prefix unless {@code prefix=false}; {@code limit} caps the hits as on the list
+ * pages.
+ */
+public class BookSearchServlet extends HttpServlet {
+    private final BookSearchIndex index;
+    private TemplateEngine templates;
+
+    public BookSearchServlet(BookSearchIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public void init() {
+        templates = TemplateEngine.forContext(getServletContext());
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String query = request.getParameter("q") != null ? request.getParameter("q").trim() : "";
+        boolean prefix = !"false".equalsIgnoreCase(request.getParameter("prefix"));
+        int limit = Pagination.parseLimit(request);
+
+        long start = System.nanoTime();
+        List<BookSearchIndex.Hit> hits = index.search(query, limit, prefix);
+        long tookMicros = (System.nanoTime() - start) / 1_000;
+
+        if (Json.wanted(request)) {
+            response.setContentType(Json.CONTENT_TYPE);
+            JsonWriter json = new JsonWriter(response.getOutputStream());
+            json.beginObject()
+                    .field("query", query)
+                    .field("tookMicros", tookMicros)
+                    .name("hits").beginArray();
+            for (BookSearchIndex.Hit hit : hits) {
+                json.beginObject()
+                        .field("code", hit.book().code())
+                        .field("title", hit.book().title())
+                        .field("author", hit.book().author())
+                        .field("score", String.format("%.4f", hit.score()))
+                        .endObject();
+            }
+            json.endArray().endObject().flush();
+            return;
+        }
+
+        String summary = query.isEmpty()
+                ? ""
+                : "<div class=\"success\">" + hits.size() + " result(s) for \"" + Html.escape(query) + "\"</div>";
+        response.setContentType("text/html;charset=UTF-8");
+        TableWriter table = new TableWriter(response.getOutputStream(), templates.get("books.html"), "books",
+                Map.of("messages", summary), false);
+        for (BookSearchIndex.Hit hit : hits) {
+            table.row(hit.book().code(), hit.book().title(), hit.book().author());
+        }
+        table.finish();
+    }
+}
@@ -1,88 +1,114 @@
 package servlet;
 
-import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import model.Book;
+import model.Page;
 import service.DatabaseService;
+import util.FormBodyDecoder;
+import util.JsonWriter;
+import util.Logger;
+import util.TemplateEngine;
 
 import java.io.*;
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 
 
-public class BookServlet extends HttpServlet {
+public class BookServlet extends AsyncDbServlet {
+    private static final Logger LOG = Logger.getLogger(BookServlet.class);
+
     private final DatabaseService databaseService;
+    private TemplateEngine templates;
 
     public BookServlet(DatabaseService databaseService) {
         this.databaseService = databaseService;
     }
 
+    @Override
+    public void init() {
+        templates = TemplateEngine.forContext(getServletContext());
+    }
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        try {
-            List<Book> books = databaseService.getAllBooks();
-            String template = loadTemplate(request);
-
-            StringBuilder booksHtml = new StringBuilder();
-            for (Book book : books) {
-                booksHtml.append("<tr>")
-                        .append("<td>").append(book.code()).append("</td>")
-                        .append("<td>").append(book.title()).append("</td>")
-                        .append("<td>").append(book.author()).append("</td>")
-                        .append("</tr>");
-            }
+        if (Boolean.parseBoolean(request.getParameter("stream"))) {
+            streamBooks(request, response);
+            return;
+        }
 
-            String errorMessage = request.getParameter("error");
-            String successMessage = request.getParameter("success");
-            StringBuilder messageHtml = new StringBuilder();
-            if (errorMessage != null) {
-                messageHtml.append("<div class=\"error\">").append(errorMessage).append("</div>");
-            }
-            if (successMessage != null) {
-                messageHtml.append("<div class=\"success\">").append(successMessage).append("</div>");
+        try {
+            if (Json.wanted(request)) {
+                PageCache.BOOKS.serve(request, response, Json.CONTENT_TYPE, out -> renderBooksJson(request, out));
+            } else {
+                PageCache.BOOKS.serve(request, response, out -> renderBooks(request, out));
             }
-
-            String html = template.replace("${books}", booksHtml.toString())
-                    .replace("${messages}", messageHtml.toString());
-
-            response.setContentType("text/html");
-            PrintWriter out = response.getWriter();
-            out.println(html);
-
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOG.error("Failed to render books page", e);
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
         }
     }
 
-    private String loadTemplate(HttpServletRequest request) throws IOException {
-        StringBuilder template = new StringBuilder();
-        System.out.println("Loading template: " + "books.html");
+    private void renderBooksJson(HttpServletRequest request, OutputStream out) throws IOException, SQLException {
+        Page<Book> page = databaseService.getBooksPage(
+                Pagination.cursor(request, "after"), Pagination.cursor(request, "before"),
+                Pagination.parseLimit(request));
+        JsonWriter json = new JsonWriter(out);
+        Json.page(json, page, Json::book);
+        json.flush();
+    }
 
-        InputStream inputStream = request.getServletContext().getResourceAsStream("/templates/" + "books.html");
-        if (inputStream == null) {
-            throw new IOException("Template file not found: " + "books.html");
+    private void renderBooks(HttpServletRequest request, OutputStream out) throws IOException, SQLException {
+        int limit = Pagination.parseLimit(request);
+        Page<Book> page = databaseService.getBooksPage(
+                Pagination.cursor(request, "after"), Pagination.cursor(request, "before"), limit);
+        Map<String, String> values = Map.of(
+                "messages", Html.messages(request),
+                "pagination", Pagination.links("/books", page, limit));
+
+        TableWriter table = new TableWriter(out, templates.get("books.html"), "books", values, false);
+        for (Book book : page.items()) {
+            table.row(book.code(), book.title(), book.author());
         }
+        table.finish();
+    }
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                template.append(line).append("\n");
-                System.out.println("Read line: " + line);
-            }
+    /**
+     * Streaming mode ({@code ?stream=true}): renders every row past {@code after} from a
+     * server-side cursor without buffering the table in memory.
+     */
+    private void streamBooks(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (Json.wanted(request)) {
+            streamBooksJson(Pagination.cursor(request, "after"), response);
+            return;
+        }
+
+        response.setContentType("text/html;charset=UTF-8");
+        TableWriter table = new TableWriter(
+                response.getOutputStream(), templates.get("books.html"), "books", Map.of(), true);
+        try {
+            databaseService.streamBooks(Pagination.cursor(request, "after"),
+                    book -> table.row(book.code(), book.title(), book.author()));
+            table.finish();
+        } catch (SQLException e) {
+            // Headers and part of the table are already on the wire; all we can do is stop.
+            LOG.error("Failed while streaming books page", e);
+        }
+    }
+
+    private void streamBooksJson(String after, HttpServletResponse response) throws IOException {
+        response.setContentType(Json.CONTENT_TYPE);
+        JsonWriter json = new JsonWriter(response.getOutputStream());
+        try {
+            json.beginArray();
+            databaseService.streamBooks(after, book -> Json.book(json, book));
+            json.endArray().flush();
+        } catch (SQLException e) {
+            // As with the HTML stream, a truncated array tells the client the dump is incomplete.
+            json.flush();
+            LOG.error("Failed while streaming books as JSON", e);
         }
-        System.out.println("Template content: " + template);
-        return template.toString();
     }
 
     @Override
@@ -92,26 +118,32 @@ public class BookServlet extends HttpServlet {
         String author = request.getParameter("author");
 
         if (code == null || code.isEmpty() || title == null || title.isEmpty() || author == null || author.isEmpty()) {
-            response.sendRedirect("/books?error=All fields are required");
+            Json.replyOrRedirect(request, response, "/books",
+                    HttpServletResponse.SC_BAD_REQUEST, "All fields are required");
             return;
         }
 
         try {
             Integer.parseInt(code);
         } catch (NumberFormatException e) {
-            response.sendRedirect("/books?error=Book code must be a number");
+            Json.replyOrRedirect(request, response, "/books",
+                    HttpServletResponse.SC_BAD_REQUEST, "Book code must be a number");
             return;
         }
 
         try {
             databaseService.addBook(code, title, author);
-            response.sendRedirect("/books?success=Book added successfully");
+            PageCache.BOOKS.bump();
+            Json.replyOrRedirect(request, response, "/books",
+                    HttpServletResponse.SC_CREATED, "Book added successfully");
         } catch (SQLException e) {
             if (e.getSQLState().equals("23505")) { // Unique violation
-                response.sendRedirect("/books?error=Book code already exists");
+                Json.replyOrRedirect(request, response, "/books",
+                        HttpServletResponse.SC_CONFLICT, "Book code already exists");
             } else {
-                e.printStackTrace();
-                response.sendRedirect("/books?error=Database error");
+                LOG.error("Failed to add book {}", code, e);
+                Json.replyOrRedirect(request, response, "/books",
+                        HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
             }
         }
     }
@@ -120,7 +152,7 @@ public class BookServlet extends HttpServlet {
     public void doPut(HttpServletRequest request, HttpServletResponse response) throws IOException {
         String path = request.getPathInfo();
         if (path == null || path.equals("/")) {
-            response.sendRedirect("/books?error=Missing book code");
+            Json.replyOrRedirect(request, response, "/books", HttpServletResponse.SC_BAD_REQUEST, "Missing book code");
             return;
         }
 
@@ -128,21 +160,29 @@ public class BookServlet extends HttpServlet {
 
         try {
 
-            String body = request.getReader().lines().collect(Collectors.joining());
-            Map<String, String> params = parseFormData(body);
+            FormBodyDecoder params = FormBodyDecoder.read(request.getInputStream(),
+                    request.getContentLengthLong(), FormBodyDecoder.DEFAULT_MAX_BYTES);
             String title = params.get("title");
             String author = params.get("author");
 
-            if (title == null || author == null) {
-                response.sendRedirect("/books?error=Missing parameters: title or author");
+            if (title == null || title.isEmpty() || author == null || author.isEmpty()) {
+                Json.replyOrRedirect(request, response, "/books",
+                        HttpServletResponse.SC_BAD_REQUEST, "Missing parameters: title or author");
                 return;
             }
 
             databaseService.updateBook(code, title, author);
-            response.sendRedirect("/books?success=Book updated successfully");
+            PageCache.BOOKS.bump();
+            Json.replyOrRedirect(request, response, "/books", HttpServletResponse.SC_OK, "Book updated successfully");
+        } catch (FormBodyDecoder.TooLargeException e) {
+            Json.replyOrRedirect(request, response, "/books",
+                    HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body too large");
+        } catch (IllegalArgumentException e) {
+            Json.replyOrRedirect(request, response, "/books", HttpServletResponse.SC_BAD_REQUEST, "Malformed form body");
         } catch (SQLException e) {
-            e.printStackTrace();
-            response.sendRedirect("/books?error=Database error");
+            LOG.error("Failed to update book {}", code, e);
+            Json.replyOrRedirect(request, response, "/books",
+                    HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
         }
     }
 
@@ -150,36 +190,24 @@ public class BookServlet extends HttpServlet {
     public void doDelete(HttpServletRequest request, HttpServletResponse response) throws IOException {
         String path = request.getPathInfo();
         if (path == null || path.equals("/")) {
-            response.sendRedirect("/books?error=Missing book code");
+            Json.replyOrRedirect(request, response, "/books", HttpServletResponse.SC_BAD_REQUEST, "Missing book code");
             return;
         }
 
         String code = path.substring(1);
         try {
             databaseService.deleteBook(code);
-            response.sendRedirect("/books?success=Book deleted successfully");
+            PageCache.BOOKS.bump();
+            Json.replyOrRedirect(request, response, "/books", HttpServletResponse.SC_OK, "Book deleted successfully");
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOG.error("Failed to delete book {}", code, e);
             if (e.getMessage().contains("No book found with code")) {
-                response.sendRedirect("/books?error=Book not found");
+                Json.replyOrRedirect(request, response, "/books", HttpServletResponse.SC_NOT_FOUND, "Book not found");
             } else {
-                response.sendRedirect("/books?error=Database error");
-            }
-        }
-    }
-
-    private Map<String, String> parseFormData(String formData) {
-        Map<String, String> params = new HashMap<>();
-        String[] pairs = formData.split("&");
-        for (String pair : pairs) {
-            String[] keyValue = pair.split("=");
-            if (keyValue.length == 2) {
-                String key = URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8);
-                String value = URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8);
-                params.put(key, value);
+                Json.replyOrRedirect(request, response, "/books",
+                        HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
             }
         }
-        return params;
     }
 
 }
\ No newline at end of file
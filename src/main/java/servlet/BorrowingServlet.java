@@ -1,80 +1,134 @@
 package servlet;
 
-import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import model.Borrowing;
+import model.BorrowingView;
+import model.Page;
+import service.BorrowResult;
 import service.DatabaseService;
+import service.ReturnResult;
+import util.JsonWriter;
+import util.Logger;
+import util.TemplateEngine;
 
 import java.io.*;
 import java.sql.SQLException;
-import java.util.List;
+import java.util.Map;
+
+public class BorrowingServlet extends AsyncDbServlet {
+    private static final Logger LOG = Logger.getLogger(BorrowingServlet.class);
 
-public class BorrowingServlet extends HttpServlet {
     private final DatabaseService databaseService;
+    private TemplateEngine templates;
 
     public BorrowingServlet(DatabaseService databaseService) {
         this.databaseService = databaseService;
     }
 
 
+    @Override
+    public void init() {
+        templates = TemplateEngine.forContext(getServletContext());
+    }
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (Boolean.parseBoolean(request.getParameter("stream"))) {
+            streamBorrowings(request, response);
+            return;
+        }
+
         try {
-            List<Borrowing> borrowings = databaseService.getAllBorrowings();
-            String template = loadTemplate(request);
-
-            StringBuilder borrowingsHtml = new StringBuilder();
-            for (Borrowing borrowing : borrowings) {
-                borrowingsHtml.append("<tr>")
-                        .append("<td>").append(borrowing.bookCode()).append("</td>")
-                        .append("<td>").append(borrowing.memberId()).append("</td>")
-                        .append("<td>").append(borrowing.borrowDate()).append("</td>")
-                        .append("<td>").append(borrowing.returnDate() != null ? borrowing.returnDate() : "Not Returned").append("</td>")
-                        .append("</tr>");
+            if (Json.wanted(request)) {
+                PageCache.BORROWINGS.serve(request, response, Json.CONTENT_TYPE,
+                        out -> renderBorrowingsJson(request, out));
+            } else {
+                PageCache.BORROWINGS.serve(request, response, out -> renderBorrowings(request, out));
             }
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page cursor");
+        } catch (SQLException e) {
+            LOG.error("Failed to render borrowings page", e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
+        }
+    }
 
-            String errorMessage = request.getParameter("error");
-            String successMessage = request.getParameter("success");
-            StringBuilder messageHtml = new StringBuilder();
-            if (errorMessage != null) {
-                messageHtml.append("<div class=\"error\">").append(errorMessage).append("</div>");
-            }
-            if (successMessage != null) {
-                messageHtml.append("<div class=\"success\">").append(successMessage).append("</div>");
-            }
+    private void renderBorrowingsJson(HttpServletRequest request, OutputStream out) throws IOException, SQLException {
+        Page<BorrowingView> page = databaseService.getBorrowingViewsPage(
+                Pagination.longCursor(request, "after"), Pagination.longCursor(request, "before"),
+                Pagination.parseLimit(request));
+        JsonWriter json = new JsonWriter(out);
+        Json.page(json, page, Json::borrowingView);
+        json.flush();
+    }
+
+    private void renderBorrowings(HttpServletRequest request, OutputStream out) throws IOException, SQLException {
+        int limit = Pagination.parseLimit(request);
+        Page<BorrowingView> page = databaseService.getBorrowingViewsPage(
+                Pagination.longCursor(request, "after"), Pagination.longCursor(request, "before"), limit);
+        Map<String, String> values = Map.of(
+                "messages", Html.messages(request),
+                "pagination", Pagination.links("/borrow", page, limit));
+
+        TableWriter table = new TableWriter(out, templates.get("borrowings.html"), "borrowings", values, false);
+        for (BorrowingView borrowing : page.items()) {
+            row(table, borrowing);
+        }
+        table.finish();
+    }
+
+    private static void row(TableWriter table, BorrowingView borrowing) throws IOException {
+        table.row(borrowing.bookCode(), orDash(borrowing.bookTitle()), borrowing.memberId(),
+                orDash(borrowing.memberName()), borrowing.borrowDate(),
+                borrowing.returnDate() != null ? borrowing.returnDate() : "Not Returned");
+    }
+
+    private static String orDash(String value) {
+        return value != null ? value : "-";
+    }
 
-            String html = template.replace("${borrowings}", borrowingsHtml.toString())
-                    .replace("${messages}", messageHtml.toString());
+    /**
+     * Streaming mode ({@code ?stream=true}): renders every row past {@code after} from a
+     * server-side cursor without buffering the table in memory.
+     */
+    private void streamBorrowings(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Long after;
+        try {
+            after = Pagination.longCursor(request, "after");
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page cursor");
+            return;
+        }
 
-            response.setContentType("text/html");
-            PrintWriter out = response.getWriter();
-            out.println(html);
+        if (Json.wanted(request)) {
+            streamBorrowingsJson(after, response);
+            return;
+        }
 
+        response.setContentType("text/html;charset=UTF-8");
+        TableWriter table = new TableWriter(
+                response.getOutputStream(), templates.get("borrowings.html"), "borrowings", Map.of(), true);
+        try {
+            databaseService.streamBorrowingViews(after, borrowing -> row(table, borrowing));
+            table.finish();
         } catch (SQLException e) {
-            e.printStackTrace();
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
+            // Headers and part of the table are already on the wire; all we can do is stop.
+            LOG.error("Failed while streaming borrowings page", e);
         }
     }
 
-    private String loadTemplate(HttpServletRequest request) throws IOException {
-        StringBuilder template = new StringBuilder();
-        System.out.println("Loading template: " + "borrowings.html");
-
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(request.getServletContext().getResourceAsStream("/templates/" + "borrowings.html")))
-        ) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                template.append(line).append("\n");
-                System.out.println("Read line: " + line);
-            }
-        } catch (NullPointerException e) {
-            throw new IOException("Template file not found: " + "borrowings.html", e);
+    private void streamBorrowingsJson(Long after, HttpServletResponse response) throws IOException {
+        response.setContentType(Json.CONTENT_TYPE);
+        JsonWriter json = new JsonWriter(response.getOutputStream());
+        try {
+            json.beginArray();
+            databaseService.streamBorrowingViews(after, borrowing -> Json.borrowingView(json, borrowing));
+            json.endArray().flush();
+        } catch (SQLException e) {
+            // As with the HTML stream, a truncated array tells the client the dump is incomplete.
+            json.flush();
+            LOG.error("Failed while streaming borrowings as JSON", e);
         }
-
-        System.out.println("Template content: " + template);
-        return template.toString();
     }
 
     @Override
@@ -92,31 +146,27 @@ public class BorrowingServlet extends HttpServlet {
         String bookCode = request.getParameter("bookCode");
 
         if (bookCode == null || bookCode.isEmpty()) {
-            response.sendRedirect("/borrow?error=Missing book code");
+            Json.replyOrRedirect(request, response, "/borrow", HttpServletResponse.SC_BAD_REQUEST, "Missing book code");
             return;
         }
 
         try {
-            if (databaseService.bookExists(bookCode)) {
-                response.sendRedirect("/borrow?error=Book not found");
-                return;
-            }
-
-            if (!databaseService.isBookAlreadyBorrowed(bookCode)) {
-                response.sendRedirect("/borrow?error=No active borrowing found for this book");
-                return;
-            }
-
-            int rowsUpdated = databaseService.returnBook(bookCode);
-            if (rowsUpdated == 0) {
-                response.sendRedirect("/borrow?error=Failed to return the book");
+            ReturnResult result = databaseService.returnLoan(bookCode);
+            if (!result.bookFound()) {
+                Json.replyOrRedirect(request, response, "/borrow", HttpServletResponse.SC_NOT_FOUND, "Book not found");
+            } else if (!result.returned()) {
+                Json.replyOrRedirect(request, response, "/borrow",
+                        HttpServletResponse.SC_CONFLICT, "No active borrowing found for this book");
             } else {
-                response.sendRedirect("/borrow?success=Book returned successfully");
+                PageCache.BORROWINGS.bump();
+                Json.replyOrRedirect(request, response, "/borrow",
+                        HttpServletResponse.SC_OK, "Book returned successfully");
             }
 
         } catch (SQLException e) {
-            e.printStackTrace();
-            response.sendRedirect("/borrow?error=Database error");
+            LOG.error("Failed to return book {}", bookCode, e);
+            Json.replyOrRedirect(request, response, "/borrow",
+                    HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
         }
     }
 
@@ -125,36 +175,36 @@ public class BorrowingServlet extends HttpServlet {
         String memberIdStr = request.getParameter("memberId");
 
         if (bookCode == null || bookCode.isEmpty() || memberIdStr == null || memberIdStr.isEmpty()) {
-            response.sendRedirect("/borrow?error=All fields are required");
+            Json.replyOrRedirect(request, response, "/borrow",
+                    HttpServletResponse.SC_BAD_REQUEST, "All fields are required");
             return;
         }
 
         try {
             int memberId = Integer.parseInt(memberIdStr);
 
-            if (!databaseService.memberExists(memberId)) {
-                response.sendRedirect("/borrow?error=Member not found");
-                return;
+            BorrowResult result = databaseService.borrow(bookCode, memberId);
+            switch (result) {
+                case MEMBER_NOT_FOUND -> Json.replyOrRedirect(request, response, "/borrow",
+                        HttpServletResponse.SC_NOT_FOUND, "Member not found");
+                case BOOK_NOT_FOUND -> Json.replyOrRedirect(request, response, "/borrow",
+                        HttpServletResponse.SC_NOT_FOUND, "Book not found");
+                case ALREADY_BORROWED -> Json.replyOrRedirect(request, response, "/borrow",
+                        HttpServletResponse.SC_CONFLICT, "Book is already borrowed");
+                case SUCCESS -> {
+                    PageCache.BORROWINGS.bump();
+                    Json.replyOrRedirect(request, response, "/borrow",
+                            HttpServletResponse.SC_CREATED, "Book borrowed successfully");
+                }
             }
 
-            if (databaseService.bookExists(bookCode)) {
-                response.sendRedirect("/borrow?error=Book not found");
-                return;
-            }
-
-            if (databaseService.isBookAlreadyBorrowed(bookCode)) {
-                response.sendRedirect("/borrow?error=Book is already borrowed");
-                return;
-            }
-
-            databaseService.borrowBook(bookCode, memberId);
-            response.sendRedirect("/borrow?success=Book borrowed successfully");
-
         } catch (NumberFormatException e) {
-            response.sendRedirect("/borrow?error=Member ID must be a number");
+            Json.replyOrRedirect(request, response, "/borrow",
+                    HttpServletResponse.SC_BAD_REQUEST, "Member ID must be a number");
         } catch (SQLException e) {
-            e.printStackTrace();
-            response.sendRedirect("/borrow?error=Database error");
+            LOG.error("Failed to borrow book {}", bookCode, e);
+            Json.replyOrRedirect(request, response, "/borrow",
+                    HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
         }
     }
 }
\ No newline at end of file
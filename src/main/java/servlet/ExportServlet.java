@@ -0,0 +1,109 @@
+package servlet;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import service.DatabaseService;
+import service.ExportFormat;
+import service.ExportTable;
+import util.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Full dump of one table ({@code /books/export}, {@code /members/export}, {@code /borrow/export}).
+ * Query parameters: {@code format=csv|ndjson} (or {@code Accept: application/x-ndjson}) and, where
+ * the table has a date column, inclusive ISO {@code from}/{@code to} dates. The body is gzip-encoded
+ * when the client accepts it.
+ */
+public class ExportServlet extends HttpServlet {
+    private static final Logger LOG = Logger.getLogger(ExportServlet.class);
+    private static final int GZIP_BUFFER_BYTES = 64 * 1024;
+
+    private final DatabaseService databaseService;
+    private final ExportTable table;
+
+    public ExportServlet(DatabaseService databaseService, ExportTable table) {
+        this.databaseService = databaseService;
+        this.table = table;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ExportFormat format = parseFormat(request);
+        if (format == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "format must be csv or ndjson");
+            return;
+        }
+
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = parseDate(request.getParameter("from"));
+            to = parseDate(request.getParameter("to"));
+        } catch (DateTimeParseException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Dates must be in YYYY-MM-DD format");
+            return;
+        }
+        if ((from != null || to != null) && !table.supportsDateFilter()) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    "Date filters are not supported for " + table.getTableName());
+            return;
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "from must not be after to");
+            return;
+        }
+
+        response.setContentType(format.getContentType() + ";charset=UTF-8");
+        response.setHeader("Content-Disposition",
+                "attachment; filename=\"" + table.getTableName() + "." + format.getExtension() + "\"");
+        response.setHeader("Vary", "Accept-Encoding");
+        boolean gzip = "gzip".equals(PageCache.negotiate(request.getHeader("Accept-Encoding")));
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+
+        OutputStream out = response.getOutputStream();
+        if (gzip) {
+            out = new GZIPOutputStream(out, GZIP_BUFFER_BYTES);
+        }
+        try {
+            databaseService.export(table, format, from, to, out);
+            if (out instanceof GZIPOutputStream gzipOut) {
+                gzipOut.finish();
+            }
+            out.flush();
+        } catch (SQLException e) {
+            LOG.error("Export of {} failed", table.getTableName(), e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
+            }
+            // Otherwise part of the file is already on the wire; the truncated body is all we can give.
+        }
+    }
+
+    private static ExportFormat parseFormat(HttpServletRequest request) {
+        String format = request.getParameter("format");
+        if (format == null || format.isEmpty()) {
+            String accept = request.getHeader("Accept");
+            return accept != null && accept.contains("application/x-ndjson") ? ExportFormat.NDJSON : ExportFormat.CSV;
+        }
+        for (ExportFormat candidate : ExportFormat.values()) {
+            if (candidate.getExtension().equalsIgnoreCase(format)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static LocalDate parseDate(String value) {
+        return value == null || value.isEmpty() ? null : LocalDate.parse(value);
+    }
+}
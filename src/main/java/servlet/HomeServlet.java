@@ -3,17 +3,22 @@ package servlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import util.TemplateEngine;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.Map;
 
 public class HomeServlet extends HttpServlet {
+    private TemplateEngine templates;
+
+    @Override
+    public void init() {
+        templates = TemplateEngine.forContext(getServletContext());
+    }
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        response.setContentType("text/html");
-        String homePage = new String(Files.readAllBytes(Paths.get("C:/Users/Admin/Downloads/Servlets/Mziuri/src/main/webapp/templates/home.html")));
-        response.getWriter().write(homePage);
+        response.setContentType("text/html;charset=UTF-8");
+        templates.get("home.html").render(response.getOutputStream(), Map.of());
     }
 }
-
@@ -0,0 +1,43 @@
+package servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+final class Html {
+    private Html() {
+    }
+
+    static String escape(String value) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            String replacement = switch (value.charAt(i)) {
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '&' -> "&amp;";
+                case '"' -> "&quot;";
+                default -> null;
+            };
+            if (replacement != null) {
+                if (escaped == null) {
+                    escaped = new StringBuilder(value.length() + 16).append(value, 0, i);
+                }
+                escaped.append(replacement);
+            } else if (escaped != null) {
+                escaped.append(value.charAt(i));
+            }
+        }
+        return escaped == null ? value : escaped.toString();
+    }
+
+    static String messages(HttpServletRequest request) {
+        String errorMessage = request.getParameter("error");
+        String successMessage = request.getParameter("success");
+        StringBuilder messageHtml = new StringBuilder();
+        if (errorMessage != null) {
+            messageHtml.append("<div class=\"error\">").append(escape(errorMessage)).append("</div>");
+        }
+        if (successMessage != null) {
+            messageHtml.append("<div class=\"success\">").append(escape(successMessage)).append("</div>");
+        }
+        return messageHtml.toString();
+    }
+}
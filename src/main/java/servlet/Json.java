@@ -0,0 +1,123 @@
+package servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import model.Book;
+import model.BorrowingView;
+import model.Member;
+import model.Page;
+import util.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * JSON counterpart of {@link Html}: content negotiation, the record shapes, and status bodies for
+ * mutations. Clients that ask for JSON get the status code and a {@code {"status","message"}} body
+ * in place of the redirect or error page the browser forms rely on.
+ */
+final class Json {
+    static final String CONTENT_TYPE = "application/json;charset=UTF-8";
+
+    @FunctionalInterface
+    interface ItemWriter<T> {
+        void write(JsonWriter json, T item) throws IOException;
+    }
+
+    private Json() {
+    }
+
+    static boolean wanted(HttpServletRequest request) {
+        String accept = request.getHeader("Accept");
+        return accept != null && accept.contains("application/json");
+    }
+
+    static void book(JsonWriter json, Book book) throws IOException {
+        json.beginObject()
+                .field("code", book.code())
+                .field("title", book.title())
+                .field("author", book.author())
+                .endObject();
+    }
+
+    static void member(JsonWriter json, Member member) throws IOException {
+        json.beginObject()
+                .field("id", member.getId())
+                .field("name", member.getName())
+                .field("email", member.getEmail())
+                .field("joinDate", member.getJoinDate())
+                .endObject();
+    }
+
+    static void borrowingView(JsonWriter json, BorrowingView borrowing) throws IOException {
+        json.beginObject()
+                .field("id", borrowing.id())
+                .field("bookCode", borrowing.bookCode())
+                .field("bookTitle", borrowing.bookTitle())
+                .field("memberId", borrowing.memberId())
+                .field("memberName", borrowing.memberName())
+                .field("borrowDate", borrowing.borrowDate())
+                .field("returnDate", borrowing.returnDate())
+                .endObject();
+    }
+
+    static <T> void page(JsonWriter json, Page<T> page, ItemWriter<T> itemWriter) throws IOException {
+        json.beginObject().name("items").beginArray();
+        for (T item : page.items()) {
+            itemWriter.write(json, item);
+        }
+        json.endArray()
+                .field("firstKey", page.firstKey())
+                .field("lastKey", page.lastKey())
+                .field("hasPrevious", page.hasPrevious())
+                .field("hasNext", page.hasNext())
+                .endObject();
+    }
+
+    static void status(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType(CONTENT_TYPE);
+        JsonWriter json = new JsonWriter(response.getOutputStream());
+        json.beginObject()
+                .field("status", status < 400 ? "success" : "error")
+                .field("message", message)
+                .endObject()
+                .flush();
+    }
+
+    /**
+     * JSON status body, or the redirect back to {@code listPath} with a {@code success}/{@code error}
+     * message that the HTML forms expect.
+     */
+    static void replyOrRedirect(HttpServletRequest request, HttpServletResponse response, String listPath,
+                                int status, String message) throws IOException {
+        if (wanted(request)) {
+            status(response, status, message);
+        } else {
+            response.sendRedirect(listPath + (status < 400 ? "?success=" : "?error=") + message);
+        }
+    }
+
+    /**
+     * JSON status body, or a plain {@code sendError} page.
+     */
+    static void replyOrError(HttpServletRequest request, HttpServletResponse response, int status, String message)
+            throws IOException {
+        if (wanted(request)) {
+            status(response, status, message);
+        } else {
+            response.sendError(status, message);
+        }
+    }
+
+    /**
+     * JSON status body, or just the status line.
+     */
+    static void replyOrStatus(HttpServletRequest request, HttpServletResponse response, int status, String message)
+            throws IOException {
+        if (wanted(request)) {
+            status(response, status, message);
+        } else {
+            response.setStatus(status);
+        }
+    }
+}
@@ -1,74 +1,120 @@
 package servlet;
 
-import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import model.Member;
+import model.Page;
 import service.DatabaseService;
+import util.FormBodyDecoder;
+import util.JsonWriter;
+import util.Logger;
+import util.TemplateEngine;
 
 import java.io.*;
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
-public class MemberServlet extends HttpServlet {
+public class MemberServlet extends AsyncDbServlet {
+    private static final Logger LOG = Logger.getLogger(MemberServlet.class);
+
     private final DatabaseService databaseService;
+    private TemplateEngine templates;
 
     public MemberServlet(DatabaseService databaseService) {
         this.databaseService = databaseService;
     }
 
+    @Override
+    public void init() {
+        templates = TemplateEngine.forContext(getServletContext());
+    }
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (Boolean.parseBoolean(request.getParameter("stream"))) {
+            streamMembers(request, response);
+            return;
+        }
+
         try {
-            List<Member> members = databaseService.getAllMembers();
-            String template = loadTemplate(request);
-
-            StringBuilder membersHtml = new StringBuilder();
-            for (Member member : members) {
-                membersHtml.append("<tr>")
-                        .append("<td>").append(member.getId()).append("</td>")
-                        .append("<td>").append(member.getName()).append("</td>")
-                        .append("<td>").append(member.getEmail()).append("</td>")
-                        .append("<td>").append(member.getJoinDate()).append("</td>")
-                        .append("</tr>");
+            if (Json.wanted(request)) {
+                PageCache.MEMBERS.serve(request, response, Json.CONTENT_TYPE, out -> renderMembersJson(request, out));
+            } else {
+                PageCache.MEMBERS.serve(request, response, out -> renderMembers(request, out));
             }
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page cursor");
+        } catch (SQLException e) {
+            LOG.error("Failed to render members page", e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
+        }
+    }
 
-            String html = template.replace("${members}", membersHtml.toString());
+    private void renderMembersJson(HttpServletRequest request, OutputStream out) throws IOException, SQLException {
+        Page<Member> page = databaseService.getMembersPage(
+                Pagination.intCursor(request, "after"), Pagination.intCursor(request, "before"),
+                Pagination.parseLimit(request));
+        JsonWriter json = new JsonWriter(out);
+        Json.page(json, page, Json::member);
+        json.flush();
+    }
 
-            response.setContentType("text/html");
-            PrintWriter out = response.getWriter();
-            out.println(html);
-            System.out.println("Final HTML: " + html);
+    private void renderMembers(HttpServletRequest request, OutputStream out) throws IOException, SQLException {
+        int limit = Pagination.parseLimit(request);
+        Page<Member> page = databaseService.getMembersPage(
+                Pagination.intCursor(request, "after"), Pagination.intCursor(request, "before"), limit);
+        Map<String, String> values = Map.of("pagination", Pagination.links("/members", page, limit));
 
-        } catch (SQLException e) {
-            e.printStackTrace();
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
+        TableWriter table = new TableWriter(out, templates.get("members.html"), "members", values, false);
+        for (Member member : page.items()) {
+            table.row(member.getId(), member.getName(), member.getEmail(), member.getJoinDate());
         }
+        table.finish();
     }
 
-    private String loadTemplate(HttpServletRequest request) throws IOException {
-        StringBuilder template = new StringBuilder();
-        System.out.println("Loading template: " + "members.html");
-
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(request.getServletContext().getResourceAsStream("/templates/" + "members.html")))
-        ) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                template.append(line).append("\n");
-                System.out.println("Read line: " + line);
-            }
-        } catch (NullPointerException e) {
-            throw new IOException("Template file not found: " + "members.html", e);
+    /**
+     * Streaming mode ({@code ?stream=true}): renders every row past {@code after} from a
+     * server-side cursor without buffering the table in memory.
+     */
+    private void streamMembers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Integer after;
+        try {
+            after = Pagination.intCursor(request, "after");
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page cursor");
+            return;
         }
 
-        System.out.println("Template content: " + template);
-        return template.toString();
+        if (Json.wanted(request)) {
+            streamMembersJson(after, response);
+            return;
+        }
+
+        response.setContentType("text/html;charset=UTF-8");
+        TableWriter table = new TableWriter(
+                response.getOutputStream(), templates.get("members.html"), "members", Map.of(), true);
+        try {
+            databaseService.streamMembers(after,
+                    member -> table.row(member.getId(), member.getName(), member.getEmail(), member.getJoinDate()));
+            table.finish();
+        } catch (SQLException e) {
+            // Headers and part of the table are already on the wire; all we can do is stop.
+            LOG.error("Failed while streaming members page", e);
+        }
+    }
+
+    private void streamMembersJson(Integer after, HttpServletResponse response) throws IOException {
+        response.setContentType(Json.CONTENT_TYPE);
+        JsonWriter json = new JsonWriter(response.getOutputStream());
+        try {
+            json.beginArray();
+            databaseService.streamMembers(after, member -> Json.member(json, member));
+            json.endArray().flush();
+        } catch (SQLException e) {
+            // As with the HTML stream, a truncated array tells the client the dump is incomplete.
+            json.flush();
+            LOG.error("Failed while streaming members as JSON", e);
+        }
     }
 
     @Override
@@ -77,24 +123,29 @@ public class MemberServlet extends HttpServlet {
         String email = request.getParameter("email");
 
         if (name == null || name.isEmpty() || email == null || email.isEmpty()) {
-            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "All fields are required");
+            Json.replyOrError(request, response, HttpServletResponse.SC_BAD_REQUEST, "All fields are required");
             return;
         }
 
         if (!isValidEmail(email)) {
-            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid email format");
+            Json.replyOrError(request, response, HttpServletResponse.SC_BAD_REQUEST, "Invalid email format");
             return;
         }
 
         try {
             databaseService.addMember(name, email);
-            response.sendRedirect(request.getContextPath() + "/members");
+            PageCache.MEMBERS.bump();
+            if (Json.wanted(request)) {
+                Json.status(response, HttpServletResponse.SC_CREATED, "Member added successfully");
+            } else {
+                response.sendRedirect(request.getContextPath() + "/members");
+            }
         } catch (SQLException e) {
             if (e.getSQLState().equals("23505")) {
-                response.sendError(HttpServletResponse.SC_CONFLICT, "Email already registered");
+                Json.replyOrError(request, response, HttpServletResponse.SC_CONFLICT, "Email already registered");
             } else {
-                e.printStackTrace();
-                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
+                LOG.error("Failed to add member {}", email, e);
+                Json.replyOrError(request, response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
             }
         }
     }
@@ -108,78 +159,71 @@ public class MemberServlet extends HttpServlet {
     public void doPut(HttpServletRequest request, HttpServletResponse response) throws IOException {
         String path = request.getPathInfo();
         if (path == null || path.equals("/")) {
-            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing member ID");
+            Json.replyOrError(request, response, HttpServletResponse.SC_BAD_REQUEST, "Missing member ID");
             return;
         }
 
         String idStr = path.substring(1);
         if (!idStr.matches("\\d+")) {
-            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid member ID format");
+            Json.replyOrError(request, response, HttpServletResponse.SC_BAD_REQUEST, "Invalid member ID format");
             return;
         }
 
         try {
-            String body = request.getReader().lines().collect(Collectors.joining());
-            Map<String, String> params = parseFormData(body);
+            FormBodyDecoder params = FormBodyDecoder.read(request.getInputStream(),
+                    request.getContentLengthLong(), FormBodyDecoder.DEFAULT_MAX_BYTES);
             String name = params.get("name");
             String email = params.get("email");
 
-            if (name == null || email == null) {
-                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing parameters: name or email");
+            if (name == null || name.isEmpty() || email == null || email.isEmpty()) {
+                Json.replyOrError(request, response,
+                        HttpServletResponse.SC_BAD_REQUEST, "Missing parameters: name or email");
                 return;
             }
 
             int id = Integer.parseInt(idStr);
             databaseService.updateMember(id, name, email);
-            response.setStatus(HttpServletResponse.SC_OK);
+            PageCache.MEMBERS.bump();
+            Json.replyOrStatus(request, response, HttpServletResponse.SC_OK, "Member updated successfully");
         } catch (NumberFormatException e) {
-            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid member ID format");
+            Json.replyOrError(request, response, HttpServletResponse.SC_BAD_REQUEST, "Invalid member ID format");
+        } catch (FormBodyDecoder.TooLargeException e) {
+            Json.replyOrError(request, response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body too large");
+        } catch (IllegalArgumentException e) {
+            Json.replyOrError(request, response, HttpServletResponse.SC_BAD_REQUEST, "Malformed form body");
         } catch (SQLException e) {
-            e.printStackTrace();
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
-        }
-    }
-
-    private Map<String, String> parseFormData(String formData) {
-        Map<String, String> params = new HashMap<>();
-        String[] pairs = formData.split("&");
-        for (String pair : pairs) {
-            String[] keyValue = pair.split("=");
-            if (keyValue.length == 2) {
-                String key = URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8);
-                String value = URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8);
-                params.put(key, value);
-            }
+            LOG.error("Failed to update member {}", idStr, e);
+            Json.replyOrError(request, response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
         }
-        return params;
     }
 
     @Override
     public void doDelete(HttpServletRequest request, HttpServletResponse response) throws IOException {
         String path = request.getPathInfo();
         if (path == null || path.equals("/")) {
-            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing member ID");
+            Json.replyOrError(request, response, HttpServletResponse.SC_BAD_REQUEST, "Missing member ID");
             return;
         }
 
         String idStr = path.substring(1);
         if (!idStr.matches("\\d+")) {
-            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid member ID format");
+            Json.replyOrError(request, response, HttpServletResponse.SC_BAD_REQUEST, "Invalid member ID format");
             return;
         }
 
         try {
             int id = Integer.parseInt(idStr);
             databaseService.deleteMember(id);
-            response.setStatus(HttpServletResponse.SC_OK);
+            PageCache.MEMBERS.bump();
+            Json.replyOrStatus(request, response, HttpServletResponse.SC_OK, "Member deleted successfully");
         } catch (NumberFormatException e) {
-            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid member ID format");
+            Json.replyOrError(request, response, HttpServletResponse.SC_BAD_REQUEST, "Invalid member ID format");
         } catch (SQLException e) {
-            e.printStackTrace();
+            LOG.error("Failed to delete member {}", idStr, e);
             if (e.getMessage().contains("No member found with ID")) {
-                response.sendError(HttpServletResponse.SC_NOT_FOUND, "Member not found");
+                Json.replyOrError(request, response, HttpServletResponse.SC_NOT_FOUND, "Member not found");
             } else {
-                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
+                Json.replyOrError(request, response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
             }
         }
     }
@@ -0,0 +1,52 @@
+package servlet;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import model.Member;
+import service.MemberSuggestIndex;
+import util.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * {@code GET /members/suggest?prefix=}: JSON array of up to {@code limit} (default 10) members whose
+ * name, email or id starts with the prefix, for the borrow desk's member field.
+ */
+public class MemberSuggestServlet extends HttpServlet {
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int MAX_LIMIT = 50;
+
+    private final MemberSuggestIndex index;
+
+    public MemberSuggestServlet(MemberSuggestIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        int limit = DEFAULT_LIMIT;
+        String limitParam = request.getParameter("limit");
+        if (limitParam != null && !limitParam.isEmpty()) {
+            try {
+                limit = Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limitParam)));
+            } catch (NumberFormatException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "limit must be a number");
+                return;
+            }
+        }
+
+        response.setContentType(Json.CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-cache");
+        JsonWriter json = new JsonWriter(response.getOutputStream());
+        json.beginArray();
+        for (Member member : index.suggest(request.getParameter("prefix"), limit)) {
+            json.beginObject()
+                    .field("id", member.getId())
+                    .field("name", member.getName())
+                    .field("email", member.getEmail())
+                    .endObject();
+        }
+        json.endArray().flush();
+    }
+}
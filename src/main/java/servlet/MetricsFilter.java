@@ -0,0 +1,94 @@
+package servlet;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletMapping;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import util.Logger;
+import util.Metrics;
+import util.SqlProfiler;
+
+import java.io.IOException;
+
+/**
+ * Times every request and counts it by status under the servlet mapping that served it. Requests
+ * that go async (see {@link AsyncDbServlet}) are recorded when the async cycle completes, so the
+ * time includes any wait for a DB worker.
+ *
+ * <p>Each request also gets a {@link SqlProfiler.RequestStats}; one that makes more SQL round trips
+ * than {@code SQL_REQUEST_BUDGET} is logged with the statements it ran.
+ */
+public class MetricsFilter implements Filter {
+    private static final Logger LOG = Logger.getLogger(MetricsFilter.class);
+
+    private final Metrics metrics;
+
+    public MetricsFilter(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse resp, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) resp;
+        long start = System.nanoTime();
+        SqlProfiler.RequestStats sqlStats = new SqlProfiler.RequestStats();
+        SqlProfiler.RequestStats previous = SqlProfiler.bind(sqlStats);
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            SqlProfiler.bind(previous);
+            Metrics.Route route = metrics.route(request.getMethod(), route(request));
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        route.record(response.getStatus(), start);
+                        recordSql(request, route, sqlStats);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                // An exception escaping the chain becomes a 500 once the container handles it.
+                route.record(failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus(), start);
+                recordSql(request, route, sqlStats);
+            }
+        }
+    }
+
+    private static void recordSql(HttpServletRequest request, Metrics.Route route, SqlProfiler.RequestStats sqlStats) {
+        boolean overBudget = sqlStats.isOverBudget();
+        route.recordDbRoundTrips(sqlStats.getRoundTrips(), overBudget);
+        if (overBudget) {
+            LOG.warn("{} {} made {} SQL round trips (budget {}), {} ms in SQL: {}", request.getMethod(),
+                    request.getRequestURI(), sqlStats.getRoundTrips(), SqlProfiler.getRequestBudget(),
+                    sqlStats.getSqlNanos() / 1_000_000, sqlStats.describeStatements());
+        }
+    }
+
+    private static String route(HttpServletRequest request) {
+        HttpServletMapping mapping = request.getHttpServletMapping();
+        String pattern = mapping != null ? mapping.getPattern() : null;
+        return pattern == null || pattern.isEmpty() ? "/" : pattern;
+    }
+}
@@ -0,0 +1,31 @@
+package servlet;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import util.Metrics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * {@code GET /metrics} in the Prometheus text exposition format.
+ */
+public class MetricsServlet extends HttpServlet {
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final Metrics metrics;
+
+    public MetricsServlet(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-store");
+        PrintWriter out = response.getWriter();
+        metrics.writePrometheus(out);
+        out.flush();
+    }
+}
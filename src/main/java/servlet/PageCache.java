@@ -0,0 +1,307 @@
+package servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import util.LruCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Conditional GET support for a list page. The strong ETag is a checksum of the rendered body, so
+ * it changes with the data whoever wrote it: another instance, psql or a trigger as much as this
+ * JVM. Each content-coding gets its own tag ({@code -gz}, {@code -df}) since the bodies differ byte
+ * for byte; {@code If-None-Match} compares weakly, so any coding's tag, strong or {@code W/}, matches.
+ * <p>
+ * The last rendering of each query is kept for a few seconds together with lazily built gzip and
+ * deflate encodings, and answers requests (304s included) without touching the database. Every
+ * write through the servlets bumps the version of the table it changed, which drops that table's
+ * pages and those of pages joining it in (its dependencies) at once; changes made elsewhere show
+ * up when the entry expires.
+ * <p>
+ * Caching and tagging need the whole body in memory, which gives up streaming. A page that grows
+ * past {@link #MAX_BUFFERED_BYTES} is streamed on from there instead, without ETag and uncached.
+ */
+final class PageCache {
+    static final PageCache BOOKS = new PageCache("books");
+    static final PageCache MEMBERS = new PageCache("members");
+    // Loans are listed with book titles and member names.
+    static final PageCache BORROWINGS = new PageCache("borrowings", BOOKS, MEMBERS);
+
+    @FunctionalInterface
+    interface Renderer {
+        void render(OutputStream out) throws IOException, SQLException;
+    }
+
+    private static final int MAX_CACHED_PAGES = 256;
+    static final int MAX_BUFFERED_BYTES = 256 * 1024;
+
+    private final String name;
+    private final PageCache[] dependencies;
+    private final AtomicLong version = new AtomicLong();
+    private final LruCache<String, RenderedPage> pages;
+
+    private PageCache(String name, PageCache... dependencies) {
+        this(name, 5, TimeUnit.SECONDS, dependencies);
+    }
+
+    /**
+     * @param ttl how long a rendering is reused, and so how stale a page written to elsewhere may be
+     */
+    PageCache(String name, long ttl, TimeUnit unit, PageCache... dependencies) {
+        this.name = name;
+        this.dependencies = dependencies;
+        this.pages = new LruCache<>(MAX_CACHED_PAGES, ttl, unit);
+    }
+
+    void bump() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Own version plus those of the dependencies. Each only ever grows, so any bump changes the sum.
+     */
+    long version() {
+        long sum = version.get();
+        for (PageCache dependency : dependencies) {
+            sum += dependency.version();
+        }
+        return sum;
+    }
+
+    void serve(HttpServletRequest request, HttpServletResponse response, Renderer renderer)
+            throws IOException, SQLException {
+        serve(request, response, "text/html;charset=UTF-8", renderer);
+    }
+
+    /**
+     * @param contentType the representation being rendered; each one is cached and tagged separately
+     */
+    void serve(HttpServletRequest request, HttpServletResponse response, String contentType, Renderer renderer)
+            throws IOException, SQLException {
+        String query = contentType + "|" + (request.getQueryString() != null ? request.getQueryString() : "");
+        long current = version();
+        String encoding = negotiate(request.getHeader("Accept-Encoding"));
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("Vary", "Accept, Accept-Encoding");
+
+        RenderedPage page = pages.get(query);
+        if (page == null || page.version != current) {
+            long generation = pages.generation();
+            SpillingOutputStream out = new SpillingOutputStream(() -> openStream(response, contentType, encoding));
+            renderer.render(out);
+            if (out.spilled()) {
+                out.finish();
+                return;
+            }
+            page = new RenderedPage(current, name, out.buffered());
+            pages.putIfCurrent(query, page, generation);
+        }
+
+        response.setHeader("ETag", "\"" + page.validator + codingSuffix(encoding) + "\"");
+        if (matches(request.getHeader("If-None-Match"), page.validator)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(contentType);
+        byte[] body;
+        if ("gzip".equals(encoding)) {
+            body = page.gzip();
+        } else if ("deflate".equals(encoding)) {
+            body = page.deflate();
+        } else {
+            body = page.raw;
+        }
+        if (encoding != null) {
+            response.setHeader("Content-Encoding", encoding);
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private static OutputStream openStream(HttpServletResponse response, String contentType, String encoding)
+            throws IOException {
+        response.setContentType(contentType);
+        if (encoding != null) {
+            response.setHeader("Content-Encoding", encoding);
+        }
+        OutputStream out = response.getOutputStream();
+        if ("gzip".equals(encoding)) {
+            return new GZIPOutputStream(out);
+        }
+        return "deflate".equals(encoding) ? new DeflaterOutputStream(out) : out;
+    }
+
+    private static String codingSuffix(String encoding) {
+        if ("gzip".equals(encoding)) {
+            return "-gz";
+        }
+        return "deflate".equals(encoding) ? "-df" : "";
+    }
+
+    /**
+     * Weak comparison against {@code validator}, the tag without quotes or coding suffix.
+     */
+    static boolean matches(String ifNoneMatch, String validator) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.length() < 2 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+                continue;
+            }
+            tag = tag.substring(1, tag.length() - 1);
+            if (tag.endsWith("-gz") || tag.endsWith("-df")) {
+                tag = tag.substring(0, tag.length() - 3);
+            }
+            if (tag.equals(validator)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return {@code gzip}, {@code deflate}, or {@code null} for identity
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        boolean deflate = false;
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.trim().split(";");
+            String coding = parts[0].trim().toLowerCase();
+            boolean refused = parts.length > 1 && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            if (refused) {
+                continue;
+            }
+            if (coding.equals("gzip")) {
+                return "gzip";
+            }
+            if (coding.equals("deflate")) {
+                deflate = true;
+            }
+        }
+        return deflate ? "deflate" : null;
+    }
+
+    private interface StreamOpener {
+        OutputStream open() throws IOException;
+    }
+
+    /**
+     * Buffers up to {@link #MAX_BUFFERED_BYTES}; past that, opens the response and writes through.
+     */
+    private static final class SpillingOutputStream extends OutputStream {
+        private final StreamOpener opener;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+        private OutputStream target;
+
+        private SpillingOutputStream(StreamOpener opener) {
+            this.opener = opener;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (target == null && buffer.size() + len > MAX_BUFFERED_BYTES) {
+                target = opener.open();
+                buffer.writeTo(target);
+                buffer = null;
+            }
+            if (target != null) {
+                target.write(b, off, len);
+            } else {
+                buffer.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        private boolean spilled() {
+            return target != null;
+        }
+
+        private byte[] buffered() {
+            return buffer.toByteArray();
+        }
+
+        /**
+         * Ends a spilled body. A compressed one is closed to write its trailer and free the deflater.
+         */
+        private void finish() throws IOException {
+            if (target instanceof DeflaterOutputStream) {
+                target.close();
+            } else {
+                target.flush();
+            }
+        }
+    }
+
+    private static final class RenderedPage {
+        private final long version;
+        private final String validator;
+        private final byte[] raw;
+        private volatile byte[] gzip;
+        private volatile byte[] deflate;
+
+        private RenderedPage(long version, String name, byte[] raw) {
+            this.version = version;
+            this.raw = raw;
+            CRC32 crc = new CRC32();
+            crc.update(raw);
+            this.validator = name + "-" + Integer.toHexString(raw.length) + "-" + Long.toHexString(crc.getValue());
+        }
+
+        private byte[] gzip() throws IOException {
+            byte[] encoded = gzip;
+            if (encoded == null) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(raw.length / 4 + 64);
+                try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+                    out.write(raw);
+                }
+                encoded = buffer.toByteArray();
+                gzip = encoded;
+            }
+            return encoded;
+        }
+
+        private byte[] deflate() throws IOException {
+            byte[] encoded = deflate;
+            if (encoded == null) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(raw.length / 4 + 64);
+                try (DeflaterOutputStream out = new DeflaterOutputStream(buffer)) {
+                    out.write(raw);
+                }
+                encoded = buffer.toByteArray();
+                deflate = encoded;
+            }
+            return encoded;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import model.Page;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+final class Pagination {
+    static final int DEFAULT_LIMIT = 50;
+    static final int MAX_LIMIT = 500;
+
+    private Pagination() {
+    }
+
+    static int parseLimit(HttpServletRequest request) {
+        String limit = request.getParameter("limit");
+        if (limit == null || limit.isEmpty()) {
+            return DEFAULT_LIMIT;
+        }
+        try {
+            return Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limit)));
+        } catch (NumberFormatException e) {
+            return DEFAULT_LIMIT;
+        }
+    }
+
+    static String cursor(HttpServletRequest request, String name) {
+        String value = request.getParameter(name);
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * @throws NumberFormatException if the cursor is present but not numeric
+     */
+    static Integer intCursor(HttpServletRequest request, String name) {
+        String value = cursor(request, name);
+        return value == null ? null : Integer.valueOf(value);
+    }
+
+    /**
+     * @throws NumberFormatException if the cursor is present but not numeric
+     */
+    static Long longCursor(HttpServletRequest request, String name) {
+        String value = cursor(request, name);
+        return value == null ? null : Long.valueOf(value);
+    }
+
+    static String links(String basePath, Page<?> page, int limit) {
+        StringBuilder html = new StringBuilder("<div class=\"pagination\">");
+        if (page.hasPrevious() && page.firstKey() != null) {
+            html.append("<a href=\"").append(basePath).append("?before=").append(encode(page.firstKey()))
+                    .append("&amp;limit=").append(limit).append("\">&laquo; Previous</a>");
+        }
+        if (page.hasNext() && page.lastKey() != null) {
+            html.append("<a href=\"").append(basePath).append("?after=").append(encode(page.lastKey()))
+                    .append("&amp;limit=").append(limit).append("\">Next &raquo;</a>");
+        }
+        return html.append("</div>").toString();
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
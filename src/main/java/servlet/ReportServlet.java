@@ -0,0 +1,91 @@
+package servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import service.CirculationReport;
+import service.DatabaseService;
+import util.JsonWriter;
+import util.Logger;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+
+/**
+ * {@code GET /reports}: circulation statistics as JSON. {@code limit} caps the top-book and
+ * active-member lists as on the list pages; {@code from}/{@code to} ({@code YYYY-MM}, inclusive)
+ * select the monthly figures and default to the last twelve months. Reads the aggregates from
+ * {@code db/migration/V2__circulation_stats.sql}, so the schema must be migrated first.
+ */
+public class ReportServlet extends AsyncDbServlet {
+    private static final Logger LOG = Logger.getLogger(ReportServlet.class);
+    private static final int DEFAULT_MONTHS = 12;
+
+    private final DatabaseService databaseService;
+
+    public ReportServlet(DatabaseService databaseService) {
+        this.databaseService = databaseService;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        YearMonth to;
+        YearMonth from;
+        try {
+            to = parseMonth(request.getParameter("to"), YearMonth.now());
+            from = parseMonth(request.getParameter("from"), to.minusMonths(DEFAULT_MONTHS - 1));
+        } catch (DateTimeParseException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Months must be in YYYY-MM format");
+            return;
+        }
+        if (from.isAfter(to)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "from must not be after to");
+            return;
+        }
+
+        CirculationReport report;
+        try {
+            report = databaseService.getCirculationReport(Pagination.parseLimit(request), from, to);
+        } catch (SQLException e) {
+            LOG.error("Circulation report failed", e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Database error");
+            return;
+        }
+
+        response.setContentType(Json.CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-cache");
+        JsonWriter json = new JsonWriter(response.getOutputStream());
+        json.beginObject().name("topBooks").beginArray();
+        for (CirculationReport.BookLoans book : report.topBooks()) {
+            json.beginObject()
+                    .field("code", book.code())
+                    .field("title", book.title())
+                    .field("author", book.author())
+                    .field("loans", book.loans())
+                    .endObject();
+        }
+        json.endArray().name("activeMembers").beginArray();
+        for (CirculationReport.MemberLoans member : report.activeMembers()) {
+            json.beginObject()
+                    .field("id", member.id())
+                    .field("name", member.name())
+                    .field("activeLoans", member.activeLoans())
+                    .field("totalLoans", member.totalLoans())
+                    .endObject();
+        }
+        json.endArray().name("monthly").beginArray();
+        for (CirculationReport.MonthlyCirculation month : report.monthly()) {
+            json.beginObject()
+                    .field("month", month.month().toString())
+                    .field("loans", month.loans())
+                    .field("returns", month.returns())
+                    .endObject();
+        }
+        json.endArray().endObject().flush();
+    }
+
+    private static YearMonth parseMonth(String value, YearMonth defaultValue) {
+        return value == null || value.isEmpty() ? defaultValue : YearMonth.parse(value);
+    }
+}
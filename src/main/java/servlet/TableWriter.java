@@ -0,0 +1,61 @@
+package servlet;
+
+import util.Template;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Renders a table page through a compiled template: the template up to the rows placeholder,
+ * then one {@code <tr>} per {@link #row} call, then the rest of the template. In streaming mode
+ * the head is flushed immediately and rows are flushed in chunks so the client sees data while
+ * the cursor is still being read.
+ */
+final class TableWriter {
+    private static final int FLUSH_EVERY_ROWS = 256;
+    private static final byte[] ROW_OPEN = "<tr>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ROW_CLOSE = "</tr>\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CELL_OPEN = "<td>".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CELL_CLOSE = "</td>".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final Template template;
+    private final String rowsPlaceholder;
+    private final Map<String, String> values;
+    private final boolean streaming;
+    private int rows;
+
+    TableWriter(OutputStream out, Template template, String rowsPlaceholder,
+                Map<String, String> values, boolean streaming) throws IOException {
+        this.out = new BufferedOutputStream(out, 8192);
+        this.template = template;
+        this.rowsPlaceholder = rowsPlaceholder;
+        this.values = values;
+        this.streaming = streaming;
+        template.renderBefore(rowsPlaceholder, this.out, values);
+        if (streaming) {
+            this.out.flush();
+        }
+    }
+
+    void row(Object... cells) throws IOException {
+        out.write(ROW_OPEN);
+        for (Object cell : cells) {
+            out.write(CELL_OPEN);
+            out.write(Html.escape(String.valueOf(cell)).getBytes(StandardCharsets.UTF_8));
+            out.write(CELL_CLOSE);
+        }
+        out.write(ROW_CLOSE);
+        if (streaming && ++rows % FLUSH_EVERY_ROWS == 0) {
+            out.flush();
+        }
+    }
+
+    void finish() throws IOException {
+        template.renderAfter(rowsPlaceholder, out, values);
+        out.flush();
+    }
+}
@@ -0,0 +1,156 @@
+package util;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Multi-producer, single-consumer ring buffer drained by one background thread. Producers claim a
+ * slot with a CAS on the tail and never block: when the ring is full the event is dropped and
+ * counted, and the writer reports the number of dropped events once there is room again. An idle
+ * consumer parks until a producer publishes into the empty ring and unparks it.
+ */
+final class AsyncLogWriter {
+    record Event(long timestamp, Logger.Level level, String logger, String thread,
+                 String message, Object[] args, Throwable error) {
+    }
+
+    private final AtomicReferenceArray<Event> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final LongAdder dropped = new LongAdder();
+    private long droppedReported;
+
+    private final Writer out;
+    private final Writer err;
+    private volatile Thread consumer;
+    // Set by the consumer before its last look at the ring; a producer that sees it unparks.
+    private volatile boolean parked;
+
+    AsyncLogWriter(int capacity, Writer out, Writer err) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.out = out;
+        this.err = err;
+    }
+
+    void start() {
+        Thread thread = new Thread(this::run, "log-writer");
+        thread.setDaemon(true);
+        consumer = thread;
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "log-writer-shutdown"));
+    }
+
+    boolean offer(Event event) {
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (claimed - head >= slots.length()) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+        // A volatile write, so it cannot be reordered after the read of parked: either the consumer
+        // sees this event before parking, or this producer sees it parked.
+        slots.set((int) claimed & mask, event);
+        if (parked) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Writes every published event and flushes. Only the consumer thread (or a caller that knows
+     * the consumer is not running) may call this.
+     */
+    synchronized int drain() {
+        int written = 0;
+        long position = head;
+        Event event;
+        while ((event = slots.get((int) position & mask)) != null) {
+            slots.lazySet((int) position & mask, null);
+            head = ++position;
+            write(event);
+            written++;
+        }
+        long totalDropped = dropped.sum();
+        if (totalDropped != droppedReported) {
+            write(new Event(System.currentTimeMillis(), Logger.Level.WARN, AsyncLogWriter.class.getName(),
+                    Thread.currentThread().getName(), "{} log events dropped because the buffer was full",
+                    new Object[]{totalDropped - droppedReported}, null));
+            droppedReported = totalDropped;
+        }
+        try {
+            out.flush();
+            err.flush();
+        } catch (IOException ignored) {
+        }
+        return written;
+    }
+
+    private void run() {
+        while (consumer == Thread.currentThread()) {
+            if (drain() == 0) {
+                parked = true;
+                if (slots.get((int) head & mask) == null) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+            }
+        }
+    }
+
+    private void write(Event event) {
+        Writer target = event.level().compareTo(Logger.Level.WARN) >= 0 ? err : out;
+        try {
+            target.write(format(event));
+            target.write(System.lineSeparator());
+        } catch (IOException ignored) {
+        }
+    }
+
+    static String format(Event event) {
+        StringBuilder line = new StringBuilder(128)
+                .append(Instant.ofEpochMilli(event.timestamp())).append(' ')
+                .append(String.format("%-5s", event.level())).append(" [").append(event.thread()).append("] ")
+                .append(event.logger()).append(" - ");
+
+        String message = event.message();
+        Object[] args = event.args();
+        Throwable error = event.error();
+        int argIndex = 0;
+        int position = 0;
+        while (args != null && argIndex < args.length) {
+            int marker = message.indexOf("{}", position);
+            if (marker < 0) {
+                break;
+            }
+            line.append(message, position, marker).append(args[argIndex++]);
+            position = marker + 2;
+        }
+        line.append(message, position, message.length());
+        if (error == null && args != null && argIndex < args.length && args[args.length - 1] instanceof Throwable t) {
+            error = t;
+        }
+
+        if (error != null) {
+            StringWriter trace = new StringWriter();
+            error.printStackTrace(new PrintWriter(trace));
+            line.append(System.lineSeparator()).append(trace.toString().stripTrailing());
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,450 @@
+package util;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded JDBC connection pool. Connections are handed out as proxies whose {@code close()}
+ * returns the physical connection to the pool instead of closing it.
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(ConnectionPool.class);
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    public record Config(int maxSize,
+                         int minIdle,
+                         long maxWaitMillis,
+                         long idleTimeoutMillis,
+                         long validationIntervalMillis,
+                         long leakThresholdMillis,
+                         long housekeepingIntervalMillis) {
+
+        public static Config fromEnvironment() {
+            return new Config(
+                    Env.getInt("DB_POOL_MAX_SIZE", 10),
+                    Env.getInt("DB_POOL_MIN_IDLE", 2),
+                    Env.getInt("DB_POOL_MAX_WAIT_MS", 5_000),
+                    Env.getInt("DB_POOL_IDLE_TIMEOUT_MS", 300_000),
+                    Env.getInt("DB_POOL_VALIDATION_INTERVAL_MS", 5_000),
+                    Env.getInt("DB_POOL_LEAK_THRESHOLD_MS", 60_000),
+                    Env.getInt("DB_POOL_HOUSEKEEPING_MS", 30_000)
+            );
+        }
+    }
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final ConnectionFactory factory;
+    private final Config config;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final ArrayDeque<Entry> idle = new ArrayDeque<>();
+    private final Set<Entry> borrowed = ConcurrentHashMap.newKeySet();
+    private int total;
+    private int active;
+    private int waiting;
+    private boolean closed;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+
+    private final ScheduledExecutorService housekeeper;
+
+    public ConnectionPool(ConnectionFactory factory, Config config) {
+        if (config.maxSize() < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.factory = factory;
+        this.config = config;
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, config.housekeepingIntervalMillis());
+        housekeeper.scheduleWithFixedDelay(this::housekeep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.maxWaitMillis());
+        while (true) {
+            Entry entry;
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("Connection pool is closed");
+                    }
+                    entry = idle.pollFirst();
+                    if (entry != null || total < config.maxSize()) {
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeouts.increment();
+                        throw new SQLTransientConnectionException("Timed out after " + config.maxWaitMillis()
+                                + "ms waiting for a connection (active=" + active + ", max=" + config.maxSize() + ")");
+                    }
+                    waiting++;
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a connection", e);
+                    } finally {
+                        waiting--;
+                    }
+                }
+                if (entry == null) {
+                    total++;
+                }
+                active++;
+            } finally {
+                lock.unlock();
+            }
+
+            if (entry == null) {
+                try {
+                    entry = new Entry(factory.create());
+                    created.increment();
+                } catch (SQLException | RuntimeException e) {
+                    releaseSlot();
+                    throw e;
+                }
+            } else if (!isUsable(entry)) {
+                releaseSlot();
+                closeQuietly(entry);
+                continue;
+            }
+
+            entry.owner = Thread.currentThread();
+            entry.borrowedAt = System.nanoTime();
+            borrowed.add(entry);
+            return entry.newHandle();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections use the configured credentials");
+    }
+
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaitingCount() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getTotalCount() {
+        lock.lock();
+        try {
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxSize() {
+        return config.maxSize();
+    }
+
+    public long getCreatedCount() {
+        return created.sum();
+    }
+
+    public long getDiscardedCount() {
+        return discarded.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    public long getLeakCount() {
+        return leaks.sum();
+    }
+
+    @Override
+    public void close() {
+        List<Entry> toClose;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            total -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        housekeeper.shutdownNow();
+        toClose.forEach(this::closeQuietly);
+    }
+
+    private boolean isUsable(Entry entry) {
+        try {
+            if (entry.physical.isClosed()) {
+                return false;
+            }
+            long idleNanos = System.nanoTime() - entry.lastReturnedAt;
+            if (idleNanos < TimeUnit.MILLISECONDS.toNanos(config.validationIntervalMillis())) {
+                return true;
+            }
+            return entry.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(Entry entry) {
+        borrowed.remove(entry);
+        entry.owner = null;
+
+        boolean healthy = reset(entry);
+        lock.lock();
+        try {
+            active--;
+            if (healthy && !closed) {
+                entry.lastReturnedAt = System.nanoTime();
+                idle.addFirst(entry);
+            } else {
+                total--;
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (!healthy || closed) {
+            closeQuietly(entry);
+        }
+    }
+
+    private boolean reset(Entry entry) {
+        try {
+            if (entry.physical.isClosed()) {
+                return false;
+            }
+            if (!entry.physical.getAutoCommit()) {
+                entry.physical.rollback();
+                entry.physical.setAutoCommit(true);
+            }
+            entry.physical.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            total--;
+            active--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeQuietly(Entry entry) {
+        discarded.increment();
+        try {
+            entry.physical.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void housekeep() {
+        List<Entry> evicted = new ArrayList<>();
+        long now = System.nanoTime();
+        long idleTimeout = TimeUnit.MILLISECONDS.toNanos(config.idleTimeoutMillis());
+        lock.lock();
+        try {
+            // Oldest returns sit at the tail; keep the most recently used connections warm.
+            Iterator<Entry> it = idle.descendingIterator();
+            while (it.hasNext() && idle.size() > config.minIdle()) {
+                Entry entry = it.next();
+                if (now - entry.lastReturnedAt > idleTimeout) {
+                    it.remove();
+                    total--;
+                    evicted.add(entry);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        evicted.forEach(this::closeQuietly);
+
+        if (config.leakThresholdMillis() <= 0) {
+            return;
+        }
+        long leakThreshold = TimeUnit.MILLISECONDS.toNanos(config.leakThresholdMillis());
+        for (Entry entry : borrowed) {
+            Thread owner = entry.owner;
+            if (!entry.leakReported && owner != null && now - entry.borrowedAt > leakThreshold) {
+                entry.leakReported = true;
+                leaks.increment();
+                reportLeak(entry, owner, now);
+            }
+        }
+    }
+
+    private void reportLeak(Entry entry, Thread owner, long now) {
+        StringBuilder stack = new StringBuilder();
+        for (StackTraceElement element : owner.getStackTrace()) {
+            stack.append("\n\tat ").append(element);
+        }
+        LOG.warn("Possible connection leak: held by thread '{}' for {}ms{}",
+                owner.getName(), TimeUnit.NANOSECONDS.toMillis(now - entry.borrowedAt), stack.toString());
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    private final class Entry {
+        private final Connection physical;
+        private volatile Thread owner;
+        private volatile long borrowedAt;
+        private volatile boolean leakReported;
+        private long lastReturnedAt = System.nanoTime();
+
+        private Entry(Connection physical) {
+            this.physical = physical;
+        }
+
+        private Connection newHandle() {
+            leakReported = false;
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Handle(this));
+        }
+    }
+
+    /**
+     * One handle per checkout, so a stale reference closed twice can never return the
+     * physical connection to the pool a second time.
+     */
+    private final class Handle implements InvocationHandler {
+        private final Entry entry;
+        private boolean closed;
+
+        private Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || entry.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + entry.physical + "]";
+                default:
+                    if (closed) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    try {
+                        return method.invoke(entry.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
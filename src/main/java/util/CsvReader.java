@@ -0,0 +1,102 @@
+package util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental RFC 4180 reader: quoted fields may contain commas, doubled quotes and line breaks.
+ * Only the current record is held in memory.
+ */
+public final class CsvReader {
+    private final Reader in;
+    private final StringBuilder field = new StringBuilder();
+    private long line = 1;
+    private long recordLine;
+    private int pushedBack = -2;
+
+    public CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * @return the next record, or {@code null} at end of input
+     */
+    public List<String> next() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        recordLine = line;
+        List<String> record = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean fieldStart = true;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field starting on line " + recordLine);
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && fieldStart) {
+                quoted = true;
+                fieldStart = false;
+            } else if (c == ',') {
+                record.add(field.toString());
+                field.setLength(0);
+                fieldStart = true;
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        unread(next);
+                    }
+                }
+                if (c != -1) {
+                    line++;
+                }
+                record.add(field.toString());
+                return record;
+            } else {
+                field.append((char) c);
+                fieldStart = false;
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Line number on which the record last returned by {@link #next()} started.
+     */
+    public long getRecordLine() {
+        return recordLine;
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != -2) {
+            int c = pushedBack;
+            pushedBack = -2;
+            return c;
+        }
+        return in.read();
+    }
+
+    private void unread(int c) {
+        pushedBack = c;
+    }
+}
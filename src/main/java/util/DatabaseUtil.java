@@ -5,22 +5,30 @@ import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DatabaseUtil {
-    private static final String DB_URL = System.getenv("DB_URL");
-    private static final String DB_USER = System.getenv("DB_USER");
-    private static final String DB_PASSWORD = System.getenv("DB_PASSWORD");
+    private static final Logger LOG = Logger.getLogger(DatabaseUtil.class);
+
+    // -Ddb.url/-Ddb.user/-Ddb.password override the environment, e.g. to point benchmarks at H2.
+    private static final String DB_URL = System.getProperty("db.url", System.getenv("DB_URL"));
+    private static final String DB_USER = System.getProperty("db.user", System.getenv("DB_USER"));
+    private static final String DB_PASSWORD = System.getProperty("db.password", System.getenv("DB_PASSWORD"));
 
     static {
         try {
             Class.forName("org.postgresql.Driver");
         } catch (ClassNotFoundException e) {
-            e.printStackTrace();
+            LOG.error("PostgreSQL JDBC driver not found on the classpath", e);
         }
     }
 
+    private static final ConnectionPool POOL = new ConnectionPool(
+            () -> DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD),
+            ConnectionPool.Config.fromEnvironment());
+
     public static Connection getConnection() throws SQLException {
-        System.out.println("Attempting to connect to database...");
-        Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-        System.out.println("Connection established: " + connection);
-        return connection;
+        return SqlProfiler.wrap(POOL.getConnection());
+    }
+
+    public static ConnectionPool getDataSource() {
+        return POOL;
     }
 }
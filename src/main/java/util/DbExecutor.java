@@ -0,0 +1,73 @@
+package util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded executor for request work that talks to the database. A fixed number of threads
+ * ({@code DB_EXECUTOR_THREADS}, by default as many as the pool has connections, since more would
+ * only queue inside the pool) take tasks from a fixed queue ({@code DB_EXECUTOR_QUEUE}). A full queue
+ * rejects immediately so the caller can shed load instead of growing latency.
+ */
+public final class DbExecutor {
+    private static final Logger LOG = Logger.getLogger(DbExecutor.class);
+
+    private static final int THREADS = Env.getInt("DB_EXECUTOR_THREADS", Env.getInt("DB_POOL_MAX_SIZE", 10));
+    private static final int QUEUE_CAPACITY = Env.getInt("DB_EXECUTOR_QUEUE", 100);
+    private static final LongAdder REJECTED = new LongAdder();
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            THREADS, THREADS, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "db-worker-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    static {
+        LOG.info("DB executor: {} threads, queue of {}", THREADS, QUEUE_CAPACITY);
+    }
+
+    private DbExecutor() {
+    }
+
+    /**
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public static void execute(Runnable task) {
+        try {
+            EXECUTOR.execute(task);
+        } catch (RejectedExecutionException e) {
+            REJECTED.increment();
+            throw e;
+        }
+    }
+
+    public static int getThreadCount() {
+        return THREADS;
+    }
+
+    public static int getActiveCount() {
+        return EXECUTOR.getActiveCount();
+    }
+
+    public static int getQueueSize() {
+        return EXECUTOR.getQueue().size();
+    }
+
+    public static int getQueueCapacity() {
+        return QUEUE_CAPACITY;
+    }
+
+    public static long getRejectedCount() {
+        return REJECTED.sum();
+    }
+}
@@ -0,0 +1,31 @@
+package util;
+
+/**
+ * Numeric settings from environment variables. A malformed value is logged and replaced by the
+ * default rather than failing startup.
+ */
+public final class Env {
+    private static final Logger LOG = Logger.getLogger(Env.class);
+
+    private Env() {
+    }
+
+    /**
+     * @return the variable parsed as an int, or {@code defaultValue} if it is unset, blank or malformed
+     */
+    public static int getInt(String name, int defaultValue) {
+        return parseInt(name, System.getenv(name), defaultValue);
+    }
+
+    static int parseInt(String name, String value, int defaultValue) {
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring {}={}: not an integer, using {}", name, value, defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parses a single flat JSON object (one NDJSON line) whose values are strings, numbers, booleans
+ * or null. Values are returned as their string form; nested objects and arrays are rejected.
+ */
+public final class FlatJson {
+    private final String text;
+    private int position;
+
+    private FlatJson(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the line is not a flat JSON object
+     */
+    public static Map<String, String> parseObject(String text) {
+        FlatJson parser = new FlatJson(text);
+        Map<String, String> values = parser.object();
+        parser.skipWhitespace();
+        if (parser.position != text.length()) {
+            throw parser.error("Unexpected trailing content");
+        }
+        return values;
+    }
+
+    private Map<String, String> object() {
+        Map<String, String> values = new LinkedHashMap<>();
+        skipWhitespace();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+            return values;
+        }
+        while (true) {
+            skipWhitespace();
+            String key = string();
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            values.put(key, value());
+            skipWhitespace();
+            char c = next();
+            if (c == '}') {
+                return values;
+            }
+            if (c != ',') {
+                throw error("Expected ',' or '}'");
+            }
+        }
+    }
+
+    private String value() {
+        char c = peek();
+        if (c == '"') {
+            return string();
+        }
+        if (c == '{' || c == '[') {
+            throw error("Nested values are not supported");
+        }
+        int start = position;
+        while (position < text.length() && ",} \t\r\n".indexOf(text.charAt(position)) < 0) {
+            position++;
+        }
+        String literal = text.substring(start, position);
+        if (literal.equals("null")) {
+            return null;
+        }
+        if (literal.equals("true") || literal.equals("false") || literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+            return literal;
+        }
+        throw error("Invalid literal '" + literal + "'");
+    }
+
+    private String string() {
+        expect('"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            char escape = next();
+            switch (escape) {
+                case '"', '\\', '/' -> value.append(escape);
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' -> {
+                    if (position + 4 > text.length()) {
+                        throw error("Truncated unicode escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid unicode escape");
+                    }
+                    position += 4;
+                }
+                default -> throw error("Invalid escape '\\" + escape + "'");
+            }
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private char peek() {
+        if (position >= text.length()) {
+            throw error("Unexpected end of input");
+        }
+        return text.charAt(position);
+    }
+
+    private char next() {
+        char c = peek();
+        position++;
+        return c;
+    }
+
+    private void expect(char expected) {
+        if (next() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at offset " + position);
+    }
+}
@@ -0,0 +1,165 @@
+package util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An {@code application/x-www-form-urlencoded} body, read in one pass with a size cap. Percent
+ * escapes and {@code +} are decoded in place in the read buffer, and fields are kept as offsets
+ * into it, so the only strings created are the values asked for. A field is split at its first
+ * {@code =}, so values may contain {@code =}; names and values are UTF-8.
+ */
+public final class FormBodyDecoder {
+    public static final int DEFAULT_MAX_BYTES = 16 * 1024;
+
+    /**
+     * The body is longer than the cap.
+     */
+    public static final class TooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public TooLargeException(int maxBytes) {
+            super("Form body larger than " + maxBytes + " bytes");
+        }
+    }
+
+    private final byte[] buffer;
+    // Per field: name start, name end (= value start), value end.
+    private final int[] offsets;
+    private final int count;
+
+    private FormBodyDecoder(byte[] buffer, int[] offsets, int count) {
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.count = count;
+    }
+
+    /**
+     * @param contentLength the declared length, used to size the buffer; zero or less if unknown
+     * @throws TooLargeException        if the body is longer than {@code maxBytes}
+     * @throws IllegalArgumentException if a percent escape is malformed
+     */
+    public static FormBodyDecoder read(InputStream in, long contentLength, int maxBytes) throws IOException {
+        if (contentLength > maxBytes) {
+            throw new TooLargeException(maxBytes);
+        }
+        byte[] buffer = new byte[contentLength > 0 ? (int) contentLength : Math.min(512, maxBytes)];
+        int length = 0;
+        while (true) {
+            if (length == buffer.length) {
+                int next = in.read();
+                if (next == -1) {
+                    break;
+                }
+                if (length >= maxBytes) {
+                    throw new TooLargeException(maxBytes);
+                }
+                buffer = Arrays.copyOf(buffer, Math.min(maxBytes, Math.max(64, length * 2)));
+                buffer[length++] = (byte) next;
+            }
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
+        }
+        return decode(buffer, length);
+    }
+
+    /**
+     * Decodes the first {@code length} bytes of {@code buffer}, overwriting them.
+     */
+    static FormBodyDecoder decode(byte[] buffer, int length) {
+        int[] offsets = new int[3 * 4];
+        int count = 0;
+        int write = 0;
+        int fieldStart = 0;
+        int nameEnd = -1;
+        for (int read = 0; read <= length; ) {
+            byte b = read < length ? buffer[read] : (byte) '&';
+            if (b == '&') {
+                if (write > fieldStart || nameEnd >= 0) {
+                    if (3 * count + 3 > offsets.length) {
+                        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    }
+                    offsets[3 * count] = fieldStart;
+                    offsets[3 * count + 1] = nameEnd >= 0 ? nameEnd : write;
+                    offsets[3 * count + 2] = write;
+                    count++;
+                }
+                fieldStart = write;
+                nameEnd = -1;
+                read++;
+            } else if (b == '=' && nameEnd < 0) {
+                nameEnd = write;
+                read++;
+            } else if (b == '+') {
+                buffer[write++] = ' ';
+                read++;
+            } else if (b == '%') {
+                int high = read + 2 < length ? Character.digit(buffer[read + 1], 16) : -1;
+                int low = high >= 0 ? Character.digit(buffer[read + 2], 16) : -1;
+                if (low < 0) {
+                    throw new IllegalArgumentException("Malformed percent escape at byte " + read);
+                }
+                buffer[write++] = (byte) (high << 4 | low);
+                read += 3;
+            } else if (b == '\r' || b == '\n') {
+                // Not valid in the encoding; a trailing newline from a hand-written body is dropped.
+                read++;
+            } else {
+                buffer[write++] = b;
+                read++;
+            }
+        }
+        return new FormBodyDecoder(buffer, offsets, count);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public String name(int index) {
+        return string(offsets[3 * index], offsets[3 * index + 1]);
+    }
+
+    public String value(int index) {
+        return string(offsets[3 * index + 1], offsets[3 * index + 2]);
+    }
+
+    /**
+     * @return the value of the first field called {@code name}, or {@code null} if there is none
+     */
+    public String get(String name) {
+        for (int i = 0; i < count; i++) {
+            if (nameEquals(i, name)) {
+                return value(i);
+            }
+        }
+        return null;
+    }
+
+    private boolean nameEquals(int index, String name) {
+        int start = offsets[3 * index];
+        int end = offsets[3 * index + 1];
+        if (end - start < name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80) {
+                return name.equals(name(index));
+            }
+            if (buffer[start + i] != c) {
+                return false;
+            }
+        }
+        return end - start == name.length();
+    }
+
+    private String string(int start, int end) {
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,215 @@
+package util;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Minimal streaming JSON encoder. Values are UTF-8 encoded into a small byte buffer that is
+ * drained to the underlying stream whenever it fills, so no String or tree of the whole document
+ * is ever built. Commas are tracked per nesting level; callers are trusted to pair
+ * {@code begin*}/{@code end*} and to call {@link #name} before each value inside an object.
+ */
+public final class JsonWriter implements Flushable {
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+    // hasElements[depth] is true once the container at that depth has written a member.
+    private boolean[] hasElements = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    public JsonWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        string(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        separate();
+        string(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        ascii(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        ascii(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        separate();
+        ascii("null");
+        return this;
+    }
+
+    /**
+     * Writes {@code value.toString()} as a string, or {@code null}; handy for dates.
+     */
+    public JsonWriter value(Object value) throws IOException {
+        return value == null ? nullValue() : value(value.toString());
+    }
+
+    public JsonWriter field(String name, String value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, long value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, boolean value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, Object value) throws IOException {
+        return name(name).value(value);
+    }
+
+    /**
+     * Ends a top-level value with a newline, as NDJSON wants.
+     */
+    public JsonWriter newline() throws IOException {
+        writeByte('\n');
+        hasElements[0] = false;
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    private JsonWriter open(char bracket) throws IOException {
+        separate();
+        writeByte(bracket);
+        depth++;
+        if (depth == hasElements.length) {
+            hasElements = Arrays.copyOf(hasElements, depth * 2);
+        }
+        hasElements[depth] = false;
+        return this;
+    }
+
+    private JsonWriter close(char bracket) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("Nothing to close");
+        }
+        depth--;
+        writeByte(bracket);
+        return this;
+    }
+
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (hasElements[depth]) {
+            writeByte(',');
+        }
+        hasElements[depth] = true;
+    }
+
+    private void string(String value) throws IOException {
+        writeByte('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '"' -> { writeByte('\\'); writeByte('"'); }
+                    case '\\' -> { writeByte('\\'); writeByte('\\'); }
+                    case '\n' -> { writeByte('\\'); writeByte('n'); }
+                    case '\r' -> { writeByte('\\'); writeByte('r'); }
+                    case '\t' -> { writeByte('\\'); writeByte('t'); }
+                    default -> {
+                        if (c < 0x20) {
+                            ascii("\\u00");
+                            writeByte(HEX[c >> 4]);
+                            writeByte(HEX[c & 0xF]);
+                        } else {
+                            writeByte(c);
+                        }
+                    }
+                }
+            } else if (c < 0x800) {
+                writeByte(0xC0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                writeByte(0xF0 | (codePoint >> 18));
+                writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+                writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+                writeByte(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                ascii("\\u");
+                writeByte(HEX[c >> 12]);
+                writeByte(HEX[(c >> 8) & 0xF]);
+                writeByte(HEX[(c >> 4) & 0xF]);
+                writeByte(HEX[c & 0xF]);
+            } else {
+                writeByte(0xE0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3F));
+                writeByte(0x80 | (c & 0x3F));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void ascii(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            writeByte(text.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (count == buffer.length) {
+            drain();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    private void drain() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of non-negative values (nanoseconds, by convention). Values below
+ * 128 are counted exactly; above that each power of two is split into 64 buckets, so any
+ * reported value is within about 1.6% of the recorded one. The whole {@code long} range fits in
+ * under 4k counters.
+ *
+ * <p>The counters are striped: each thread increments its bucket in one of up to
+ * {@link #STRIPES} copies of the array, chosen by thread identity, so threads recording the same
+ * latency rarely share a cache line. A copy is allocated when a thread first lands on it, and
+ * reads sum them all. Recording is one uncontended increment, a {@link LongAdder} add for the sum,
+ * and a read of the max that is only written when the value exceeds it.
+ */
+public final class LatencyHistogram {
+    private static final int LINEAR = 128;
+    private static final int SUB_BUCKETS = 64;
+    private static final int BUCKETS = LINEAR + (63 - 6) * SUB_BUCKETS;
+    // A power of two, at most 8: each copy is about 30 KB.
+    static final int STRIPES = Math.min(8, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        stripe().incrementAndGet(indexOf(value));
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    private AtomicLongArray stripe() {
+        int index = (System.identityHashCode(Thread.currentThread()) * 0x9E3779B9 >>> 16) & (STRIPES - 1);
+        AtomicLongArray stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new AtomicLongArray(BUCKETS));
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    /**
+     * Adds every count from {@code other} into this histogram.
+     */
+    public void add(LatencyHistogram other) {
+        long[] counts = other.snapshot();
+        AtomicLongArray stripe = stripe();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                stripe.addAndGet(i, counts[i]);
+            }
+        }
+        sum.add(other.sum.sum());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * Bucket counts summed over the stripes; concurrent recordings may or may not be included.
+     */
+    private long[] snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int s = 0; s < STRIPES; s++) {
+            AtomicLongArray stripe = stripes.get(s);
+            if (stripe != null) {
+                for (int i = 0; i < BUCKETS; i++) {
+                    counts[i] += stripe.get(i);
+                }
+            }
+        }
+        return counts;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (long c : snapshot()) {
+            count += c;
+        }
+        return count;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0.0 : (double) sum.sum() / count;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @param percentile 0 to 100
+     * @return the highest value equivalent to the recorded value at that rank, or 0 when empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = snapshot();
+        long count = 0;
+        for (long c : snapshot) {
+            count += c;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalent(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Number of recorded values no greater than {@code value}, counting whole buckets.
+     */
+    public long getCountAtOrBelow(long value) {
+        return getCountsAtOrBelow(value)[0];
+    }
+
+    /**
+     * {@link #getCountAtOrBelow} for each of the ascending {@code bounds}, followed by the total
+     * count, all from one pass over the stripes.
+     */
+    public long[] getCountsAtOrBelow(long... bounds) {
+        long[] snapshot = snapshot();
+        long[] counts = new long[bounds.length + 1];
+        long count = 0;
+        int bucket = 0;
+        for (int b = 0; b < bounds.length; b++) {
+            int last = indexOf(Math.max(0, bounds[b]));
+            for (; bucket <= last; bucket++) {
+                count += snapshot[bucket];
+            }
+            counts[b] = count;
+        }
+        for (; bucket < BUCKETS; bucket++) {
+            count += snapshot[bucket];
+        }
+        counts[bounds.length] = count;
+        return counts;
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - 6;
+        int sub = (int) (value >>> shift);
+        return LINEAR + (shift - 1) * SUB_BUCKETS + (sub - SUB_BUCKETS);
+    }
+
+    static long highestEquivalent(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int shift = (index - LINEAR) / SUB_BUCKETS + 1;
+        long sub = (index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+        long upper = ((sub + 1) << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
@@ -0,0 +1,141 @@
+package util;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Level-gated logger that hands events to a background writer thread instead of writing to
+ * {@code System.out} on the calling thread. Messages use {@code {}} markers and are only formatted
+ * on the writer thread, so pass values that are not mutated afterwards. A trailing
+ * {@link Throwable} argument is logged with its stack trace.
+ *
+ * <p>The threshold comes from the {@code LOG_LEVEL} environment variable (default {@code INFO}),
+ * the ring size from {@code LOG_BUFFER_SIZE} (default 8192).
+ */
+public final class Logger {
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static final AsyncLogWriter WRITER;
+    private static volatile Level threshold = parseLevel(System.getenv("LOG_LEVEL"));
+
+    static {
+        int capacity = 8192;
+        String size = System.getenv("LOG_BUFFER_SIZE");
+        if (size != null && !size.isBlank()) {
+            try {
+                capacity = Integer.parseInt(size.trim());
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        WRITER = new AsyncLogWriter(capacity, writer(System.out), writer(System.err));
+        WRITER.start();
+    }
+
+    private final String name;
+
+    private Logger(String name) {
+        this.name = name;
+    }
+
+    public static Logger getLogger(Class<?> type) {
+        return new Logger(type.getName());
+    }
+
+    public static void setLevel(Level level) {
+        threshold = level;
+    }
+
+    public static long getDroppedCount() {
+        return WRITER.getDroppedCount();
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.compareTo(threshold) >= 0;
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public void debug(String message) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, message, null, null);
+        }
+    }
+
+    public void debug(String message, Object arg) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, message, new Object[]{arg}, null);
+        }
+    }
+
+    public void debug(String message, Object arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, message, new Object[]{arg1, arg2}, null);
+        }
+    }
+
+    public void info(String message) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, message, null, null);
+        }
+    }
+
+    public void info(String message, Object arg) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, message, new Object[]{arg}, null);
+        }
+    }
+
+    public void info(String message, Object... args) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, message, args, null);
+        }
+    }
+
+    public void warn(String message) {
+        if (isEnabled(Level.WARN)) {
+            log(Level.WARN, message, null, null);
+        }
+    }
+
+    public void warn(String message, Object... args) {
+        if (isEnabled(Level.WARN)) {
+            log(Level.WARN, message, args, null);
+        }
+    }
+
+    public void error(String message, Throwable error) {
+        if (isEnabled(Level.ERROR)) {
+            log(Level.ERROR, message, null, error);
+        }
+    }
+
+    public void error(String message, Object... args) {
+        if (isEnabled(Level.ERROR)) {
+            log(Level.ERROR, message, args, null);
+        }
+    }
+
+    private void log(Level level, String message, Object[] args, Throwable error) {
+        WRITER.offer(new AsyncLogWriter.Event(System.currentTimeMillis(), level, name,
+                Thread.currentThread().getName(), message, args, error));
+    }
+
+    private static Level parseLevel(String value) {
+        if (value == null || value.isBlank()) {
+            return Level.INFO;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+
+    private static BufferedWriter writer(PrintStream stream) {
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 16 * 1024);
+    }
+}
@@ -0,0 +1,126 @@
+package util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size-bounded LRU cache with a time-to-live. Every invalidation bumps a generation number; a
+ * value loaded before an invalidation is refused by {@link #putIfCurrent} so a slow read can never
+ * put back data that a concurrent write has already made stale.
+ */
+public class LruCache<K, V> {
+
+    public record Stats(long hits, long misses, long evictions, int size) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public LruCache(int maxEntries, long ttl, TimeUnit unit) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LruCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the cached value, or {@code null} if absent or expired
+     */
+    public V get(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt() - System.nanoTime() > 0) {
+                hits.increment();
+                return entry.value();
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Generation to pass to {@link #putIfCurrent} for a value about to be loaded.
+     */
+    public long generation() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean putIfCurrent(K key, V value, long loadedAtGeneration) {
+        lock.lock();
+        try {
+            if (loadedAtGeneration != generation) {
+                return false;
+            }
+            entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            generation++;
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            generation++;
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
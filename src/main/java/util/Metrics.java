@@ -0,0 +1,221 @@
+package util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process metrics, rendered in the Prometheus text format by {@link #writePrometheus}. Series
+ * are created on first use; after that an observation is a map lookup and a few striped counter
+ * increments, with no allocation and no lock.
+ *
+ * <p>Histogram buckets are read from {@link LatencyHistogram}, whose own buckets are about 1.6%
+ * wide, so an observation just above an {@code le} bound may be counted in that bucket.
+ */
+public final class Metrics {
+    private static final Metrics DEFAULT = new Metrics();
+
+    private static final long[] BOUNDS_NANOS = {
+            1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L, 100_000_000L,
+            250_000_000L, 500_000_000L, 1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+    };
+    private static final String[] BOUND_LABELS = {
+            "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10"
+    };
+    private static final int MAX_STATUS = 599;
+
+    /**
+     * Latency and per-status counts for one method and route.
+     */
+    public static final class Route {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicReferenceArray<LongAdder> statuses = new AtomicReferenceArray<>(MAX_STATUS + 1);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder dbRoundTrips = new LongAdder();
+        private final LongAdder overBudget = new LongAdder();
+
+        public void record(int status, long startNanos) {
+            latency.record(System.nanoTime() - startNanos);
+            int index = status < 100 || status > MAX_STATUS ? 0 : status;
+            LongAdder counter = statuses.get(index);
+            if (counter == null) {
+                statuses.compareAndSet(index, null, new LongAdder());
+                counter = statuses.get(index);
+            }
+            counter.increment();
+            if (status >= 500) {
+                errors.increment();
+            }
+        }
+
+        public void recordDbRoundTrips(int roundTrips, boolean overBudget) {
+            dbRoundTrips.add(roundTrips);
+            if (overBudget) {
+                this.overBudget.increment();
+            }
+        }
+    }
+
+    private record Gauge(String help, String type, LongSupplier value) {
+    }
+
+    private final Map<String, Map<String, Route>> routes = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> dbCalls = new ConcurrentHashMap<>();
+    private final LatencyHistogram statements = new LatencyHistogram();
+    private final Map<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+
+    public static Metrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param method HTTP method
+     * @param route  the servlet mapping that matched, not the raw path, so the series stay bounded
+     */
+    public Route route(String method, String route) {
+        Map<String, Route> byRoute = routes.get(method);
+        if (byRoute == null) {
+            byRoute = routes.computeIfAbsent(method, m -> new ConcurrentHashMap<>());
+        }
+        Route metrics = byRoute.get(route);
+        if (metrics == null) {
+            metrics = byRoute.computeIfAbsent(route, r -> new Route());
+        }
+        return metrics;
+    }
+
+    /**
+     * Records one call of a {@code DatabaseService} method that started at {@code startNanos}.
+     */
+    public void recordDbCall(String method, long startNanos) {
+        LatencyHistogram histogram = dbCalls.get(method);
+        if (histogram == null) {
+            histogram = dbCalls.computeIfAbsent(method, m -> new LatencyHistogram());
+        }
+        histogram.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records one statement execution (one round trip) of {@code nanos}.
+     */
+    public void recordStatement(long nanos) {
+        statements.record(nanos);
+    }
+
+    /**
+     * Registers a value read at scrape time. Registering the same name again replaces it.
+     */
+    public void gauge(String name, String help, LongSupplier value) {
+        gauges.put(name, new Gauge(help, "gauge", value));
+    }
+
+    /**
+     * Like {@link #gauge}, for a value that only ever increases.
+     */
+    public void counter(String name, String help, LongSupplier value) {
+        gauges.put(name, new Gauge(help, "counter", value));
+    }
+
+    public void writePrometheus(Appendable out) throws IOException {
+        try {
+            write(out);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void write(Appendable out) {
+        Map<String, Map<String, Route>> sortedRoutes = new ConcurrentSkipListMap<>();
+        routes.forEach((method, byRoute) -> sortedRoutes.put(method, new ConcurrentSkipListMap<>(byRoute)));
+
+        header(out, "http_server_requests_seconds", "Request latency by method and servlet mapping.", "histogram");
+        sortedRoutes.forEach((method, byRoute) -> byRoute.forEach((route, metrics) ->
+                histogram(out, "http_server_requests_seconds", labels("method", method, "route", route),
+                        metrics.latency)));
+
+        header(out, "http_server_requests_total", "Completed requests by method, servlet mapping and status.",
+                "counter");
+        sortedRoutes.forEach((method, byRoute) -> byRoute.forEach((route, metrics) -> {
+            for (int status = 0; status <= MAX_STATUS; status++) {
+                LongAdder counter = metrics.statuses.get(status);
+                if (counter != null) {
+                    sample(out, "http_server_requests_total", labels("method", method, "route", route)
+                            + ",status=\"" + (status == 0 ? "other" : String.valueOf(status)) + "\"", counter.sum());
+                }
+            }
+        }));
+
+        header(out, "http_server_errors_total", "Requests answered with a 5xx status.", "counter");
+        sortedRoutes.forEach((method, byRoute) -> byRoute.forEach((route, metrics) ->
+                sample(out, "http_server_errors_total", labels("method", method, "route", route),
+                        metrics.errors.sum())));
+
+        header(out, "http_server_db_round_trips_total", "SQL round trips made while serving requests.", "counter");
+        sortedRoutes.forEach((method, byRoute) -> byRoute.forEach((route, metrics) ->
+                sample(out, "http_server_db_round_trips_total", labels("method", method, "route", route),
+                        metrics.dbRoundTrips.sum())));
+
+        header(out, "http_server_db_budget_exceeded_total", "Requests over the SQL round-trip budget.", "counter");
+        sortedRoutes.forEach((method, byRoute) -> byRoute.forEach((route, metrics) ->
+                sample(out, "http_server_db_budget_exceeded_total", labels("method", method, "route", route),
+                        metrics.overBudget.sum())));
+
+        header(out, "db_statement_seconds", "Execution time of individual SQL statements.", "histogram");
+        histogram(out, "db_statement_seconds", null, statements);
+
+        header(out, "db_call_seconds", "Time spent in each DatabaseService method.", "histogram");
+        new ConcurrentSkipListMap<>(dbCalls).forEach((method, histogram) ->
+                histogram(out, "db_call_seconds", labels("method", method, null, null), histogram));
+
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            Gauge gauge = entry.getValue();
+            header(out, entry.getKey(), gauge.help(), gauge.type());
+            sample(out, entry.getKey(), null, gauge.value().getAsLong());
+        }
+    }
+
+    private static void histogram(Appendable out, String name, String labels, LatencyHistogram histogram) {
+        String prefix = labels == null ? "" : labels + ",";
+        long[] counts = histogram.getCountsAtOrBelow(BOUNDS_NANOS);
+        for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+            sample(out, name + "_bucket", prefix + "le=\"" + BOUND_LABELS[i] + "\"", counts[i]);
+        }
+        long count = counts[BOUNDS_NANOS.length];
+        sample(out, name + "_bucket", prefix + "le=\"+Inf\"", count);
+        String sum = String.format(Locale.ROOT, "%.9f", histogram.getSum() / 1e9);
+        line(out, name + "_sum" + (labels == null ? " " : "{" + labels + "} ") + sum);
+        sample(out, name + "_count", labels, count);
+    }
+
+    private static void header(Appendable out, String name, String help, String type) {
+        line(out, "# HELP " + name + " " + help);
+        line(out, "# TYPE " + name + " " + type);
+    }
+
+    private static void sample(Appendable out, String name, String labels, long value) {
+        line(out, labels == null ? name + " " + value : name + "{" + labels + "} " + value);
+    }
+
+    private static void line(Appendable out, String text) {
+        try {
+            out.append(text).append('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String labels(String name, String value, String name2, String value2) {
+        String labels = name + "=\"" + escape(value) + "\"";
+        return name2 == null ? labels : labels + "," + name2 + "=\"" + escape(value2) + "\"";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
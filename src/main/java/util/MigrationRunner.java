@@ -0,0 +1,265 @@
+package util;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Applies the SQL scripts listed in {@code <location>/index.txt} (one {@code V<n>__<name>.sql} per
+ * line, in version order) that are not yet recorded in {@code schema_version}. Each script runs in
+ * its own transaction together with its version row. A session advisory lock serialises runners,
+ * so several instances starting at once apply each script exactly once.
+ */
+public final class MigrationRunner {
+    private static final Logger LOG = Logger.getLogger(MigrationRunner.class);
+
+    // Arbitrary constant shared by every instance of the application.
+    private static final long LOCK_KEY = 0x6C6962726172794CL;
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    record Migration(int version, String description, String script) {
+    }
+
+    /**
+     * A lookup the application relies on being answerable from an index alone.
+     */
+    record IndexCheck(String name, String sql) {
+    }
+
+    // The probes borrow() and returnLoan() make inside their single statements.
+    static final List<IndexCheck> INDEX_CHECKS = List.of(
+            new IndexCheck("memberById", "SELECT 1 FROM members WHERE id = 1"),
+            new IndexCheck("bookByCode", "SELECT 1 FROM books WHERE code = 'x'"),
+            new IndexCheck("activeLoanOfBook",
+                    "SELECT 1 FROM borrowings WHERE book_code = 'x' AND return_date IS NULL"));
+
+    private final DataSource dataSource;
+    private final String location;
+
+    /**
+     * @param location classpath directory holding {@code index.txt} and the scripts, e.g. {@code db/migration}
+     */
+    public MigrationRunner(DataSource dataSource, String location) {
+        this.dataSource = dataSource;
+        this.location = location;
+    }
+
+    /**
+     * @return the number of scripts applied
+     * @throws SQLException if a script fails; its transaction is rolled back and later scripts are not run
+     */
+    public int migrate() throws SQLException, IOException {
+        List<Migration> migrations = parseIndex(openResource("index.txt"));
+        try (Connection conn = dataSource.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+            }
+            try {
+                return applyPending(conn, migrations);
+            } finally {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+                }
+            }
+        }
+    }
+
+    /**
+     * Scripts in the index that {@code schema_version} does not record, in version order; all of them
+     * on a database the runner has never touched. Reads only, so it suits databases migrated elsewhere.
+     */
+    public List<String> pending() throws SQLException, IOException {
+        List<Migration> migrations = parseIndex(openResource("index.txt"));
+        List<String> pending = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection()) {
+            boolean tracked;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT to_regclass('schema_version') IS NOT NULL")) {
+                rs.next();
+                tracked = rs.getBoolean(1);
+            }
+            List<Integer> applied = new ArrayList<>();
+            if (tracked) {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version")) {
+                    while (rs.next()) {
+                        applied.add(rs.getInt(1));
+                    }
+                }
+            }
+            for (Migration migration : migrations) {
+                if (!applied.contains(migration.version())) {
+                    pending.add(migration.script());
+                }
+            }
+        }
+        return pending;
+    }
+
+    private int applyPending(Connection conn, List<Migration> migrations) throws SQLException, IOException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                    "version INT PRIMARY KEY, " +
+                    "description VARCHAR(200) NOT NULL, " +
+                    "checksum BIGINT NOT NULL, " +
+                    "applied_at TIMESTAMPTZ NOT NULL DEFAULT now(), " +
+                    "execution_ms BIGINT NOT NULL)");
+        }
+
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getLong(2));
+            }
+        }
+
+        int count = 0;
+        for (Migration migration : migrations) {
+            String sql = readScript(migration);
+            long checksum = checksum(sql);
+            Long recorded = applied.get(migration.version());
+            if (recorded != null) {
+                if (recorded != checksum) {
+                    LOG.warn("{} changed after it was applied; edit schema with a new script instead",
+                            migration.script());
+                }
+                continue;
+            }
+            apply(conn, migration, sql, checksum);
+            count++;
+        }
+        LOG.info("Schema at version {} ({} script(s) applied now)",
+                migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version(), count);
+        return count;
+    }
+
+    private void apply(Connection conn, Migration migration, String sql, long checksum) throws SQLException {
+        LOG.info("Applying {}", migration.script());
+        long start = System.nanoTime();
+        conn.setAutoCommit(false);
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(sql);
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO schema_version (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)")) {
+                stmt.setInt(1, migration.version());
+                stmt.setString(2, migration.description());
+                stmt.setLong(3, checksum);
+                stmt.setLong(4, (System.nanoTime() - start) / 1_000_000);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw new SQLException("Migration " + migration.script() + " failed: " + e.getMessage(),
+                    e.getSQLState(), e);
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Checks that each of {@link #INDEX_CHECKS} can be answered by an index-only scan. Sequential and
+     * bitmap scans are switched off for the check, so the answer does not depend on table size or
+     * statistics: it tells whether a suitable index exists, not what the planner picks today.
+     *
+     * @return the names of lookups without one; empty if all are covered
+     */
+    public List<String> verifyIndexOnlyLookups() throws SQLException {
+        List<String> missing = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SET LOCAL enable_seqscan = off");
+                stmt.execute("SET LOCAL enable_bitmapscan = off");
+                for (IndexCheck check : INDEX_CHECKS) {
+                    StringBuilder plan = new StringBuilder();
+                    try (ResultSet rs = stmt.executeQuery("EXPLAIN " + check.sql())) {
+                        while (rs.next()) {
+                            plan.append(rs.getString(1)).append('\n');
+                        }
+                    }
+                    if (!plan.toString().contains("Index Only Scan")) {
+                        LOG.warn("{} cannot use an index-only scan:\n{}", check.name(), plan);
+                        missing.add(check.name());
+                    }
+                }
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a line is not a script name or versions are not increasing
+     */
+    static List<Migration> parseIndex(Reader index) throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(index)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                Matcher matcher = SCRIPT_NAME.matcher(line);
+                if (!matcher.matches()) {
+                    throw new IllegalArgumentException("Not a migration script name: " + line);
+                }
+                int version = Integer.parseInt(matcher.group(1));
+                if (!migrations.isEmpty() && version <= migrations.get(migrations.size() - 1).version()) {
+                    throw new IllegalArgumentException("Migration versions must increase: " + line);
+                }
+                migrations.add(new Migration(version, matcher.group(2).replace('_', ' '), line));
+            }
+        }
+        return migrations;
+    }
+
+    static long checksum(String sql) {
+        CRC32 crc = new CRC32();
+        crc.update(sql.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private String readScript(Migration migration) throws IOException {
+        try (Reader reader = openResource(migration.script())) {
+            StringBuilder sql = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                sql.append(buffer, 0, read);
+            }
+            return sql.toString();
+        }
+    }
+
+    private Reader openResource(String name) throws IOException {
+        String path = location + "/" + name;
+        InputStream in = MigrationRunner.class.getClassLoader().getResourceAsStream(path);
+        if (in == null) {
+            throw new IOException("Migration resource not found on the classpath: " + path);
+        }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+}
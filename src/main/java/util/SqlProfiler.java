@@ -0,0 +1,306 @@
+package util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps JDBC connections so every statement execution, commit and rollback is timed and counted.
+ * Statements slower than {@code SQL_SLOW_QUERY_MS} (default 200) are logged with their SQL; bind
+ * values are never logged, only their types. Round trips are also charged to the current
+ * request's {@link RequestStats}, if one is bound to the thread, so a request that exceeds
+ * {@code SQL_REQUEST_BUDGET} round trips (default 5) can be reported with the statements it ran.
+ * {@code SQL_PROFILING_ENABLED=false} hands out connections unwrapped.
+ *
+ * <p>A request's SQL can be cancelled from another thread with {@link RequestStats#cancel}: the
+ * statement running at that moment is cancelled and later ones fail before reaching the server.
+ *
+ * <p>Only calls through JDBC are seen: extra fetches of a cursor during {@code ResultSet.next()}
+ * and {@code COPY} through the driver's copy API are not counted.
+ */
+public final class SqlProfiler {
+    private static final Logger LOG = Logger.getLogger(SqlProfiler.class);
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getenv("SQL_PROFILING_ENABLED"));
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(Env.getInt("SQL_SLOW_QUERY_MS", 200));
+    private static final int REQUEST_BUDGET = Env.getInt("SQL_REQUEST_BUDGET", 5);
+    private static final int MAX_DISTINCT_STATEMENTS = 32;
+
+    private static final ThreadLocal<RequestStats> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Round trips made on behalf of one HTTP request. It is bound to whichever thread is working
+     * on the request at the moment, see {@link #bind}.
+     */
+    public static final class RequestStats {
+        private final AtomicInteger roundTrips = new AtomicInteger();
+        private final AtomicLong sqlNanos = new AtomicLong();
+        private final Map<String, AtomicInteger> statements = new ConcurrentHashMap<>();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private volatile Statement running;
+        private volatile Runnable onCancel;
+
+        /**
+         * Cancels the statement this request is running, if any, and makes its later statements
+         * fail with {@link SQLTimeoutException}. Only statements on profiled connections are seen.
+         *
+         * @return false if the request was already cancelled
+         */
+        public boolean cancel() {
+            if (!cancelled.compareAndSet(false, true)) {
+                return false;
+            }
+            Statement statement = running;
+            if (statement != null) {
+                try {
+                    statement.cancel();
+                } catch (SQLException e) {
+                    LOG.warn("Could not cancel a running statement: {}", e.getMessage());
+                }
+            }
+            Runnable hook = onCancel;
+            if (hook != null) {
+                hook.run();
+            }
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        /**
+         * Runs {@code hook} when this request is cancelled, or now if it already has been, for work
+         * the request waits on that is not a statement of its own. Replaces any earlier hook;
+         * {@code null} clears it. The hook may run twice if set while cancelling.
+         */
+        public void onCancel(Runnable hook) {
+            onCancel = hook;
+            if (hook != null && cancelled.get()) {
+                hook.run();
+            }
+        }
+
+        private void starting(Statement statement) throws SQLException {
+            running = statement;
+            // Checked after publishing, so a concurrent cancel() either sees the statement or is seen here.
+            if (cancelled.get()) {
+                running = null;
+                throw new SQLTimeoutException("Request cancelled after its deadline", "57014");
+            }
+        }
+
+        private void finished() {
+            running = null;
+        }
+
+        void record(String sql, long nanos) {
+            roundTrips.incrementAndGet();
+            sqlNanos.addAndGet(nanos);
+            AtomicInteger count = statements.get(sql);
+            if (count == null && statements.size() < MAX_DISTINCT_STATEMENTS) {
+                count = statements.computeIfAbsent(sql, s -> new AtomicInteger());
+            }
+            if (count != null) {
+                count.incrementAndGet();
+            }
+        }
+
+        public int getRoundTrips() {
+            return roundTrips.get();
+        }
+
+        public long getSqlNanos() {
+            return sqlNanos.get();
+        }
+
+        public boolean isOverBudget() {
+            return roundTrips.get() > REQUEST_BUDGET;
+        }
+
+        /**
+         * Distinct statements with how often each ran, most frequent first.
+         */
+        public String describeStatements() {
+            StringJoiner joiner = new StringJoiner("; ");
+            statements.entrySet().stream()
+                    .sorted((a, b) -> Integer.compare(b.getValue().get(), a.getValue().get()))
+                    .forEach(e -> joiner.add(e.getValue().get() + "x " + e.getKey()));
+            return joiner.toString();
+        }
+    }
+
+    private SqlProfiler() {
+    }
+
+    public static Connection wrap(Connection connection) {
+        if (!ENABLED) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(SqlProfiler.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    /**
+     * Makes {@code stats} the current thread's request, returning whatever was bound before so the
+     * caller can restore it with another {@code bind} when done.
+     */
+    public static RequestStats bind(RequestStats stats) {
+        RequestStats previous = CURRENT.get();
+        if (stats == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(stats);
+        }
+        return previous;
+    }
+
+    public static RequestStats current() {
+        return CURRENT.get();
+    }
+
+    public static int getRequestBudget() {
+        return REQUEST_BUDGET;
+    }
+
+    private static void record(String sql, long startNanos, StatementHandler statement) {
+        long nanos = System.nanoTime() - startNanos;
+        Metrics.getDefault().recordStatement(nanos);
+        RequestStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.record(sql, nanos);
+        }
+        if (nanos >= SLOW_NANOS) {
+            LOG.warn("Slow SQL ({} ms): {} binds {}", TimeUnit.NANOSECONDS.toMillis(nanos), sql,
+                    statement != null ? statement.describeBinds() : "[]");
+        }
+    }
+
+    private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return statement(PreparedStatement.class, forward(target, method, args), (String) args[0]);
+                case "prepareCall":
+                    return statement(CallableStatement.class, forward(target, method, args), (String) args[0]);
+                case "createStatement":
+                    return statement(Statement.class, forward(target, method, args), null);
+                case "commit":
+                case "rollback":
+                    long start = System.nanoTime();
+                    try {
+                        return forward(target, method, args);
+                    } finally {
+                        record(method.getName().equals("commit") ? "COMMIT" : "ROLLBACK", start, null);
+                    }
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Profiled[" + target + "]";
+                default:
+                    return forward(target, method, args);
+            }
+        }
+
+        private static Object statement(Class<? extends Statement> type, Object statement, String sql) {
+            return Proxy.newProxyInstance(SqlProfiler.class.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler((Statement) statement, sql));
+        }
+    }
+
+    /**
+     * Times {@code execute*} calls. For prepared statements it remembers the type of each bind
+     * value, never the value itself, for the slow-query log.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String sql;
+        private String[] bindTypes = new String[0];
+
+        private StatementHandler(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                // Plain statements carry their SQL as the first argument.
+                String text = sql != null ? sql : args != null && args.length > 0 ? String.valueOf(args[0]) : "?";
+                RequestStats stats = CURRENT.get();
+                if (stats != null) {
+                    stats.starting(target);
+                }
+                long start = System.nanoTime();
+                try {
+                    return forward(target, method, args);
+                } finally {
+                    if (stats != null) {
+                        stats.finished();
+                    }
+                    record(text, start, this);
+                }
+            }
+            // Statement-level setters (fetch size, timeouts) take one argument; bind setters take two or more.
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                rememberBind(index, name.equals("setNull") ? "null" : name.substring(3));
+            } else if (name.equals("clearParameters")) {
+                bindTypes = new String[0];
+            } else if (name.equals("toString")) {
+                return "Profiled[" + target + "]";
+            }
+            return forward(target, method, args);
+        }
+
+        private void rememberBind(int index, String type) {
+            if (index < 1 || index > 1000) {
+                return;
+            }
+            if (index > bindTypes.length) {
+                bindTypes = Arrays.copyOf(bindTypes, index);
+            }
+            bindTypes[index - 1] = type;
+        }
+
+        private String describeBinds() {
+            StringJoiner joiner = new StringJoiner(", ", "[", "]");
+            for (int i = 0; i < bindTypes.length; i++) {
+                joiner.add((i + 1) + ":" + (bindTypes[i] == null ? "?" : bindTypes[i]) + "=<redacted>");
+            }
+            return joiner.toString();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A template compiled once into UTF-8 literal segments separated by {@code ${name}} placeholders.
+ * Rendering writes the pre-encoded segments straight to the output stream; placeholder values are
+ * HTML fragments supplied by the caller, and a missing value renders as nothing. Placeholders inside
+ * HTML comments are not substituted.
+ */
+public final class Template {
+    private final String name;
+    private final byte[][] literals;
+    private final String[] placeholders;
+
+    private Template(String name, byte[][] literals, String[] placeholders) {
+        this.name = name;
+        this.literals = literals;
+        this.placeholders = placeholders;
+    }
+
+    public static Template compile(String name, String source) {
+        List<byte[]> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int position = 0;
+        while (true) {
+            int start = source.indexOf("${", position);
+            int end = start < 0 ? -1 : source.indexOf('}', start + 2);
+            if (end < 0) {
+                break;
+            }
+            int commentStart = source.indexOf("<!--", position);
+            if (commentStart >= 0 && commentStart < start) {
+                // Placeholders inside HTML comments are left alone.
+                int commentEnd = source.indexOf("-->", commentStart + 4);
+                int next = commentEnd < 0 ? source.length() : commentEnd + 3;
+                literal.append(source, position, next);
+                position = next;
+                continue;
+            }
+            if (!isPlaceholderName(source, start + 2, end)) {
+                // Not a placeholder (e.g. "${" inside a script); keep it as literal text.
+                literal.append(source, position, start + 2);
+                position = start + 2;
+                continue;
+            }
+            literal.append(source, position, start);
+            literals.add(literal.toString().getBytes(StandardCharsets.UTF_8));
+            literal.setLength(0);
+            placeholders.add(source.substring(start + 2, end));
+            position = end + 1;
+        }
+        literal.append(source, position, source.length());
+        literals.add(literal.toString().getBytes(StandardCharsets.UTF_8));
+        return new Template(name, literals.toArray(new byte[0][]), placeholders.toArray(new String[0]));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean hasPlaceholder(String placeholder) {
+        return indexOf(placeholder) >= 0;
+    }
+
+    public void render(OutputStream out, Map<String, String> values) throws IOException {
+        write(out, values, 0, placeholders.length);
+        out.write(literals[placeholders.length]);
+    }
+
+    /**
+     * Writes everything up to (not including) the given placeholder.
+     */
+    public void renderBefore(String placeholder, OutputStream out, Map<String, String> values) throws IOException {
+        int index = require(placeholder);
+        write(out, values, 0, index);
+        out.write(literals[index]);
+    }
+
+    /**
+     * Writes everything after the given placeholder.
+     */
+    public void renderAfter(String placeholder, OutputStream out, Map<String, String> values) throws IOException {
+        int index = require(placeholder);
+        write(out, values, index + 1, placeholders.length);
+        out.write(literals[placeholders.length]);
+    }
+
+    private void write(OutputStream out, Map<String, String> values, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            out.write(literals[i]);
+            String value = values.get(placeholders[i]);
+            if (value != null) {
+                out.write(value.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private int indexOf(String placeholder) {
+        for (int i = 0; i < placeholders.length; i++) {
+            if (placeholders[i].equals(placeholder)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int require(String placeholder) throws IOException {
+        int index = indexOf(placeholder);
+        if (index < 0) {
+            throw new IOException("Template " + name + " has no ${" + placeholder + "} placeholder");
+        }
+        return index;
+    }
+
+    private static boolean isPlaceholderName(String source, int from, int to) {
+        if (from == to) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            char c = source.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
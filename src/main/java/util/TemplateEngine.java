@@ -0,0 +1,123 @@
+package util;
+
+import jakarta.servlet.ServletContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles every {@code *.html} file in the templates directory once at startup. In dev mode a
+ * {@link WatchService} recompiles a template whenever its file changes.
+ */
+public class TemplateEngine implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(TemplateEngine.class);
+
+    public static final String CONTEXT_ATTRIBUTE = TemplateEngine.class.getName();
+
+    private final Path directory;
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+    private WatchService watchService;
+
+    public TemplateEngine(Path directory) throws IOException {
+        this.directory = directory;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.html")) {
+            for (Path file : files) {
+                compile(file);
+            }
+        }
+    }
+
+    /**
+     * Returns the engine registered on the servlet context, compiling the webapp's
+     * {@code /templates} directory on first use if {@code Main} did not register one.
+     */
+    public static TemplateEngine forContext(ServletContext context) {
+        synchronized (context) {
+            TemplateEngine engine = (TemplateEngine) context.getAttribute(CONTEXT_ATTRIBUTE);
+            if (engine == null) {
+                String realPath = context.getRealPath("/templates");
+                if (realPath == null) {
+                    throw new IllegalStateException("Templates directory is not available on the file system");
+                }
+                try {
+                    engine = new TemplateEngine(Paths.get(realPath));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                context.setAttribute(CONTEXT_ATTRIBUTE, engine);
+            }
+            return engine;
+        }
+    }
+
+    public Template get(String name) throws IOException {
+        Template template = templates.get(name);
+        if (template == null) {
+            throw new IOException("Template file not found: " + name);
+        }
+        return template;
+    }
+
+    public synchronized void watch() throws IOException {
+        if (watchService != null) {
+            return;
+        }
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread watcher = new Thread(this::reloadLoop, "template-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+
+    private void reloadLoop() {
+        WatchService service = watchService;
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path changed && changed.toString().endsWith(".html")) {
+                        try {
+                            compile(directory.resolve(changed));
+                            LOG.info("Reloaded template {}", changed);
+                        } catch (IOException e) {
+                            LOG.warn("Failed to reload template {}", changed, e);
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+        }
+    }
+
+    private void compile(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        String source = Files.readString(file, StandardCharsets.UTF_8);
+        templates.put(name, Template.compile(name, source));
+    }
+}
@@ -0,0 +1,249 @@
+package util;
+
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Group commit for small writes. Callers of {@link #submit} block while a single flusher thread
+ * collects concurrent requests, for up to {@code maxWait} after the first or until
+ * {@code maxBatchSize} are waiting, and hands them to the {@link Batch} in one call. While a batch
+ * is being written the next one fills up, so batches grow with load and stay at one request when
+ * idle.
+ *
+ * <p>If a batch of several fails on a constraint or data error, each request is retried as a batch
+ * of one, so the error reaches only the caller whose row caused it. Other failures, such as a
+ * statement timeout or a lost connection, fail the whole batch at once.
+ *
+ * <p>A caller waits at most {@code timeout}, and less if its request is cancelled through
+ * {@link SqlProfiler.RequestStats#cancel}. The batch writer should bound its own statements (for
+ * example with a query timeout): it runs on the flusher thread, outside any request, and a hung
+ * write holds up every later batch.
+ */
+public final class WriteCoalescer<T, R> implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(WriteCoalescer.class);
+
+    /**
+     * Writes a batch, typically as one statement, and returns one result per request, in order.
+     */
+    @FunctionalInterface
+    public interface Batch<T, R> {
+        List<R> write(List<T> requests) throws SQLException;
+    }
+
+    private record Pending<T, R>(T request, CompletableFuture<R> result) {
+    }
+
+    private final String name;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final long timeoutNanos;
+    private final Batch<T, R> batch;
+    private final BlockingQueue<Pending<T, R>> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * @param maxWait how long the first request of a batch waits for others to join it
+     * @param timeout how long {@link #submit} waits for its result
+     */
+    public WriteCoalescer(String name, int maxBatchSize, long maxWait, long timeout, TimeUnit unit,
+                          Batch<T, R> batch) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.name = name;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.batch = batch;
+        this.flusher = new Thread(this::run, name + "-coalescer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Queues {@code request} for the next batch and waits for its own result. A caller that stops
+     * waiting (timeout, cancellation, interrupt) takes its request out of the queue if it is still
+     * there; once its batch is being written, the write may still happen.
+     *
+     * @throws SQLTimeoutException if the result took longer than the timeout or the request was cancelled
+     * @throws SQLException        if writing this request failed
+     */
+    public R submit(T request) throws SQLException {
+        if (closed) {
+            throw new IllegalStateException(name + " coalescer is closed");
+        }
+        CompletableFuture<R> result = new CompletableFuture<>();
+        Pending<T, R> pending = new Pending<>(request, result);
+        queue.add(pending);
+        // close() may have run its final drain between the check above and the add.
+        if (closed && queue.remove(pending)) {
+            throw new IllegalStateException(name + " coalescer is closed");
+        }
+        SqlProfiler.RequestStats stats = SqlProfiler.current();
+        if (stats != null) {
+            stats.onCancel(() -> result.completeExceptionally(
+                    new SQLTimeoutException("Request cancelled after its deadline", "57014")));
+        }
+        try {
+            return result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            queue.remove(pending);
+            throw new SQLTimeoutException(name + " batch gave no result within "
+                    + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms", "57014");
+        } catch (InterruptedException e) {
+            queue.remove(pending);
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for " + name + " batch", e);
+        } catch (ExecutionException e) {
+            queue.remove(pending);
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new SQLException(name + " batch failed", cause);
+        } finally {
+            if (stats != null) {
+                stats.onCancel(null);
+            }
+        }
+    }
+
+    /**
+     * Requests waiting for the next batch.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Stops accepting requests and waits, up to the timeout, for those already queued to be written.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flusher.interrupt();
+        try {
+            flusher.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Pending<T, R>> pending = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                collect(pending);
+            } catch (InterruptedException e) {
+                // Only close() interrupts: write what was collected, the loop drains the rest.
+            }
+            if (!pending.isEmpty()) {
+                flush(pending);
+                pending.clear();
+            }
+        }
+        // Requests that slipped in while closing would otherwise wait forever.
+        for (Pending<T, R> late = queue.poll(); late != null; late = queue.poll()) {
+            late.result().completeExceptionally(new IllegalStateException(name + " coalescer is closed"));
+        }
+    }
+
+    private void collect(List<Pending<T, R>> pending) throws InterruptedException {
+        pending.add(queue.take());
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (pending.size() < maxBatchSize) {
+            if (queue.drainTo(pending, maxBatchSize - pending.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            Pending<T, R> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            pending.add(next);
+        }
+    }
+
+    private void flush(List<Pending<T, R>> pending) {
+        batches.increment();
+        requests.add(pending.size());
+        try {
+            complete(pending, write(pending));
+            return;
+        } catch (SQLException | RuntimeException e) {
+            if (pending.size() == 1 || !causedByARow(e)) {
+                for (Pending<T, R> p : pending) {
+                    p.result().completeExceptionally(e);
+                }
+                return;
+            }
+            LOG.warn("{} batch of {} failed, writing them one at a time: {}", name, pending.size(), e.getMessage());
+        }
+        for (Pending<T, R> single : pending) {
+            try {
+                complete(List.of(single), write(List.of(single)));
+            } catch (SQLException | RuntimeException e) {
+                single.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Whether {@code e} may be down to one request's data (SQLSTATE class 22 or 23), so that
+     * retrying the requests one by one can succeed for the others.
+     */
+    private static boolean causedByARow(Exception e) {
+        if (e instanceof SQLIntegrityConstraintViolationException || e instanceof SQLDataException) {
+            return true;
+        }
+        String state = e instanceof SQLException sqlException ? sqlException.getSQLState() : null;
+        return state != null && (state.startsWith("22") || state.startsWith("23"));
+    }
+
+    private List<R> write(List<Pending<T, R>> pending) throws SQLException {
+        List<T> batchRequests = new ArrayList<>(pending.size());
+        for (Pending<T, R> p : pending) {
+            batchRequests.add(p.request());
+        }
+        List<R> results = batch.write(batchRequests);
+        if (results.size() != pending.size()) {
+            throw new IllegalStateException(name + " batch returned " + results.size() + " results for "
+                    + pending.size() + " requests");
+        }
+        return results;
+    }
+
+    private static <T, R> void complete(List<Pending<T, R>> pending, List<R> results) {
+        for (int i = 0; i < pending.size(); i++) {
+            pending.get(i).result().complete(results.get(i));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+-- Baseline tables. On a database that predates the migration runner these already exist and this
+-- script changes nothing; on an empty one it creates them.
+CREATE TABLE IF NOT EXISTS books (
+    code VARCHAR(20) PRIMARY KEY,
+    title VARCHAR(255) NOT NULL,
+    author VARCHAR(255) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS members (
+    id SERIAL PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    email VARCHAR(255) NOT NULL UNIQUE,
+    join_date DATE NOT NULL DEFAULT CURRENT_DATE
+);
+
+CREATE TABLE IF NOT EXISTS borrowings (
+    id BIGSERIAL PRIMARY KEY,
+    book_code VARCHAR(20) NOT NULL REFERENCES books (code) ON DELETE CASCADE,
+    member_id INT NOT NULL REFERENCES members (id) ON DELETE CASCADE,
+    borrow_date DATE NOT NULL,
+    return_date DATE
+);
+
+-- Databases created before this script may have borrowings without id, which CREATE TABLE IF NOT
+-- EXISTS leaves alone; keyset paging (DatabaseService) and V3's view need it unique and not null.
+-- ADD COLUMN numbers the existing rows from the new sequence.
+ALTER TABLE borrowings ADD COLUMN IF NOT EXISTS id BIGSERIAL;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_index i
+                   JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = i.indkey[0]
+                   WHERE i.indrelid = 'borrowings'::regclass AND i.indisunique
+                     AND i.indnkeyatts = 1 AND i.indpred IS NULL AND a.attname = 'id') THEN
+        IF EXISTS (SELECT 1 FROM pg_constraint WHERE conrelid = 'borrowings'::regclass AND contype = 'p') THEN
+            ALTER TABLE borrowings ADD CONSTRAINT borrowings_id_key UNIQUE (id);
+        ELSE
+            ALTER TABLE borrowings ADD PRIMARY KEY (id);
+        END IF;
+    END IF;
+END
+$$;
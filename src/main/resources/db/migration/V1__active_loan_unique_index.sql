@@ -0,0 +1,26 @@
+-- At most one open loan per book. DatabaseService.borrow() relies on this index: a concurrent
+-- second borrow of the same book hits it and is turned into ALREADY_BORROWED by ON CONFLICT.
+-- borrow() names the index's columns and predicate as its conflict target, so on a database
+-- without it every borrow fails instead of quietly allowing a second open loan.
+--
+-- The old check-then-insert borrow could record two open loans for one book, and the index cannot
+-- be built over them. Rather than fail on an anonymous duplicate key, stop and name the books, so
+-- someone can decide which loan is real.
+DO $$
+DECLARE
+    affected TEXT;
+BEGIN
+    SELECT string_agg(book_code || ' (' || open_loans || ' open loans)', ', ' ORDER BY book_code)
+    INTO affected
+    FROM (SELECT book_code, count(*) AS open_loans FROM borrowings
+          WHERE return_date IS NULL GROUP BY book_code HAVING count(*) > 1) duplicates;
+    IF affected IS NOT NULL THEN
+        RAISE EXCEPTION 'Cannot enforce one open loan per book; these books have several: %', affected
+            USING HINT = 'Set return_date on all but one open loan of each book, then start the server again.';
+    END IF;
+END
+$$;
+
+CREATE UNIQUE INDEX IF NOT EXISTS borrowings_active_book_uidx
+    ON borrowings (book_code)
+    WHERE return_date IS NULL;
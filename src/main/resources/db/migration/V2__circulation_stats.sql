@@ -0,0 +1,90 @@
+-- Circulation aggregates kept current by a trigger on borrowings, so reports read O(result) rows
+-- instead of scanning the loan history. Counts always equal what rebuild_circulation_stats()
+-- derives from borrowings; run it after bulk changes that bypass row triggers (TRUNCATE, COPY
+-- with triggers disabled) or if the tables are ever suspected to have drifted.
+CREATE TABLE IF NOT EXISTS book_circulation (
+    book_code VARCHAR(20) PRIMARY KEY,
+    loan_count BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS member_circulation (
+    member_id INT PRIMARY KEY,
+    active_loans INT NOT NULL DEFAULT 0,
+    loan_count BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS monthly_circulation (
+    month DATE PRIMARY KEY,
+    loans BIGINT NOT NULL DEFAULT 0,
+    returns BIGINT NOT NULL DEFAULT 0
+);
+
+-- Top-N report queries walk these in order and stop at the limit.
+CREATE INDEX IF NOT EXISTS book_circulation_loans_idx ON book_circulation (loan_count DESC, book_code);
+CREATE INDEX IF NOT EXISTS member_circulation_active_idx ON member_circulation (active_loans DESC, member_id)
+    WHERE active_loans > 0;
+
+-- Adds (delta = 1) or removes (delta = -1) one borrowings row's contribution.
+CREATE OR REPLACE FUNCTION circulation_apply(b borrowings, delta INT) RETURNS void AS $$
+BEGIN
+    INSERT INTO book_circulation AS s (book_code, loan_count) VALUES (b.book_code, delta)
+        ON CONFLICT (book_code) DO UPDATE SET loan_count = s.loan_count + delta;
+    INSERT INTO member_circulation AS s (member_id, active_loans, loan_count)
+        VALUES (b.member_id, CASE WHEN b.return_date IS NULL THEN delta ELSE 0 END, delta)
+        ON CONFLICT (member_id) DO UPDATE
+        SET active_loans = s.active_loans + EXCLUDED.active_loans, loan_count = s.loan_count + delta;
+    INSERT INTO monthly_circulation AS s (month, loans) VALUES (date_trunc('month', b.borrow_date)::date, delta)
+        ON CONFLICT (month) DO UPDATE SET loans = s.loans + delta;
+    IF b.return_date IS NOT NULL THEN
+        INSERT INTO monthly_circulation AS s (month, returns) VALUES (date_trunc('month', b.return_date)::date, delta)
+            ON CONFLICT (month) DO UPDATE SET returns = s.returns + delta;
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION circulation_track() RETURNS trigger AS $$
+BEGIN
+    -- The common update, a return, touches only the member's active count and the month's returns.
+    IF TG_OP = 'UPDATE' AND OLD.return_date IS NULL AND NEW.return_date IS NOT NULL
+            AND OLD.book_code IS NOT DISTINCT FROM NEW.book_code
+            AND OLD.member_id IS NOT DISTINCT FROM NEW.member_id
+            AND OLD.borrow_date IS NOT DISTINCT FROM NEW.borrow_date THEN
+        UPDATE member_circulation SET active_loans = active_loans - 1 WHERE member_id = NEW.member_id;
+        INSERT INTO monthly_circulation AS s (month, returns) VALUES (date_trunc('month', NEW.return_date)::date, 1)
+            ON CONFLICT (month) DO UPDATE SET returns = s.returns + 1;
+        RETURN NULL;
+    END IF;
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM circulation_apply(OLD, -1);
+    END IF;
+    IF TG_OP IN ('UPDATE', 'INSERT') THEN
+        PERFORM circulation_apply(NEW, 1);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS borrowings_circulation ON borrowings;
+CREATE TRIGGER borrowings_circulation
+    AFTER INSERT OR DELETE OR UPDATE OF book_code, member_id, borrow_date, return_date ON borrowings
+    FOR EACH ROW EXECUTE FUNCTION circulation_track();
+
+-- Recomputes every aggregate from borrowings. Writers to borrowings wait while it runs.
+CREATE OR REPLACE FUNCTION rebuild_circulation_stats() RETURNS void AS $$
+BEGIN
+    LOCK TABLE borrowings IN SHARE MODE;
+    TRUNCATE book_circulation, member_circulation, monthly_circulation;
+    INSERT INTO book_circulation (book_code, loan_count)
+        SELECT book_code, count(*) FROM borrowings GROUP BY book_code;
+    INSERT INTO member_circulation (member_id, active_loans, loan_count)
+        SELECT member_id, count(*) FILTER (WHERE return_date IS NULL), count(*) FROM borrowings GROUP BY member_id;
+    INSERT INTO monthly_circulation (month, loans, returns)
+        SELECT month, sum(loans), sum(returns)
+        FROM (SELECT date_trunc('month', borrow_date)::date AS month, 1 AS loans, 0 AS returns FROM borrowings
+              UNION ALL
+              SELECT date_trunc('month', return_date)::date, 0, 1 FROM borrowings WHERE return_date IS NOT NULL) m
+        GROUP BY month;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT rebuild_circulation_stats();
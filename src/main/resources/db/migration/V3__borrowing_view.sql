@@ -0,0 +1,12 @@
+-- The borrowings page lists loans with titles and names in one query. Keyset predicates on id
+-- push down into the view, so a page is an index range on borrowings plus one lookup per row in
+-- each covering index below; books and members change rarely, so those lookups are index-only.
+CREATE UNIQUE INDEX IF NOT EXISTS books_code_title_idx ON books (code) INCLUDE (title);
+CREATE UNIQUE INDEX IF NOT EXISTS members_id_name_idx ON members (id) INCLUDE (name);
+
+CREATE OR REPLACE VIEW borrowing_view AS
+SELECT br.id, br.book_code, b.title AS book_title, br.member_id, m.name AS member_name,
+       br.borrow_date, br.return_date
+FROM borrowings br
+LEFT JOIN books b ON b.code = br.book_code
+LEFT JOIN members m ON m.id = br.member_id;
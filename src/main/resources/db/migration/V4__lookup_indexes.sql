@@ -0,0 +1,16 @@
+-- Lookups outside the primary keys: loans by member (deleting a member cascades through them) and
+-- members by email. Each index is only created if no existing index already leads with the column,
+-- such as the UNIQUE constraint on members.email from V0.
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_index i
+                   JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = i.indkey[0]
+                   WHERE i.indrelid = 'borrowings'::regclass AND a.attname = 'member_id') THEN
+        CREATE INDEX borrowings_member_idx ON borrowings (member_id);
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_index i
+                   JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = i.indkey[0]
+                   WHERE i.indrelid = 'members'::regclass AND a.attname = 'email') THEN
+        CREATE INDEX members_email_idx ON members (email);
+    END IF;
+END $$;
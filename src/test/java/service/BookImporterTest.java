@@ -0,0 +1,49 @@
+package service;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookImporterTest {
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        TestDatabase.start();
+    }
+
+    @Test
+    void testFailedBatchReportsOnlyTheBadRow() throws Exception {
+        assertOnlyTheBadRowFails(false, 91);
+    }
+
+    @Test
+    void testFailedCopyBatchReportsOnlyTheBadRow() throws Exception {
+        assertOnlyTheBadRowFails(true, 92);
+    }
+
+    private static void assertOnlyTheBadRowFails(boolean copy, int codePrefix) throws Exception {
+        // The over-long title (books.title is VARCHAR(255)) fails the whole batch with 22001.
+        String csv = "code,title,author\n"
+                + codePrefix + "01,Dune,Frank Herbert\n"
+                + codePrefix + "02," + "x".repeat(300) + ",Nobody\n"
+                + codePrefix + "03,Emma,Jane Austen\n"
+                + codePrefix + "01,Dune again,Frank Herbert\n";
+
+        ImportReport report = new BookImporter(10, copy).run(BookImportSource.csv(new StringReader(csv)));
+
+        assertEquals(copy ? "copy" : "batch", report.getMethod());
+        assertEquals(4, report.getReceived());
+        assertEquals(2, report.getInserted());
+        assertEquals(1, report.getDuplicates());
+        assertEquals(1, report.getFailed());
+        List<ImportReport.RowError> failed = report.getErrors().stream()
+                .filter(error -> !"23505".equals(error.sqlState())).toList();
+        assertEquals(1, failed.size());
+        assertEquals(3, failed.get(0).line());
+        assertEquals("22001", failed.get(0).sqlState());
+    }
+}
@@ -0,0 +1,116 @@
+package service;
+
+import model.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class BookSearchIndexTest {
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BookSearchIndex();
+        index.rebuild(List.of(
+                new Book("1", "The Great Gatsby", "F. Scott Fitzgerald"),
+                new Book("2", "Nineteen Eighty-Four", "George Orwell"),
+                new Book("3", "Animal Farm", "George Orwell"),
+                new Book("4", "Les Misérables", "Victor Hugo")));
+    }
+
+    private static List<String> codes(List<BookSearchIndex.Hit> hits) {
+        return hits.stream().map(hit -> hit.book().code()).toList();
+    }
+
+    @Test
+    void testRanksDocumentsMatchingMoreTermsFirst() {
+        assertEquals(List.of("3", "2"), codes(index.search("orwell farm", 10, false)));
+    }
+
+    @Test
+    void testCaseAndAccentFolding() {
+        assertEquals(List.of("4"), codes(index.search("MISERABLES", 10, false)));
+    }
+
+    @Test
+    void testPrefixMatchesLastWord() {
+        assertEquals(List.of(), codes(index.search("gats", 10, false)));
+        assertEquals(List.of("1"), codes(index.search("gats", 10, true)));
+    }
+
+    @Test
+    void testLimit() {
+        assertEquals(1, index.search("george", 1, false).size());
+    }
+
+    @Test
+    void testIncrementalUpdates() {
+        index.bookSaved(new Book("3", "Homage to Catalonia", "George Orwell"));
+        index.bookDeleted("2");
+        index.bookSaved(new Book("5", "Down and Out in Paris and London", "George Orwell"));
+
+        assertEquals(List.of(), codes(index.search("farm", 10, false)));
+        assertEquals(List.of("3"), codes(index.search("catalonia", 10, false)));
+        assertEquals(List.of("3", "5"), codes(index.search("orwell", 10, false)));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void testUpdatesDuringRebuildAreReplayed() {
+        List<Book> snapshot = List.of(new Book("1", "The Great Gatsby", "F. Scott Fitzgerald"),
+                new Book("2", "Nineteen Eighty-Four", "George Orwell"));
+        // Writers commit while the rebuild is still reading its (now stale) snapshot.
+        index.rebuild(new AbstractList<>() {
+            @Override
+            public Book get(int i) {
+                if (i == 1) {
+                    index.bookSaved(new Book("5", "Burmese Days", "George Orwell"));
+                    index.bookDeleted("1");
+                }
+                return snapshot.get(i);
+            }
+
+            @Override
+            public int size() {
+                return snapshot.size();
+            }
+        });
+
+        assertEquals(List.of(), codes(index.search("gatsby", 10, false)));
+        assertEquals(List.of("5"), codes(index.search("burmese", 10, false)));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void testReloadRunsOffTheWritingThreadOnceForQueuedRequests() throws Exception {
+        List<Runnable> queued = new ArrayList<>();
+        BookSearchIndex reloading = new BookSearchIndex(queued::add);
+        DatabaseService source = mock(DatabaseService.class);
+        doAnswer(invocation -> {
+            RowHandler<Book> handler = invocation.getArgument(1);
+            handler.handle(new Book("7", "Brave New World", "Aldous Huxley"));
+            return null;
+        }).when(source).streamBooks(isNull(), any());
+
+        reloading.booksReloaded(source);
+        reloading.booksReloaded(source);
+
+        verify(source, never()).streamBooks(any(), any());
+        assertEquals(1, queued.size());
+
+        queued.get(0).run();
+
+        assertEquals(List.of("7"), codes(reloading.search("huxley", 10, false)));
+        reloading.booksReloaded(source);
+        assertEquals(2, queued.size());
+    }
+}
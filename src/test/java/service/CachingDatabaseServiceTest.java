@@ -0,0 +1,27 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import util.Metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingDatabaseServiceTest {
+
+    @Test
+    void testCacheCountersAreExported() throws Exception {
+        Metrics metrics = new Metrics();
+        new CachingDatabaseService(10, 1, TimeUnit.MINUTES).registerMetrics(metrics);
+
+        StringBuilder out = new StringBuilder();
+        metrics.writePrometheus(out);
+        String text = out.toString();
+        for (String cache : new String[]{"book_listings", "member_listings"}) {
+            assertTrue(text.contains("# TYPE db_cache_" + cache + "_hits_total counter\n"), cache);
+            assertTrue(text.contains("db_cache_" + cache + "_misses_total 0\n"), cache);
+            assertTrue(text.contains("db_cache_" + cache + "_evictions_total 0\n"), cache);
+            assertTrue(text.contains("db_cache_" + cache + "_entries 0\n"), cache);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package service;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import util.DatabaseUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link DatabaseService#borrow} and {@link DatabaseService#returnLoan} against a real
+ * PostgreSQL with the shipped migrations, since the one-open-loan guarantee lives in the schema.
+ */
+class DatabaseServiceBorrowTest {
+    private static final int MEMBERS = 16;
+
+    private static final List<Integer> memberIds = new ArrayList<>();
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        TestDatabase.start();
+        DatabaseService service = new DatabaseService();
+        for (int i = 0; i < MEMBERS; i++) {
+            memberIds.add(service.addMember("Member " + i, "member" + i + "@example.com"));
+        }
+    }
+
+    @Test
+    void testUnknownBookAndMember() throws SQLException {
+        DatabaseService service = new DatabaseService();
+        service.addBook("U1", "Dune", "Frank Herbert");
+
+        assertEquals(BorrowResult.BOOK_NOT_FOUND, service.borrow("NOPE", memberIds.get(0)));
+        assertEquals(BorrowResult.MEMBER_NOT_FOUND, service.borrow("U1", -1));
+        assertEquals(new ReturnResult(false, false, null), service.returnLoan("NOPE"));
+    }
+
+    @Test
+    void testBorrowAndReturn() throws SQLException {
+        DatabaseService service = new DatabaseService();
+        service.addBook("R1", "Emma", "Jane Austen");
+        int member = memberIds.get(1);
+
+        assertEquals(BorrowResult.SUCCESS, service.borrow("R1", member));
+        assertEquals(BorrowResult.ALREADY_BORROWED, service.borrow("R1", memberIds.get(2)));
+        assertEquals(new ReturnResult(true, true, member), service.returnLoan("R1"));
+        assertEquals(new ReturnResult(true, false, null), service.returnLoan("R1"));
+        assertEquals(BorrowResult.SUCCESS, service.borrow("R1", memberIds.get(2)));
+    }
+
+    @Test
+    void testConcurrentBorrowsOfOneBookHaveOneWinner() throws Exception {
+        DatabaseService service = new DatabaseService();
+        service.addBook("C1", "Middlemarch", "George Eliot");
+
+        assertOneWinner(service, "C1");
+    }
+
+    @Test
+    void testConcurrentBorrowsOfOneBookHaveOneWinnerWhenBatched() throws Exception {
+        DatabaseService service = new DatabaseService();
+        service.enableWriteBatching(64, 20, 10_000, TimeUnit.MILLISECONDS);
+        service.addBook("C2", "Persuasion", "Jane Austen");
+
+        assertOneWinner(service, "C2");
+    }
+
+    @Test
+    void testBorrowFailsWithoutTheActiveLoanIndex() throws SQLException {
+        DatabaseService service = new DatabaseService();
+        service.addBook("I1", "Ulysses", "James Joyce");
+        execute("DROP INDEX borrowings_active_book_uidx");
+        try {
+            SQLException e = assertThrows(SQLException.class, () -> service.borrow("I1", memberIds.get(3)));
+            assertEquals("42P10", e.getSQLState());
+            assertEquals(0, openLoans("I1"));
+        } finally {
+            execute("CREATE UNIQUE INDEX borrowings_active_book_uidx ON borrowings (book_code) WHERE return_date IS NULL");
+        }
+    }
+
+    private static void assertOneWinner(DatabaseService service, String bookCode) throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(MEMBERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<BorrowResult>> results = new ArrayList<>();
+            for (int memberId : memberIds) {
+                results.add(callers.submit(() -> {
+                    start.await();
+                    return service.borrow(bookCode, memberId);
+                }));
+            }
+            start.countDown();
+
+            Map<BorrowResult, Integer> counts = new EnumMap<>(BorrowResult.class);
+            for (Future<BorrowResult> result : results) {
+                counts.merge(result.get(30, TimeUnit.SECONDS), 1, Integer::sum);
+            }
+            assertEquals(Map.of(BorrowResult.SUCCESS, 1, BorrowResult.ALREADY_BORROWED, MEMBERS - 1), counts);
+            assertEquals(1, openLoans(bookCode));
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection connection = DatabaseUtil.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static int openLoans(String bookCode) throws SQLException {
+        try (Connection connection = DatabaseUtil.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT COUNT(*) FROM borrowings WHERE book_code = ? AND return_date IS NULL")) {
+            statement.setString(1, bookCode);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+}
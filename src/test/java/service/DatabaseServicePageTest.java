@@ -0,0 +1,134 @@
+package service;
+
+import model.Book;
+import model.Page;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import util.DatabaseUtil;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Keyset paging through {@code seekPage}, via {@link DatabaseService#getBooksPage}. Other tests
+ * share the books table, so the pages checked here sit in a range of codes ({@code zz01} to
+ * {@code zz07}) that sorts after theirs.
+ */
+class DatabaseServicePageTest {
+
+    private static final DatabaseService service = new DatabaseService();
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        TestDatabase.start();
+        for (int i = 1; i <= 7; i++) {
+            service.addBook("zz0" + i, "Paged " + i, "Author " + i);
+        }
+    }
+
+    private static List<String> codes(Page<Book> page) {
+        return page.items().stream().map(Book::code).toList();
+    }
+
+    private static List<String> allCodes() throws SQLException {
+        List<String> codes = new ArrayList<>();
+        try (Connection connection = DatabaseUtil.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT code FROM books ORDER BY code")) {
+            while (rs.next()) {
+                codes.add(rs.getString(1));
+            }
+        }
+        return codes;
+    }
+
+    @Test
+    void testFirstPage() throws SQLException {
+        Page<Book> page = service.getBooksPage(null, null, 2);
+
+        assertEquals(allCodes().subList(0, 2), codes(page));
+        assertEquals(codes(page).get(0), page.firstKey());
+        assertEquals(codes(page).get(1), page.lastKey());
+        assertFalse(page.hasPrevious());
+        assertTrue(page.hasNext());
+    }
+
+    @Test
+    void testMiddlePage() throws SQLException {
+        Page<Book> page = service.getBooksPage("zz02", null, 2);
+
+        assertEquals(List.of("zz03", "zz04"), codes(page));
+        assertTrue(page.hasPrevious());
+        assertTrue(page.hasNext());
+    }
+
+    @Test
+    void testLastPageExactlyFilled() throws SQLException {
+        Page<Book> page = service.getBooksPage("zz04", null, 3);
+
+        assertEquals(List.of("zz05", "zz06", "zz07"), codes(page));
+        assertEquals("zz07", page.lastKey());
+        assertTrue(page.hasPrevious());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void testLastPagePartlyFilled() throws SQLException {
+        Page<Book> page = service.getBooksPage("zz05", null, 3);
+
+        assertEquals(List.of("zz06", "zz07"), codes(page));
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void testEmptyPagePastTheEnd() throws SQLException {
+        Page<Book> page = service.getBooksPage("zz07", null, 3);
+
+        assertEquals(List.of(), codes(page));
+        assertNull(page.firstKey());
+        assertNull(page.lastKey());
+        assertTrue(page.hasPrevious());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void testBeforeReturnsThePreviousPageInAscendingOrder() throws SQLException {
+        Page<Book> next = service.getBooksPage("zz02", null, 2);
+        Page<Book> previous = service.getBooksPage(null, next.firstKey(), 2);
+
+        assertEquals(List.of("zz01", "zz02"), codes(previous));
+        assertEquals("zz01", previous.firstKey());
+        assertEquals("zz02", previous.lastKey());
+        assertTrue(previous.hasPrevious(), "books from other tests sort before zz01");
+        assertTrue(previous.hasNext());
+    }
+
+    @Test
+    void testBeforeFromTheLastPageWalksBackToTheStart() throws SQLException {
+        Page<Book> page = service.getBooksPage("zz05", null, 2);
+        List<String> seen = new ArrayList<>(codes(page));
+        while (page.hasPrevious()) {
+            page = service.getBooksPage(null, page.firstKey(), 2);
+            seen.addAll(0, codes(page));
+        }
+
+        assertEquals(allCodes(), seen);
+        assertFalse(page.hasPrevious());
+        assertTrue(page.hasNext());
+    }
+
+    @Test
+    void testBeforeTheFirstKeyIsEmpty() throws SQLException {
+        Page<Book> page = service.getBooksPage(null, allCodes().get(0), 2);
+
+        assertEquals(List.of(), codes(page));
+        assertFalse(page.hasPrevious());
+        assertTrue(page.hasNext());
+    }
+}
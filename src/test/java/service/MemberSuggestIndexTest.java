@@ -0,0 +1,106 @@
+package service;
+
+import model.Member;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemberSuggestIndexTest {
+
+    private MemberSuggestIndex index;
+
+    @BeforeEach
+    void setUp() {
+        LocalDate joined = LocalDate.of(2024, 1, 1);
+        index = new MemberSuggestIndex();
+        index.rebuild(List.of(
+                new Member(1, "John Smith", "john@example.com", joined),
+                new Member(2, "Joan Smythe", "jsmythe@example.com", joined),
+                new Member(3, "Zoë Adams", "zoe@example.com", joined)));
+    }
+
+    private static List<Integer> ids(List<Member> members) {
+        return members.stream().map(Member::getId).toList();
+    }
+
+    @Test
+    void testMatchesNameWordsEmailAndId() {
+        assertEquals(List.of(2, 1), ids(index.suggest("jo", 10)));
+        assertEquals(List.of(1), ids(index.suggest("smith", 10)));
+        assertEquals(List.of(2), ids(index.suggest("jsm", 10)));
+        assertEquals(List.of(3), ids(index.suggest("ZOE", 10)));
+        assertEquals(List.of(3), ids(index.suggest("3", 10)));
+        assertEquals(List.of(1), ids(index.suggest("john sm", 10)));
+    }
+
+    @Test
+    void testLimitReturnsDistinctMembers() {
+        // "John Smith" has both "john" and "john smith" keys but counts once.
+        assertEquals(List.of(2), ids(index.suggest("jo", 1)));
+        assertEquals(List.of(1), ids(index.suggest("john", 5)));
+    }
+
+    @Test
+    void testUpdatesAndDeletesAreVisibleBeforeCompaction() {
+        index.memberSaved(new Member(4, "Johanna Ray", "jr@example.com", LocalDate.now()));
+        index.memberUpdated(1, "Jack Smith", "jack@example.com");
+        index.memberDeleted(2);
+
+        assertEquals(List.of(4), ids(index.suggest("jo", 10)));
+        assertEquals(List.of(1), ids(index.suggest("jack", 10)));
+        assertEquals("Jack Smith", index.suggest("1", 1).get(0).getName());
+    }
+
+    @Test
+    void testCompactionKeepsResults() {
+        for (int id = 100; id < 20_100; id++) {
+            index.memberSaved(new Member(id, "Member " + id, "m" + id + "@example.com", LocalDate.now()));
+        }
+        index.memberDeleted(1);
+
+        assertEquals(20_002, index.size());
+        assertEquals(List.of(2), ids(index.suggest("jo", 10)));
+        assertEquals(List.of(12345), ids(index.suggest("m12345@", 10)));
+    }
+
+    @Test
+    void testCompactionRunsOffTheWritersThread() {
+        List<Runnable> compactions = new ArrayList<>();
+        MemberSuggestIndex deferred = new MemberSuggestIndex(compactions::add);
+        deferred.rebuild(List.of(new Member(1, "John Smith", "john@example.com", LocalDate.now())));
+        for (int id = 100; id < 5_100; id++) {
+            deferred.memberSaved(new Member(id, "Member " + id, "m" + id + "@example.com", LocalDate.now()));
+        }
+        assertEquals(1, compactions.size(), "one compaction at a time, handed to the executor");
+
+        deferred.memberUpdated(1, "Jack Smith", "jack@example.com");
+        compactions.get(0).run();
+        deferred.memberDeleted(4_000);
+        deferred.memberSaved(new Member(9_000, "Johanna Ray", "jr@example.com", LocalDate.now()));
+
+        assertEquals(List.of(9_000), ids(deferred.suggest("jo", 10)));
+        assertEquals(List.of(1), ids(deferred.suggest("jack", 10)));
+        assertEquals(List.of(), ids(deferred.suggest("m4000@", 10)));
+        assertEquals(List.of(4_321), ids(deferred.suggest("m4321@", 10)));
+    }
+
+    @Test
+    void testCompactionStartedBeforeRebuildIsDiscarded() {
+        List<Runnable> compactions = new ArrayList<>();
+        MemberSuggestIndex deferred = new MemberSuggestIndex(compactions::add);
+        for (int id = 100; id < 5_100; id++) {
+            deferred.memberSaved(new Member(id, "Member " + id, "m" + id + "@example.com", LocalDate.now()));
+        }
+        deferred.rebuild(List.of(new Member(1, "John Smith", "john@example.com", LocalDate.now())));
+        compactions.forEach(Runnable::run);
+
+        assertEquals(1, deferred.size());
+        assertEquals(List.of(), ids(deferred.suggest("member", 10)));
+        assertEquals(List.of(1), ids(deferred.suggest("john", 10)));
+    }
+}
@@ -0,0 +1,50 @@
+package service;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import util.DatabaseUtil;
+import util.MigrationRunner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * One embedded PostgreSQL per test JVM, migrated with the shipped scripts, for tests that go
+ * through {@link DatabaseUtil}. It reads its settings once, so every such test must share this.
+ */
+final class TestDatabase {
+    private static EmbeddedPostgres postgres;
+
+    private TestDatabase() {
+    }
+
+    static synchronized void start() throws SQLException, IOException {
+        if (postgres == null) {
+            postgres = EmbeddedPostgres.builder().start();
+            EmbeddedPostgres started = postgres;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    started.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, "embedded-postgres-shutdown"));
+            // Must be set before DatabaseUtil is first touched; it reads them once.
+            System.setProperty("db.url", postgres.getJdbcUrl("postgres", "postgres"));
+            System.setProperty("db.user", "postgres");
+            System.setProperty("db.password", "");
+            new MigrationRunner(DatabaseUtil.getDataSource(), "db/migration").migrate();
+        }
+        try (Connection connection = DatabaseUtil.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT inet_server_port()")) {
+            rs.next();
+            assumeTrue(rs.getInt(1) == postgres.getPort(), "DatabaseUtil was configured by an earlier test");
+        }
+    }
+}
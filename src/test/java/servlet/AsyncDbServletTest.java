@@ -0,0 +1,226 @@
+package servlet;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.DbExecutor;
+import util.SqlProfiler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AsyncDbServletTest {
+
+    private final AtomicReference<String> handledOn = new AtomicReference<>();
+    private final AsyncDbServlet servlet = new AsyncDbServlet() {
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+            handledOn.set(Thread.currentThread().getName());
+        }
+    };
+
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private AsyncContext async;
+
+    @BeforeEach
+    void setUp() {
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        async = mock(AsyncContext.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.startAsync()).thenReturn(async);
+    }
+
+    @Test
+    void testRunsInlineWithoutAsyncSupport() throws Exception {
+        servlet.service(request, response);
+
+        assertEquals(Thread.currentThread().getName(), handledOn.get());
+        verify(request, never()).startAsync();
+    }
+
+    @Test
+    void testRunsInlineWhenAsyncIsTurnedOff() throws Exception {
+        when(request.isAsyncSupported()).thenReturn(true);
+        boolean previous = AsyncDbServlet.isAsyncEnabled();
+        AsyncDbServlet.setAsyncEnabled(false);
+        try {
+            servlet.service(request, response);
+        } finally {
+            AsyncDbServlet.setAsyncEnabled(previous);
+        }
+
+        assertEquals(Thread.currentThread().getName(), handledOn.get());
+        verify(request, never()).startAsync();
+    }
+
+    @Test
+    void testInlineLimitShedsRequestsBeyondIt() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncDbServlet blocking = new AsyncDbServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+                entered.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        long rejected = AsyncDbServlet.getInlineRejectedCount();
+        AsyncDbServlet.setInlineLimit(1);
+        Thread first = new Thread(() -> {
+            try {
+                blocking.service(request, mock(HttpServletResponse.class));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        try {
+            first.start();
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            assertEquals(1, AsyncDbServlet.getInlineActiveCount());
+
+            blocking.service(request, response);
+
+            verify(response).setHeader("Retry-After", "1");
+            verify(response).sendError(eq(HttpServletResponse.SC_SERVICE_UNAVAILABLE), anyString());
+            assertEquals(rejected + 1, AsyncDbServlet.getInlineRejectedCount());
+        } finally {
+            release.countDown();
+            first.join(5_000);
+            AsyncDbServlet.setInlineLimit(0);
+        }
+        assertEquals(0, AsyncDbServlet.getInlineActiveCount());
+    }
+
+    @Test
+    void testHandsOffToDbExecutorAndCompletes() throws Exception {
+        when(request.isAsyncSupported()).thenReturn(true);
+
+        servlet.service(request, response);
+
+        verify(async, timeout(2_000)).complete();
+        assertTrue(handledOn.get().startsWith("db-worker-"));
+    }
+
+    @Test
+    void testWorkerSeesTheRequestsSqlStats() throws Exception {
+        when(request.isAsyncSupported()).thenReturn(true);
+        AtomicReference<SqlProfiler.RequestStats> seen = new AtomicReference<>();
+        AsyncDbServlet servlet = new AsyncDbServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+                seen.set(SqlProfiler.current());
+            }
+        };
+        SqlProfiler.RequestStats stats = new SqlProfiler.RequestStats();
+        SqlProfiler.RequestStats previous = SqlProfiler.bind(stats);
+        try {
+            servlet.service(request, response);
+        } finally {
+            SqlProfiler.bind(previous);
+        }
+
+        verify(async, timeout(2_000)).complete();
+        assertSame(stats, seen.get());
+    }
+
+    @Test
+    void testDeadlineCancelsSqlButTheWorkerCompletes() throws Exception {
+        when(request.isAsyncSupported()).thenReturn(true);
+        AtomicBoolean handlerFinished = new AtomicBoolean();
+        AtomicReference<Boolean> finishedBeforeComplete = new AtomicReference<>();
+        doAnswer(invocation -> {
+            finishedBeforeComplete.set(handlerFinished.get());
+            return null;
+        }).when(async).complete();
+        AsyncDbServlet servlet = new AsyncDbServlet() {
+            @Override
+            protected long timeoutMillis(HttpServletRequest request) {
+                return 50;
+            }
+
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+                // Stands in for a slow query: runs until the deadline cancels the request's SQL.
+                long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (!SqlProfiler.current().isCancelled() && System.nanoTime() < giveUp) {
+                    Thread.onSpinWait();
+                }
+                handlerFinished.set(true);
+            }
+        };
+
+        servlet.service(request, response);
+
+        verify(async).setTimeout(0);
+        verify(async, timeout(2_000)).complete();
+        assertTrue(finishedBeforeComplete.get());
+        verify(async, times(1)).complete();
+    }
+
+    @Test
+    void testStreamingRequestsHaveNoDeadline() {
+        assertEquals(60_000, servlet.timeoutMillis(request));
+
+        when(request.getParameter("stream")).thenReturn("true");
+        assertEquals(0, servlet.timeoutMillis(request));
+    }
+
+    @Test
+    void testShedsLoadWhenQueueIsFull() throws Exception {
+        when(request.isAsyncSupported()).thenReturn(true);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(DbExecutor.getThreadCount());
+        try {
+            fill(release, started);
+            // Only once every worker is parked on the latch is the queue guaranteed to stay full.
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            fill(release, started);
+
+            servlet.service(request, response);
+
+            verify(response).setHeader("Retry-After", "1");
+            verify(response).sendError(eq(HttpServletResponse.SC_SERVICE_UNAVAILABLE), anyString());
+            verify(async).complete();
+            assertNull(handledOn.get());
+        } finally {
+            release.countDown();
+            // The executor is shared: let the filler tasks drain so later tests are not shed.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while ((DbExecutor.getQueueSize() > 0 || DbExecutor.getActiveCount() > 0)
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static void fill(CountDownLatch release, CountDownLatch started) {
+        while (true) {
+            try {
+                DbExecutor.execute(() -> {
+                    started.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+        }
+    }
+}
@@ -1,15 +1,27 @@
 package servlet;
 
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import model.Book;
+import model.Page;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import service.DatabaseService;
+import util.TemplateEngine;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -43,30 +55,88 @@ class BookServletTest {
         List<Book> books = new ArrayList<>();
         books.add(new Book("B001", "The Great Gatsby", "F. Scott Fitzgerald"));
         books.add(new Book("B002", "1984", "George Orwell"));
-        when(databaseService.getAllBooks()).thenReturn(books);
+        when(request.getHeader("Accept")).thenReturn("application/json");
+        when(request.getQueryString()).thenReturn("after=B000&t=" + System.nanoTime());
+        when(request.getParameter("after")).thenReturn("B000");
+        when(databaseService.getBooksPage("B000", null, Pagination.DEFAULT_LIMIT))
+                .thenReturn(new Page<>(books, "B001", "B002", true, false));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        });
 
         bookServlet.doGet(request, response);
 
-        writer.flush();
-        String result = stringWriter.toString();
+        String result = body.toString(StandardCharsets.UTF_8);
         assertTrue(result.contains("The Great Gatsby"));
         assertTrue(result.contains("1984"));
         assertTrue(result.contains("F. Scott Fitzgerald"));
         assertTrue(result.contains("George Orwell"));
+        assertTrue(result.contains("\"lastKey\":\"B002\""));
+        assertTrue(result.contains("\"hasNext\":false"));
+    }
+
+    @Test
+    void testDoGetRendersHtmlTable() throws Exception {
+        ServletContext context = mock(ServletContext.class);
+        when(context.getAttribute(TemplateEngine.CONTEXT_ATTRIBUTE))
+                .thenReturn(new TemplateEngine(Path.of("src/main/webapp/templates")));
+        ServletConfig config = mock(ServletConfig.class);
+        when(config.getServletContext()).thenReturn(context);
+        bookServlet.init(config);
+
+        when(request.getQueryString()).thenReturn("t=" + System.nanoTime());
+        when(databaseService.getBooksPage(null, null, Pagination.DEFAULT_LIMIT)).thenReturn(new Page<>(
+                List.of(new Book("1", "Tom & Jerry", "Hanna <Barbera>"), new Book("2", "1984", "George Orwell")),
+                "1", "2", false, true));
+        ByteArrayOutputStream body = captureBody();
+
+        bookServlet.doGet(request, response);
+
+        verify(response).setContentType("text/html;charset=UTF-8");
+        String html = body.toString(StandardCharsets.UTF_8);
+        assertTrue(html.contains("<tr><td>1</td><td>Tom &amp; Jerry</td><td>Hanna &lt;Barbera&gt;</td></tr>"), html);
+        assertTrue(html.contains("<td>George Orwell</td>"));
+        assertTrue(html.contains("href=\"/books?after=2&amp;limit=" + Pagination.DEFAULT_LIMIT + "\""));
+        assertTrue(html.trim().endsWith("</html>"));
     }
 
     @Test
     void testDoPost() throws IOException, SQLException {
-        when(request.getParameter("code")).thenReturn("B003");
+        when(request.getParameter("code")).thenReturn("3");
         when(request.getParameter("title")).thenReturn("New Book");
         when(request.getParameter("author")).thenReturn("New Author");
 
         bookServlet.doPost(request, response);
 
-        verify(databaseService).addBook("B003", "New Book", "New Author");
+        verify(databaseService).addBook("3", "New Book", "New Author");
         verify(response).sendRedirect("/books?success=Book added successfully");
     }
 
+    @Test
+    void testDoPostWithNonNumericCode() throws IOException, SQLException {
+        when(request.getParameter("code")).thenReturn("B003");
+        when(request.getParameter("title")).thenReturn("New Book");
+        when(request.getParameter("author")).thenReturn("New Author");
+
+        bookServlet.doPost(request, response);
+
+        verify(databaseService, never()).addBook(any(), any(), any());
+        verify(response).sendRedirect("/books?error=Book code must be a number");
+    }
+
     @Test
     void testDoPostWithMissingParameters() throws IOException {
         when(request.getParameter("code")).thenReturn(null);
@@ -75,19 +145,29 @@ class BookServletTest {
 
         bookServlet.doPost(request, response);
 
-        verify(response).sendRedirect("/books?error=Missing parameters");
+        verify(response).sendRedirect("/books?error=All fields are required");
     }
 
     @Test
     void testDoPut() throws IOException, SQLException {
         when(request.getPathInfo()).thenReturn("/B001");
-        when(request.getParameter("title")).thenReturn("Updated Title");
-        when(request.getParameter("author")).thenReturn("Updated Author");
+        formBody("title=Updated+Title&author=Updated%20Author");
 
         bookServlet.doPut(request, response);
 
         verify(databaseService).updateBook("B001", "Updated Title", "Updated Author");
-        verify(response).setStatus(HttpServletResponse.SC_OK);
+        verify(response).sendRedirect("/books?success=Book updated successfully");
+    }
+
+    @Test
+    void testDoPutWithMissingField() throws IOException, SQLException {
+        when(request.getPathInfo()).thenReturn("/B001");
+        formBody("title=Updated+Title");
+
+        bookServlet.doPut(request, response);
+
+        verify(databaseService, never()).updateBook(any(), any(), any());
+        verify(response).sendRedirect("/books?error=Missing parameters: title or author");
     }
 
     @Test
@@ -96,7 +176,7 @@ class BookServletTest {
 
         bookServlet.doPut(request, response);
 
-        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing book code");
+        verify(response).sendRedirect("/books?error=Missing book code");
     }
 
     @Test
@@ -117,4 +197,55 @@ class BookServletTest {
 
         verify(response).sendRedirect("/books?error=Missing book code");
     }
-}
\ No newline at end of file
+
+    private void formBody(String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+        when(request.getContentLengthLong()).thenReturn((long) bytes.length);
+        when(request.getInputStream()).thenReturn(new ServletInputStream() {
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                return in.read(b, off, len);
+            }
+
+            @Override
+            public boolean isFinished() {
+                return in.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener listener) {
+            }
+        });
+    }
+
+    private ByteArrayOutputStream captureBody() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        });
+        return body;
+    }
+}
@@ -1,19 +1,24 @@
 package servlet;
 
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import model.Borrowing;
+import model.BorrowingView;
+import model.Page;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import service.BorrowResult;
 import service.DatabaseService;
+import service.ReturnResult;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -42,107 +47,250 @@ class BorrowingServletTest {
 
     @Test
     void testDoGet() throws IOException, SQLException {
-        List<Borrowing> borrowings = new ArrayList<>();
-        borrowings.add(new Borrowing("B001", 1, LocalDate.now(), null));
-        borrowings.add(new Borrowing("B002", 2, LocalDate.now(), LocalDate.now().plusDays(14)));
-        when(databaseService.getAllBorrowings()).thenReturn(borrowings);
+        HttpServletRequest request = jsonRequest();
+        when(request.getQueryString()).thenReturn("after=10&limit=2&t=" + System.nanoTime());
+        when(request.getParameter("after")).thenReturn("10");
+        when(request.getParameter("limit")).thenReturn("2");
+        when(databaseService.getBorrowingViewsPage(10L, null, 2)).thenReturn(new Page<>(List.of(
+                new BorrowingView(11, "B001", "Dune", 1, "John Doe", LocalDate.of(2026, 1, 5), null),
+                new BorrowingView(12, "B002", "Emma", 2, "Jane Doe", LocalDate.of(2026, 1, 6), null)),
+                "11", "12", true, true));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        borrowingServlet.doGet(request, jsonResponse(HttpServletResponse.SC_OK, body));
+
+        String result = body.toString(StandardCharsets.UTF_8);
+        assertTrue(result.contains("Dune"));
+        assertTrue(result.contains("Jane Doe"));
+        assertTrue(result.contains("\"firstKey\":\"11\""));
+        assertTrue(result.contains("\"lastKey\":\"12\""));
+        assertTrue(result.contains("\"hasPrevious\":true"));
+        assertTrue(result.contains("\"hasNext\":true"));
+    }
+
+    @Test
+    void testDoGetBeforeCursor() throws IOException, SQLException {
+        HttpServletRequest request = jsonRequest();
+        when(request.getQueryString()).thenReturn("before=11&t=" + System.nanoTime());
+        when(request.getParameter("before")).thenReturn("11");
+        when(databaseService.getBorrowingViewsPage(null, 11L, Pagination.DEFAULT_LIMIT))
+                .thenReturn(new Page<>(List.of(), null, null, false, true));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        borrowingServlet.doGet(request, jsonResponse(HttpServletResponse.SC_OK, body));
+
+        String result = body.toString(StandardCharsets.UTF_8);
+        assertTrue(result.contains("\"items\":[]"));
+        assertTrue(result.contains("\"hasPrevious\":false"));
+        assertTrue(result.contains("\"hasNext\":true"));
+    }
+
+    @Test
+    void testDoGetWithMalformedCursor() throws IOException, SQLException {
+        when(request.getQueryString()).thenReturn("after=abc");
+        when(request.getParameter("after")).thenReturn("abc");
+
+        borrowingServlet.doGet(request, response);
+
+        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page cursor");
+        verify(databaseService, never()).getBorrowingViewsPage(any(), any(), anyInt());
+    }
+
+    @Test
+    void testDoGetWithMalformedBeforeCursorAsJson() throws IOException, SQLException {
+        HttpServletRequest request = jsonRequest();
+        when(request.getQueryString()).thenReturn("before=1e3");
+        when(request.getParameter("before")).thenReturn("1e3");
+
+        borrowingServlet.doGet(request, response);
+
+        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page cursor");
+        verify(databaseService, never()).getBorrowingViewsPage(any(), any(), anyInt());
+    }
+
+    @Test
+    void testStreamWithMalformedCursor() throws IOException, SQLException {
+        when(request.getParameter("stream")).thenReturn("true");
+        when(request.getParameter("after")).thenReturn("abc");
 
         borrowingServlet.doGet(request, response);
 
-        writer.flush();
-        String result = stringWriter.toString();
-        assertTrue(result.contains("B001"));
-        assertTrue(result.contains("B002"));
+        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page cursor");
+        verify(databaseService, never()).streamBorrowingViews(any(), any());
     }
 
     @Test
     void testDoPost() throws IOException, SQLException {
         when(request.getParameter("bookCode")).thenReturn("B001");
         when(request.getParameter("memberId")).thenReturn("1");
-
-        when(databaseService.bookExists("B001")).thenReturn(true);
-        when(databaseService.memberExists(1)).thenReturn(true);
-        when(databaseService.isBookAlreadyBorrowed("B001")).thenReturn(false);
+        when(databaseService.borrow("B001", 1)).thenReturn(BorrowResult.SUCCESS);
 
         borrowingServlet.doPost(request, response);
 
-        verify(databaseService).borrowBook("B001", 1);
-        verify(response).sendRedirect("/borrowings?success=Book borrowed successfully");
+        verify(databaseService).borrow("B001", 1);
+        verify(response).sendRedirect("/borrow?success=Book borrowed successfully");
     }
 
     @Test
-    void testDoPostWithMissingParameters() throws IOException {
+    void testDoPostWithMissingParameters() throws IOException, SQLException {
         when(request.getParameter("bookCode")).thenReturn(null);
         when(request.getParameter("memberId")).thenReturn("1");
 
         borrowingServlet.doPost(request, response);
 
-        verify(response).sendRedirect("/borrowings?error=Missing parameters");
+        verify(response).sendRedirect("/borrow?error=All fields are required");
+        verify(databaseService, never()).borrow(anyString(), anyInt());
+    }
+
+    @Test
+    void testDoPostWithNonNumericMember() throws IOException, SQLException {
+        when(request.getParameter("bookCode")).thenReturn("B001");
+        when(request.getParameter("memberId")).thenReturn("one");
+
+        borrowingServlet.doPost(request, response);
+
+        verify(response).sendRedirect("/borrow?error=Member ID must be a number");
+        verify(databaseService, never()).borrow(anyString(), anyInt());
+    }
+
+    @Test
+    void testBorrowResultsMapToStatuses() throws IOException, SQLException {
+        assertBorrowAnswers(BorrowResult.SUCCESS, HttpServletResponse.SC_CREATED, "Book borrowed successfully");
+        assertBorrowAnswers(BorrowResult.MEMBER_NOT_FOUND, HttpServletResponse.SC_NOT_FOUND, "Member not found");
+        assertBorrowAnswers(BorrowResult.BOOK_NOT_FOUND, HttpServletResponse.SC_NOT_FOUND, "Book not found");
+        assertBorrowAnswers(BorrowResult.ALREADY_BORROWED, HttpServletResponse.SC_CONFLICT, "Book is already borrowed");
     }
 
     @Test
     void testDoPostWithInvalidBook() throws IOException, SQLException {
         when(request.getParameter("bookCode")).thenReturn("B001");
         when(request.getParameter("memberId")).thenReturn("1");
-
-        when(databaseService.bookExists("B001")).thenReturn(false);
+        when(databaseService.borrow("B001", 1)).thenReturn(BorrowResult.BOOK_NOT_FOUND);
 
         borrowingServlet.doPost(request, response);
 
-        verify(response).sendRedirect("/borrowings?error=Book does not exist");
+        verify(response).sendRedirect("/borrow?error=Book not found");
     }
 
     @Test
     void testDoPostWithInvalidMember() throws IOException, SQLException {
         when(request.getParameter("bookCode")).thenReturn("B001");
         when(request.getParameter("memberId")).thenReturn("1");
-
-        when(databaseService.bookExists("B001")).thenReturn(true);
-        when(databaseService.memberExists(1)).thenReturn(false);
+        when(databaseService.borrow("B001", 1)).thenReturn(BorrowResult.MEMBER_NOT_FOUND);
 
         borrowingServlet.doPost(request, response);
 
-        verify(response).sendRedirect("/borrowings?error=Member does not exist");
+        verify(response).sendRedirect("/borrow?error=Member not found");
     }
 
     @Test
     void testDoPostWithAlreadyBorrowedBook() throws IOException, SQLException {
         when(request.getParameter("bookCode")).thenReturn("B001");
         when(request.getParameter("memberId")).thenReturn("1");
+        when(databaseService.borrow("B001", 1)).thenReturn(BorrowResult.ALREADY_BORROWED);
+
+        borrowingServlet.doPost(request, response);
+
+        verify(response).sendRedirect("/borrow?error=Book is already borrowed");
+    }
 
-        when(databaseService.bookExists("B001")).thenReturn(true);
-        when(databaseService.memberExists(1)).thenReturn(true);
-        when(databaseService.isBookAlreadyBorrowed("B001")).thenReturn(true);
+    @Test
+    void testDoPostWithDatabaseError() throws IOException, SQLException {
+        when(request.getParameter("bookCode")).thenReturn("B001");
+        when(request.getParameter("memberId")).thenReturn("1");
+        when(databaseService.borrow("B001", 1)).thenThrow(new SQLException("connection refused"));
 
         borrowingServlet.doPost(request, response);
 
-        verify(response).sendRedirect("/borrowings?error=Book is already borrowed");
+        verify(response).sendRedirect("/borrow?error=Database error");
     }
 
     @Test
-    void testDoDelete() throws Exception {
-        when(request.getPathInfo()).thenReturn("/B001");
+    void testReturn() throws IOException, SQLException {
+        when(request.getPathInfo()).thenReturn("/return");
+        when(request.getParameter("bookCode")).thenReturn("B001");
+        when(databaseService.returnLoan("B001")).thenReturn(new ReturnResult(true, true, 1));
 
-        Method doDeleteMethod = BorrowingServlet.class.getDeclaredMethod(
-                "doDelete", HttpServletRequest.class, HttpServletResponse.class
-        );
-        doDeleteMethod.setAccessible(true);
-        doDeleteMethod.invoke(borrowingServlet, request, response);
+        borrowingServlet.doPost(request, response);
 
-        verify(databaseService).returnBook("B001");
-        verify(response).sendRedirect("/borrowings?success=Book returned successfully");
+        verify(databaseService).returnLoan("B001");
+        verify(response).sendRedirect("/borrow?success=Book returned successfully");
     }
 
     @Test
-    void testDoDeleteWithMissingPath() throws Exception {
-        when(request.getPathInfo()).thenReturn(null);
+    void testReturnWithMissingBookCode() throws IOException, SQLException {
+        when(request.getPathInfo()).thenReturn("/return");
+
+        borrowingServlet.doPost(request, response);
 
-        Method doDeleteMethod = BorrowingServlet.class.getDeclaredMethod(
-                "doDelete", HttpServletRequest.class, HttpServletResponse.class
-        );
-        doDeleteMethod.setAccessible(true);
-        doDeleteMethod.invoke(borrowingServlet, request, response);
+        verify(response).sendRedirect("/borrow?error=Missing book code");
+        verify(databaseService, never()).returnLoan(anyString());
+    }
+
+    @Test
+    void testReturnResultsMapToStatuses() throws IOException, SQLException {
+        assertReturnAnswers(new ReturnResult(true, true, 1), HttpServletResponse.SC_OK, "Book returned successfully");
+        assertReturnAnswers(new ReturnResult(false, false, null), HttpServletResponse.SC_NOT_FOUND, "Book not found");
+        assertReturnAnswers(new ReturnResult(true, false, null), HttpServletResponse.SC_CONFLICT,
+                "No active borrowing found for this book");
+    }
+
+    private void assertBorrowAnswers(BorrowResult result, int status, String message)
+            throws IOException, SQLException {
+        HttpServletRequest request = jsonRequest();
+        when(request.getParameter("bookCode")).thenReturn("B001");
+        when(request.getParameter("memberId")).thenReturn("1");
+        when(databaseService.borrow("B001", 1)).thenReturn(result);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        borrowingServlet.doPost(request, jsonResponse(status, body));
+
+        assertTrue(body.toString(StandardCharsets.UTF_8).contains("\"message\":\"" + message + "\""), result.name());
+    }
+
+    private void assertReturnAnswers(ReturnResult result, int status, String message)
+            throws IOException, SQLException {
+        HttpServletRequest request = jsonRequest();
+        when(request.getPathInfo()).thenReturn("/return");
+        when(request.getParameter("bookCode")).thenReturn("B001");
+        when(databaseService.returnLoan("B001")).thenReturn(result);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        borrowingServlet.doPost(request, jsonResponse(status, body));
+
+        assertTrue(body.toString(StandardCharsets.UTF_8).contains("\"message\":\"" + message + "\""), message);
+    }
+
+    private static HttpServletRequest jsonRequest() {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader("Accept")).thenReturn("application/json");
+        return request;
+    }
 
-        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing book code");
+    /**
+     * A response that captures its body and fails unless it is given {@code expectedStatus}.
+     */
+    private static HttpServletResponse jsonResponse(int expectedStatus, ByteArrayOutputStream body) throws IOException {
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        });
+        doAnswer(invocation -> {
+            assertEquals(expectedStatus, (int) invocation.getArgument(0));
+            return null;
+        }).when(response).setStatus(anyInt());
+        return response;
     }
-}
\ No newline at end of file
+}
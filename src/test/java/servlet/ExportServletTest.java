@@ -0,0 +1,105 @@
+package servlet;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.DatabaseService;
+import service.ExportFormat;
+import service.ExportTable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ExportServletTest {
+
+    private DatabaseService databaseService;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private ByteArrayOutputStream body;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        databaseService = mock(DatabaseService.class);
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        body = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        });
+    }
+
+    @Test
+    void testDateRangeIsPassedThrough() throws Exception {
+        when(request.getParameter("format")).thenReturn("ndjson");
+        when(request.getParameter("from")).thenReturn("2024-01-01");
+        when(request.getParameter("to")).thenReturn("2024-12-31");
+
+        new ExportServlet(databaseService, ExportTable.BORROWINGS).doGet(request, response);
+
+        verify(databaseService).export(eq(ExportTable.BORROWINGS), eq(ExportFormat.NDJSON),
+                eq(LocalDate.of(2024, 1, 1)), eq(LocalDate.of(2024, 12, 31)), any());
+        verify(response).setContentType("application/x-ndjson;charset=UTF-8");
+    }
+
+    @Test
+    void testGzipWhenAccepted() throws Exception {
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate");
+        when(databaseService.export(any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(4);
+            out.write("code,title,author\n1,A,B\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+
+        new ExportServlet(databaseService, ExportTable.BOOKS).doGet(request, response);
+
+        verify(response).setHeader("Content-Encoding", "gzip");
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()))) {
+            assertEquals("code,title,author\n1,A,B\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testRejectsDateFilterOnBooks() throws IOException, SQLException {
+        when(request.getParameter("from")).thenReturn("2024-01-01");
+
+        new ExportServlet(databaseService, ExportTable.BOOKS).doGet(request, response);
+
+        verify(response).sendError(eq(400), anyString());
+        verify(databaseService, never()).export(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testRejectsMalformedDate() throws IOException, SQLException {
+        when(request.getParameter("to")).thenReturn("31/12/2024");
+
+        new ExportServlet(databaseService, ExportTable.MEMBERS).doGet(request, response);
+
+        verify(response).sendError(400, "Dates must be in YYYY-MM-DD format");
+        verify(databaseService, never()).export(any(), any(), any(), any(), any());
+    }
+}
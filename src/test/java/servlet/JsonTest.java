@@ -0,0 +1,106 @@
+package servlet;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import model.Book;
+import model.Page;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.BorrowResult;
+import service.DatabaseService;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class JsonTest {
+
+    private DatabaseService databaseService;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private ByteArrayOutputStream body;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        databaseService = mock(DatabaseService.class);
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        body = new ByteArrayOutputStream();
+        when(request.getHeader("Accept")).thenReturn("application/json");
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        });
+    }
+
+    @Test
+    void testBookPageAsJson() throws Exception {
+        when(request.getQueryString()).thenReturn("json-page-test");
+        when(databaseService.getBooksPage(null, null, Pagination.DEFAULT_LIMIT)).thenReturn(new Page<>(
+                List.of(new Book("1", "Dune", "Frank \"F\" Herbert")), "1", "1", false, false));
+
+        new BookServlet(databaseService).doGet(request, response);
+
+        verify(response).setContentType(Json.CONTENT_TYPE);
+        assertEquals("{\"items\":[{\"code\":\"1\",\"title\":\"Dune\",\"author\":\"Frank \\\"F\\\" Herbert\"}],"
+                        + "\"firstKey\":\"1\",\"lastKey\":\"1\",\"hasPrevious\":false,\"hasNext\":false}",
+                body.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testAddBookReturnsCreatedInsteadOfRedirect() throws Exception {
+        when(request.getParameter("code")).thenReturn("42");
+        when(request.getParameter("title")).thenReturn("Title");
+        when(request.getParameter("author")).thenReturn("Author");
+
+        new BookServlet(databaseService).doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_CREATED);
+        verify(response, never()).sendRedirect(anyString());
+        assertEquals("{\"status\":\"success\",\"message\":\"Book added successfully\"}",
+                body.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testBorrowConflictAsJson() throws Exception {
+        when(request.getParameter("bookCode")).thenReturn("7");
+        when(request.getParameter("memberId")).thenReturn("3");
+        when(databaseService.borrow("7", 3)).thenReturn(BorrowResult.ALREADY_BORROWED);
+
+        new BorrowingServlet(databaseService).doPost(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_CONFLICT);
+        assertEquals("{\"status\":\"error\",\"message\":\"Book is already borrowed\"}",
+                body.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testHtmlClientsStillGetRedirects() throws Exception {
+        when(request.getHeader("Accept")).thenReturn("text/html,application/xhtml+xml,*/*;q=0.8");
+        when(request.getParameter("bookCode")).thenReturn("7");
+        when(request.getParameter("memberId")).thenReturn("3");
+        when(databaseService.borrow("7", 3)).thenReturn(BorrowResult.SUCCESS);
+
+        new BorrowingServlet(databaseService).doPost(request, response);
+
+        verify(response).sendRedirect("/borrow?success=Book borrowed successfully");
+        assertEquals(0, body.size());
+    }
+}
@@ -1,15 +1,20 @@
 package servlet;
 
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import model.Member;
+import model.Page;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import service.DatabaseService;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -44,38 +49,70 @@ class MemberServletTest {
         List<Member> members = new ArrayList<>();
         members.add(new Member(1, "John Doe", "john.doe@example.com", LocalDate.now()));
         members.add(new Member(2, "Jane Doe", "jane.doe@example.com", LocalDate.now()));
-        when(databaseService.getAllMembers()).thenReturn(members);
+        when(request.getHeader("Accept")).thenReturn("application/json");
+        when(request.getQueryString()).thenReturn("t=" + System.nanoTime());
+        when(databaseService.getMembersPage(null, null, Pagination.DEFAULT_LIMIT))
+                .thenReturn(new Page<>(members, "1", "2", false, false));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        });
 
         memberServlet.doGet(request, response);
 
-        writer.flush();
-        String result = stringWriter.toString();
+        String result = body.toString(StandardCharsets.UTF_8);
         assertTrue(result.contains("John Doe"));
         assertTrue(result.contains("Jane Doe"));
         assertTrue(result.contains("john.doe@example.com"));
         assertTrue(result.contains("jane.doe@example.com"));
+        assertTrue(result.contains("\"hasPrevious\":false"));
+        assertTrue(result.contains("\"hasNext\":false"));
+    }
+
+    @Test
+    void testDoGetWithMalformedCursor() throws IOException, SQLException {
+        when(request.getQueryString()).thenReturn("before=x");
+        when(request.getParameter("before")).thenReturn("x");
+
+        memberServlet.doGet(request, response);
+
+        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page cursor");
+        verify(databaseService, never()).getMembersPage(any(), any(), anyInt());
     }
 
     @Test
     void testDoPost() throws IOException, SQLException {
-        // Mock request parameters
+        when(request.getContextPath()).thenReturn("");
         when(request.getParameter("name")).thenReturn("New Member");
         when(request.getParameter("email")).thenReturn("new.member@example.com");
 
         memberServlet.doPost(request, response);
 
         verify(databaseService).addMember("New Member", "new.member@example.com");
-        verify(response).sendRedirect("/members?success=Member added successfully");
+        verify(response).sendRedirect("/members");
     }
 
     @Test
-    void testDoPostWithMissingParameters() throws IOException {
+    void testDoPostWithMissingParameters() throws IOException, SQLException {
         when(request.getParameter("name")).thenReturn(null);
         when(request.getParameter("email")).thenReturn("new.member@example.com");
 
         memberServlet.doPost(request, response);
 
-        verify(response).sendRedirect("/members?error=Missing parameters");
+        verify(response).sendError(HttpServletResponse.SC_BAD_REQUEST, "All fields are required");
+        verify(databaseService, never()).addMember(any(), any());
     }
 
     @Test
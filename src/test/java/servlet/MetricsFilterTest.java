@@ -0,0 +1,81 @@
+package servlet;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletMapping;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import util.Metrics;
+
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MetricsFilterTest {
+
+    private final Metrics metrics = new Metrics();
+    private final MetricsFilter filter = new MetricsFilter(metrics);
+
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private FilterChain chain;
+
+    @BeforeEach
+    void setUp() {
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        chain = mock(FilterChain.class);
+        HttpServletMapping mapping = mock(HttpServletMapping.class);
+        when(mapping.getPattern()).thenReturn("/books/*");
+        when(request.getHttpServletMapping()).thenReturn(mapping);
+        when(request.getMethod()).thenReturn("GET");
+    }
+
+    @Test
+    void testRecordsSynchronousRequestByMapping() throws Exception {
+        when(response.getStatus()).thenReturn(404);
+
+        filter.doFilter(request, response, chain);
+
+        assertTrue(scrape().contains("http_server_requests_total{method=\"GET\",route=\"/books/*\",status=\"404\"} 1"));
+    }
+
+    @Test
+    void testCountsEscapingExceptionAsServerError() throws Exception {
+        doThrow(new ServletException("boom")).when(chain).doFilter(request, response);
+
+        assertThrows(ServletException.class, () -> filter.doFilter(request, response, chain));
+
+        assertTrue(scrape().contains("http_server_errors_total{method=\"GET\",route=\"/books/*\"} 1"));
+    }
+
+    @Test
+    void testAsyncRequestIsRecordedOnCompletion() throws Exception {
+        AsyncContext async = mock(AsyncContext.class);
+        when(request.isAsyncStarted()).thenReturn(true);
+        when(request.getAsyncContext()).thenReturn(async);
+        when(response.getStatus()).thenReturn(201);
+
+        filter.doFilter(request, response, chain);
+        assertFalse(scrape().contains("status=\"201\""));
+
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(async).addListener(listener.capture());
+        listener.getValue().onComplete(new AsyncEvent(async));
+
+        assertTrue(scrape().contains("http_server_requests_total{method=\"GET\",route=\"/books/*\",status=\"201\"} 1"));
+    }
+
+    private String scrape() throws Exception {
+        StringWriter out = new StringWriter();
+        metrics.writePrometheus(out);
+        return out.toString();
+    }
+}
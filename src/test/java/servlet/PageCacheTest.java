@@ -0,0 +1,194 @@
+package servlet;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PageCacheTest {
+
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private ByteArrayOutputStream body;
+    private AtomicInteger renders;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        body = new ByteArrayOutputStream();
+        renders = new AtomicInteger();
+        when(request.getQueryString()).thenReturn("after=" + System.nanoTime());
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+        });
+    }
+
+    private void serve() throws Exception {
+        PageCache.BOOKS.serve(request, response, out -> {
+            renders.incrementAndGet();
+            out.write("<html>books</html>".getBytes(StandardCharsets.UTF_8));
+        });
+    }
+
+    @Test
+    void testMatchingETagAnswersNotModifiedWithoutRendering() throws Exception {
+        serve();
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etag.capture());
+
+        when(request.getHeader("If-None-Match")).thenReturn(etag.getValue());
+        serve();
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    void testEachContentCodingHasItsOwnETag() throws Exception {
+        serve();
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+        serve();
+        when(request.getHeader("Accept-Encoding")).thenReturn("deflate");
+        serve();
+
+        ArgumentCaptor<String> etags = ArgumentCaptor.forClass(String.class);
+        verify(response, times(3)).setHeader(eq("ETag"), etags.capture());
+        String identity = etags.getAllValues().get(0);
+        assertEquals(identity.replaceAll("\"$", "-gz\""), etags.getAllValues().get(1));
+        assertEquals(identity.replaceAll("\"$", "-df\""), etags.getAllValues().get(2));
+    }
+
+    @Test
+    void testIfNoneMatchComparesWeakly() {
+        assertTrue(PageCache.matches("\"books-1-a\"", "books-1-a"));
+        assertTrue(PageCache.matches("\"other\", W/\"books-1-a-gz\"", "books-1-a"));
+        assertTrue(PageCache.matches("\"books-1-a-df\"", "books-1-a"));
+        assertTrue(PageCache.matches("*", "books-1-a"));
+        assertFalse(PageCache.matches("\"books-2-a-gz\"", "books-1-a"));
+        assertFalse(PageCache.matches("books-1-a", "books-1-a"));
+    }
+
+    @Test
+    void testBumpInvalidatesRenderedPage() throws Exception {
+        serve();
+        serve();
+        assertEquals(1, renders.get());
+
+        PageCache.BOOKS.bump();
+        serve();
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void testETagFollowsTheContentOnceTheRenderingExpires() throws Exception {
+        PageCache cache = new PageCache("test", 1, TimeUnit.MILLISECONDS);
+        AtomicReference<String> content = new AtomicReference<>("<html>v1</html>");
+        PageCache.Renderer renderer = out -> {
+            renders.incrementAndGet();
+            out.write(content.get().getBytes(StandardCharsets.UTF_8));
+        };
+
+        cache.serve(request, response, renderer);
+        ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etag.capture());
+        when(request.getHeader("If-None-Match")).thenReturn(etag.getValue());
+
+        // Unchanged data: rendered again after expiry, but still a 304.
+        Thread.sleep(5);
+        cache.serve(request, response, renderer);
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+        // Changed behind the cache's back, e.g. from psql: no bump(), yet a new tag and body.
+        content.set("<html>v2</html>");
+        Thread.sleep(5);
+        cache.serve(request, response, renderer);
+        verify(response, times(1)).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        assertEquals(3, renders.get());
+        assertTrue(body.toString(StandardCharsets.UTF_8).endsWith("<html>v2</html>"));
+    }
+
+    @Test
+    void testLargePageIsStreamedWithoutETagOrCaching() throws Exception {
+        byte[] row = "<tr><td>row</td></tr>\n".getBytes(StandardCharsets.UTF_8);
+        int rows = PageCache.MAX_BUFFERED_BYTES / row.length + 100;
+        PageCache cache = new PageCache("test", 1, TimeUnit.MINUTES);
+        PageCache.Renderer renderer = out -> {
+            renders.incrementAndGet();
+            for (int i = 0; i < rows; i++) {
+                out.write(row);
+            }
+        };
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+
+        cache.serve(request, response, renderer);
+        cache.serve(request, response, renderer);
+
+        assertEquals(2, renders.get());
+        verify(response, never()).setHeader(eq("ETag"), anyString());
+        verify(response, never()).setContentLength(anyInt());
+        verify(response, times(2)).setHeader("Content-Encoding", "gzip");
+        byte[] bodies = body.toByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bodies))) {
+            // GZIPInputStream reads concatenated members, so both responses come out.
+            assertEquals(2L * rows * row.length, in.readAllBytes().length);
+        }
+    }
+
+    @Test
+    void testBorrowingsPageFollowsBookAndMemberChanges() {
+        long version = PageCache.BORROWINGS.version();
+
+        PageCache.MEMBERS.bump();
+        assertNotEquals(version, PageCache.BORROWINGS.version());
+
+        version = PageCache.BORROWINGS.version();
+        PageCache.BOOKS.bump();
+        assertNotEquals(version, PageCache.BORROWINGS.version());
+    }
+
+    @Test
+    void testGzipEncodingIsServedWhenAccepted() throws Exception {
+        when(request.getHeader("Accept-Encoding")).thenReturn("deflate, gzip;q=0.8");
+
+        serve();
+
+        verify(response).setHeader("Content-Encoding", "gzip");
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()))) {
+            assertEquals("<html>books</html>", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testNegotiateHonoursRefusedCodings() {
+        assertEquals("deflate", PageCache.negotiate("gzip;q=0, deflate"));
+        assertNull(PageCache.negotiate("br, identity"));
+        assertNull(PageCache.negotiate(null));
+    }
+}
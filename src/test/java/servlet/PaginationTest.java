@@ -0,0 +1,84 @@
+package servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import model.Page;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PaginationTest {
+
+    private static HttpServletRequest request(String name, String value) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getParameter(name)).thenReturn(value);
+        return request;
+    }
+
+    @Test
+    void testLimitDefaultsAndIsClamped() {
+        assertEquals(Pagination.DEFAULT_LIMIT, Pagination.parseLimit(request("limit", null)));
+        assertEquals(Pagination.DEFAULT_LIMIT, Pagination.parseLimit(request("limit", "")));
+        assertEquals(Pagination.DEFAULT_LIMIT, Pagination.parseLimit(request("limit", "lots")));
+        assertEquals(1, Pagination.parseLimit(request("limit", "0")));
+        assertEquals(25, Pagination.parseLimit(request("limit", "25")));
+        assertEquals(Pagination.MAX_LIMIT, Pagination.parseLimit(request("limit", "100000")));
+    }
+
+    @Test
+    void testCursors() {
+        assertNull(Pagination.longCursor(request("after", null), "after"));
+        assertNull(Pagination.longCursor(request("after", ""), "after"));
+        assertEquals(42L, Pagination.longCursor(request("after", "42"), "after"));
+        assertEquals(7, Pagination.intCursor(request("before", "7"), "before"));
+        assertEquals("B 1", Pagination.cursor(request("after", "B 1"), "after"));
+    }
+
+    @Test
+    void testMalformedCursorIsRejected() {
+        assertThrows(NumberFormatException.class, () -> Pagination.longCursor(request("after", "abc"), "after"));
+        assertThrows(NumberFormatException.class, () -> Pagination.intCursor(request("before", "1.5"), "before"));
+        assertThrows(NumberFormatException.class,
+                () -> Pagination.intCursor(request("after", "99999999999"), "after"));
+    }
+
+    @Test
+    void testFirstPageLinksOnlyForward() {
+        String links = Pagination.links("/books", new Page<>(List.of("a", "b"), "a", "b", false, true), 2);
+
+        assertFalse(links.contains("before="));
+        assertTrue(links.contains("href=\"/books?after=b&amp;limit=2\""));
+    }
+
+    @Test
+    void testMiddlePageLinksBothWays() {
+        String links = Pagination.links("/books", new Page<>(List.of("c", "d"), "c", "d", true, true), 2);
+
+        assertTrue(links.contains("href=\"/books?before=c&amp;limit=2\""));
+        assertTrue(links.contains("href=\"/books?after=d&amp;limit=2\""));
+    }
+
+    @Test
+    void testLastPageLinksOnlyBack() {
+        String links = Pagination.links("/books", new Page<>(List.of("e"), "e", "e", true, false), 2);
+
+        assertTrue(links.contains("href=\"/books?before=e&amp;limit=2\""));
+        assertFalse(links.contains("after="));
+    }
+
+    @Test
+    void testEmptyPageHasNoLinks() {
+        assertEquals("<div class=\"pagination\"></div>",
+                Pagination.links("/books", new Page<>(List.of(), null, null, true, false), 2));
+    }
+
+    @Test
+    void testKeysAreUrlEncoded() {
+        String links = Pagination.links("/books", new Page<>(List.of("x"), "A&B", "C D", true, true), 5);
+
+        assertTrue(links.contains("before=A%26B&amp;limit=5"));
+        assertTrue(links.contains("after=C+D&amp;limit=5"));
+    }
+}
@@ -0,0 +1,93 @@
+package servlet;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.CirculationReport;
+import service.DatabaseService;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReportServletTest {
+
+    private DatabaseService databaseService;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private ByteArrayOutputStream body;
+    private ReportServlet servlet;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        databaseService = mock(DatabaseService.class);
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        body = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        });
+        servlet = new ReportServlet(databaseService);
+    }
+
+    @Test
+    void testWritesAllSections() throws Exception {
+        when(request.getParameter("from")).thenReturn("2024-01");
+        when(request.getParameter("to")).thenReturn("2024-02");
+        when(request.getParameter("limit")).thenReturn("5");
+        when(databaseService.getCirculationReport(5, YearMonth.of(2024, 1), YearMonth.of(2024, 2)))
+                .thenReturn(new CirculationReport(
+                        List.of(new CirculationReport.BookLoans("B1", "Dune", "Herbert", 12)),
+                        List.of(new CirculationReport.MemberLoans(7, "Ann", 2, 9)),
+                        List.of(new CirculationReport.MonthlyCirculation(YearMonth.of(2024, 1), 30, 28))));
+
+        servlet.doGet(request, response);
+
+        assertEquals("{\"topBooks\":[{\"code\":\"B1\",\"title\":\"Dune\",\"author\":\"Herbert\",\"loans\":12}],"
+                        + "\"activeMembers\":[{\"id\":7,\"name\":\"Ann\",\"activeLoans\":2,\"totalLoans\":9}],"
+                        + "\"monthly\":[{\"month\":\"2024-01\",\"loans\":30,\"returns\":28}]}",
+                body.toString(StandardCharsets.UTF_8));
+        verify(response).setContentType(Json.CONTENT_TYPE);
+    }
+
+    @Test
+    void testDefaultsToTheLastTwelveMonths() throws Exception {
+        when(databaseService.getCirculationReport(anyInt(), any(), any()))
+                .thenReturn(new CirculationReport(List.of(), List.of(), List.of()));
+
+        servlet.doGet(request, response);
+
+        YearMonth now = YearMonth.now();
+        verify(databaseService).getCirculationReport(Pagination.DEFAULT_LIMIT, now.minusMonths(11), now);
+    }
+
+    @Test
+    void testRejectsBadMonths() throws Exception {
+        when(request.getParameter("from")).thenReturn("2024-13");
+
+        servlet.doGet(request, response);
+
+        verify(response).sendError(eq(HttpServletResponse.SC_BAD_REQUEST), anyString());
+        verifyNoInteractions(databaseService);
+    }
+}
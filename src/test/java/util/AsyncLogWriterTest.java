@@ -0,0 +1,72 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLogWriterTest {
+
+    private static AsyncLogWriter.Event event(String message, Object... args) {
+        return new AsyncLogWriter.Event(0L, Logger.Level.INFO, "test", "main", message, args, null);
+    }
+
+    @Test
+    void testDrainWritesEventsInOrder() {
+        StringWriter out = new StringWriter();
+        AsyncLogWriter writer = new AsyncLogWriter(8, out, new StringWriter());
+
+        writer.offer(event("first {}", 1));
+        writer.offer(event("second {} and {}", "a", "b"));
+
+        assertEquals(2, writer.drain());
+        String logged = out.toString();
+        assertTrue(logged.contains("test - first 1"));
+        assertTrue(logged.indexOf("first 1") < logged.indexOf("second a and b"));
+    }
+
+    @Test
+    void testParkedConsumerWakesForEachEvent() throws Exception {
+        StringWriter out = new StringWriter();
+        AsyncLogWriter writer = new AsyncLogWriter(8, out, new StringWriter());
+        writer.start();
+
+        for (int i = 0; i < 20; i++) {
+            // Long enough for the consumer to find the ring empty and park without a timeout.
+            Thread.sleep(10);
+            writer.offer(event("event {}", i));
+            String expected = "test - event " + i;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!out.toString().contains(expected)) {
+                assertTrue(System.nanoTime() < deadline, "consumer never woke for " + expected);
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    @Test
+    void testFullBufferDropsAndReportsCount() {
+        StringWriter err = new StringWriter();
+        AsyncLogWriter writer = new AsyncLogWriter(4, new StringWriter(), err);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(writer.offer(event("message {}", i)));
+        }
+        assertFalse(writer.offer(event("overflow")));
+        assertEquals(1, writer.getDroppedCount());
+
+        writer.drain();
+        assertTrue(err.toString().contains("1 log events dropped"));
+        assertTrue(writer.offer(event("after drain")));
+    }
+
+    @Test
+    void testTrailingThrowableIsPrinted() {
+        String line = AsyncLogWriter.format(event("failed {}", "B001", new IllegalStateException("boom")));
+
+        assertTrue(line.contains("failed B001"));
+        assertTrue(line.contains("java.lang.IllegalStateException: boom"));
+    }
+}
@@ -0,0 +1,86 @@
+package util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ConnectionPoolTest {
+
+    private List<Connection> physicalConnections;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        physicalConnections = new ArrayList<>();
+        pool = new ConnectionPool(() -> {
+            Connection connection = mock(Connection.class);
+            when(connection.getAutoCommit()).thenReturn(true);
+            when(connection.isValid(anyInt())).thenReturn(true);
+            physicalConnections.add(connection);
+            return connection;
+        }, new ConnectionPool.Config(2, 0, 100, 60_000, 60_000, 0, 60_000));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void testConnectionIsReusedAfterClose() throws SQLException {
+        Connection first = pool.getConnection();
+        first.close();
+        Connection second = pool.getConnection();
+        second.close();
+
+        assertEquals(1, physicalConnections.size());
+        verify(physicalConnections.get(0), never()).close();
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void testTimesOutWhenExhausted() throws SQLException {
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+
+        assertEquals(2, pool.getActiveCount());
+        assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+        assertEquals(1, pool.getTimeoutCount());
+
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void testClosedHandleCannotBeUsedOrReturnedTwice() throws SQLException {
+        Connection handle = pool.getConnection();
+        handle.close();
+        handle.close();
+
+        assertTrue(handle.isClosed());
+        assertThrows(SQLException.class, () -> handle.prepareStatement("SELECT 1"));
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void testOpenTransactionIsRolledBackOnReturn() throws SQLException {
+        Connection handle = pool.getConnection();
+        Connection physical = physicalConnections.get(0);
+        when(physical.getAutoCommit()).thenReturn(false);
+
+        handle.close();
+
+        verify(physical).rollback();
+        verify(physical).setAutoCommit(true);
+    }
+}
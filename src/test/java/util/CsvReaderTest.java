@@ -0,0 +1,40 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvReaderTest {
+
+    @Test
+    void testReadsQuotedFieldsWithCommasQuotesAndNewlines() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader(
+                "code,title,author\r\n1,\"Hello, \"\"World\"\"\",Someone\n2,\"Two\nLines\",Other\n"));
+
+        assertEquals(List.of("code", "title", "author"), reader.next());
+        assertEquals(List.of("1", "Hello, \"World\"", "Someone"), reader.next());
+        assertEquals(2, reader.getRecordLine());
+        assertEquals(List.of("2", "Two\nLines", "Other"), reader.next());
+        assertEquals(3, reader.getRecordLine());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void testLastRecordWithoutNewline() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("1,a,b"));
+
+        assertEquals(List.of("1", "a", "b"), reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void testUnterminatedQuoteFails() {
+        CsvReader reader = new CsvReader(new StringReader("1,\"open"));
+
+        assertThrows(IOException.class, reader::next);
+    }
+}
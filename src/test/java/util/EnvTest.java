@@ -0,0 +1,22 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnvTest {
+
+    @Test
+    void testParsesTrimmedValue() {
+        assertEquals(42, Env.parseInt("X", " 42 ", 7));
+        assertEquals(-1, Env.parseInt("X", "-1", 7));
+    }
+
+    @Test
+    void testFallsBackToDefault() {
+        assertEquals(7, Env.parseInt("X", null, 7));
+        assertEquals(7, Env.parseInt("X", "  ", 7));
+        assertEquals(7, Env.parseInt("X", "10ms", 7));
+        assertEquals(7, Env.parseInt("X", "99999999999", 7));
+    }
+}
@@ -0,0 +1,93 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FormBodyDecoderTest {
+
+    private static FormBodyDecoder read(String body) throws IOException {
+        return FormBodyDecoder.read(stream(body), -1, FormBodyDecoder.DEFAULT_MAX_BYTES);
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testDecodesPercentEscapesAndPlus() throws IOException {
+        FormBodyDecoder form = read("title=Les+Mis%C3%A9rables+%E2%80%94+Tome+I&author=Victor+Hugo+%26+Co");
+
+        assertEquals(2, form.size());
+        assertEquals("Les Misérables — Tome I", form.get("title"));
+        assertEquals("Victor Hugo & Co", form.get("author"));
+        assertNull(form.get("isbn"));
+    }
+
+    @Test
+    void testValueMayContainEquals() throws IOException {
+        FormBodyDecoder form = read("title=E=mc2&author=a%3Db");
+
+        assertEquals("E=mc2", form.get("title"));
+        assertEquals("a=b", form.get("author"));
+    }
+
+    @Test
+    void testEmptyAndBareFields() throws IOException {
+        FormBodyDecoder form = read("&title=&flag&&author=X&");
+
+        assertEquals(3, form.size());
+        assertEquals("", form.get("title"));
+        assertEquals("flag", form.name(1));
+        assertEquals("", form.value(1));
+        assertEquals("X", form.get("author"));
+    }
+
+    @Test
+    void testFirstOccurrenceWinsAndNamesMatchExactly() throws IOException {
+        FormBodyDecoder form = read("name=first&name=second&names=other&na%C3%AFve=yes");
+
+        assertEquals("first", form.get("name"));
+        assertEquals("other", form.get("names"));
+        assertNull(form.get("nam"));
+        assertEquals("yes", form.get("naïve"));
+    }
+
+    @Test
+    void testTrailingNewlineIsIgnored() throws IOException {
+        assertEquals("Dune", read("title=Dune\r\n").get("title"));
+    }
+
+    @Test
+    void testMalformedEscapeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> read("title=100%"));
+        assertThrows(IllegalArgumentException.class, () -> read("title=%G1"));
+    }
+
+    @Test
+    void testSizeCap() throws IOException {
+        String body = "title=" + "x".repeat(94);
+
+        assertEquals(94, FormBodyDecoder.read(stream(body), -1, 100).get("title").length());
+        assertThrows(FormBodyDecoder.TooLargeException.class,
+                () -> FormBodyDecoder.read(stream(body + "y"), -1, 100));
+        // A declared length over the cap is refused before reading, as is a body longer than declared.
+        assertThrows(FormBodyDecoder.TooLargeException.class,
+                () -> FormBodyDecoder.read(stream("a=b"), 101, 100));
+        assertThrows(FormBodyDecoder.TooLargeException.class,
+                () -> FormBodyDecoder.read(stream(body + "y"), 10, 100));
+    }
+
+    @Test
+    void testBodyLargerThanInitialBuffer() throws IOException {
+        String value = "v".repeat(5_000);
+
+        assertEquals(value, read("a=1&b=" + value + "&c=3").get("b"));
+        assertEquals("3", read("a=1&b=" + value + "&c=3").get("c"));
+    }
+}
@@ -0,0 +1,71 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonWriterTest {
+
+    @Test
+    void testNestedStructures() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter json = new JsonWriter(out);
+
+        json.beginObject()
+                .name("items").beginArray()
+                .beginObject().field("id", 1).field("name", "A").endObject()
+                .beginObject().field("id", 2).field("joined", LocalDate.of(2024, 5, 1)).field("email", (String) null).endObject()
+                .endArray()
+                .field("hasNext", false)
+                .endObject();
+        json.flush();
+
+        assertEquals("{\"items\":[{\"id\":1,\"name\":\"A\"},{\"id\":2,\"joined\":\"2024-05-01\",\"email\":null}],"
+                + "\"hasNext\":false}", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testEscapesAndUtf8() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter json = new JsonWriter(out);
+
+        json.value("q\"b\\\n\u0001 é € 📚");
+        json.flush();
+
+        assertEquals("\"q\\\"b\\\\\\n\\u0001 é € 📚\"", out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testLongOutputSpansBufferDrains() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter json = new JsonWriter(out);
+        String title = "x".repeat(100);
+
+        json.beginArray();
+        for (int i = 0; i < 1000; i++) {
+            json.value(title);
+        }
+        json.endArray().flush();
+
+        String result = out.toString(StandardCharsets.UTF_8);
+        assertEquals(2 + 1000 * 102 + 999, result.length());
+        assertTrue(result.startsWith("[\"xxx") && result.endsWith("xxx\"]"));
+    }
+
+    @Test
+    void testNewlineSeparatesTopLevelValues() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter json = new JsonWriter(out);
+
+        json.beginObject().field("a", 1).endObject().newline();
+        json.beginObject().field("a", 2).endObject().newline();
+        json.flush();
+
+        assertEquals("{\"a\":1}\n{\"a\":2}\n", out.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,83 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(50.5, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    void testLargeValuesWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1_000);
+        }
+
+        assertEquals(5_000_000, histogram.getValueAtPercentile(50), 5_000_000 * 0.016);
+        assertEquals(9_990_000, histogram.getValueAtPercentile(99.9), 9_990_000 * 0.016);
+        assertEquals(10_000_000, histogram.getMax());
+        assertEquals(10_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void testBucketsCoverTheWholeRange() {
+        int previousIndex = 0;
+        for (long value : new long[]{0, 127, 128, 129, 255, 256, 1L << 40, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.highestEquivalent(index) >= value);
+            assertTrue(index >= previousIndex);
+            previousIndex = index;
+        }
+    }
+
+    @Test
+    void testAddMergesCounts() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        b.record(1_000_000);
+        b.record(20);
+
+        a.add(b);
+
+        assertEquals(3, a.getCount());
+        assertEquals(1_000_000, a.getMax());
+        assertEquals(2, a.getCountAtOrBelow(20));
+    }
+
+    @Test
+    void testCountsFromManyThreadsAreAllKept() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4 * LatencyHistogram.STRIPES];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 1; i <= 10_000; i++) {
+                    histogram.record(i % 100);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long recorded = threads.length * 10_000L;
+        assertEquals(recorded, histogram.getCount());
+        assertArrayEquals(new long[]{recorded / 2, recorded}, histogram.getCountsAtOrBelow(49));
+        assertEquals(99, histogram.getMax());
+    }
+}
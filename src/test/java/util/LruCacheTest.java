@@ -0,0 +1,57 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LruCacheTest {
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        LruCache<String, Integer> cache = new LruCache<>(2, 1, TimeUnit.MINUTES);
+        cache.putIfCurrent("a", 1, cache.generation());
+        cache.putIfCurrent("b", 2, cache.generation());
+        cache.get("a");
+        cache.putIfCurrent("c", 3, cache.generation());
+
+        assertEquals(1, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    void testExpiredEntryIsAMiss() {
+        LruCache<String, Integer> cache = new LruCache<>(10, 0, TimeUnit.MILLISECONDS);
+        cache.putIfCurrent("a", 1, cache.generation());
+
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.stats().misses());
+    }
+
+    @Test
+    void testValueLoadedBeforeInvalidationIsNotStored() {
+        LruCache<String, Integer> cache = new LruCache<>(10, 1, TimeUnit.MINUTES);
+        long generation = cache.generation();
+        cache.invalidate("a");
+
+        assertFalse(cache.putIfCurrent("a", 1, generation));
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void testHitAndMissStatistics() {
+        LruCache<String, Integer> cache = new LruCache<>(10, 1, TimeUnit.MINUTES);
+        cache.get("a");
+        cache.putIfCurrent("a", 1, cache.generation());
+        cache.get("a");
+        cache.get("a");
+
+        LruCache.Stats stats = cache.stats();
+        assertEquals(2, stats.hits());
+        assertEquals(1, stats.misses());
+        assertEquals(2.0 / 3, stats.hitRate(), 1e-9);
+    }
+}
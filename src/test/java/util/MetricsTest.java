@@ -0,0 +1,71 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+
+    @Test
+    void testRouteHistogramAndStatusCounters() throws Exception {
+        Metrics metrics = new Metrics();
+        long now = System.nanoTime();
+        metrics.route("GET", "/books").record(200, now);
+        metrics.route("GET", "/books").record(200, now);
+        metrics.route("POST", "/borrow/*").record(503, now);
+
+        String text = render(metrics);
+
+        assertTrue(text.contains("# TYPE http_server_requests_seconds histogram"));
+        assertTrue(text.contains("http_server_requests_seconds_count{method=\"GET\",route=\"/books\"} 2"));
+        assertTrue(text.contains("http_server_requests_seconds_bucket{method=\"GET\",route=\"/books\",le=\"+Inf\"} 2"));
+        assertTrue(text.contains("http_server_requests_total{method=\"GET\",route=\"/books\",status=\"200\"} 2"));
+        assertTrue(text.contains("http_server_requests_total{method=\"POST\",route=\"/borrow/*\",status=\"503\"} 1"));
+        assertTrue(text.contains("http_server_errors_total{method=\"POST\",route=\"/borrow/*\"} 1"));
+        assertTrue(text.contains("http_server_errors_total{method=\"GET\",route=\"/books\"} 0"));
+    }
+
+    @Test
+    void testSameSeriesIsReused() {
+        Metrics metrics = new Metrics();
+
+        assertSame(metrics.route("GET", "/books"), metrics.route("GET", "/books"));
+        assertNotSame(metrics.route("GET", "/books"), metrics.route("PUT", "/books"));
+    }
+
+    @Test
+    void testBucketsAreCumulative() throws Exception {
+        Metrics metrics = new Metrics();
+        long now = System.nanoTime();
+        // Start times in the past give known durations: about 2ms and 2s.
+        metrics.recordDbCall("getAllBooks", now - 2_000_000L);
+        metrics.recordDbCall("getAllBooks", now - 2_000_000_000L);
+
+        String text = render(metrics);
+
+        assertTrue(text.contains("db_call_seconds_bucket{method=\"getAllBooks\",le=\"0.001\"} 0"));
+        assertTrue(text.contains("db_call_seconds_bucket{method=\"getAllBooks\",le=\"0.01\"} 1"));
+        assertTrue(text.contains("db_call_seconds_bucket{method=\"getAllBooks\",le=\"5\"} 2"));
+        assertTrue(text.contains("db_call_seconds_count{method=\"getAllBooks\"} 2"));
+    }
+
+    @Test
+    void testGaugesAreReadAtScrapeTime() throws Exception {
+        Metrics metrics = new Metrics();
+        long[] value = {3};
+        metrics.gauge("db_pool_connections_active", "Connections in use.", () -> value[0]);
+        value[0] = 7;
+
+        String text = render(metrics);
+
+        assertTrue(text.contains("# HELP db_pool_connections_active Connections in use.\n"
+                + "# TYPE db_pool_connections_active gauge\n"
+                + "db_pool_connections_active 7\n"));
+    }
+
+    private static String render(Metrics metrics) throws Exception {
+        StringBuilder out = new StringBuilder();
+        metrics.writePrometheus(out);
+        return out.toString();
+    }
+}
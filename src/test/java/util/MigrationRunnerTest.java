@@ -0,0 +1,144 @@
+package util;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MigrationRunnerTest {
+
+    @Test
+    void testParsesIndexInOrderSkippingComments() throws Exception {
+        List<MigrationRunner.Migration> migrations = MigrationRunner.parseIndex(new StringReader(
+                "# schema\nV1__active_loans.sql\n\n  V10__member_email_index.sql  \n"));
+
+        assertEquals(2, migrations.size());
+        assertEquals(1, migrations.get(0).version());
+        assertEquals("active loans", migrations.get(0).description());
+        assertEquals(10, migrations.get(1).version());
+        assertEquals("V10__member_email_index.sql", migrations.get(1).script());
+    }
+
+    @Test
+    void testRejectsOutOfOrderOrMalformedEntries() {
+        assertThrows(IllegalArgumentException.class,
+                () -> MigrationRunner.parseIndex(new StringReader("V2__b.sql\nV2__c.sql\n")));
+        assertThrows(IllegalArgumentException.class,
+                () -> MigrationRunner.parseIndex(new StringReader("V3__b.sql\nV1__a.sql\n")));
+        assertThrows(IllegalArgumentException.class,
+                () -> MigrationRunner.parseIndex(new StringReader("create_tables.sql\n")));
+    }
+
+    @Test
+    void testChecksumIgnoresLineEndings() {
+        assertEquals(MigrationRunner.checksum("CREATE INDEX a;\nCREATE INDEX b;\n"),
+                MigrationRunner.checksum("CREATE INDEX a;\r\nCREATE INDEX b;\r\n"));
+        assertNotEquals(MigrationRunner.checksum("CREATE INDEX a;"), MigrationRunner.checksum("CREATE INDEX b;"));
+    }
+
+    @Test
+    void testShippedIndexListsEveryScript() throws Exception {
+        List<MigrationRunner.Migration> migrations;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("db/migration/index.txt")) {
+            migrations = MigrationRunner.parseIndex(
+                    new InputStreamReader(Objects.requireNonNull(in), StandardCharsets.UTF_8));
+        }
+
+        List<String> listed = migrations.stream().map(MigrationRunner.Migration::script).sorted().toList();
+        List<String> onDisk;
+        try (Stream<Path> files = Files.list(migrationDirectory())) {
+            onDisk = files.map(p -> p.getFileName().toString()).filter(n -> n.endsWith(".sql")).sorted().toList();
+        }
+        assertEquals(onDisk, listed);
+    }
+
+    @Test
+    void testAdoptsDatabaseWhereEarlyScriptsWereAppliedByHand() throws Exception {
+        // V2 and V3 shipped before the runner, when they were applied with psql; the runner must
+        // re-apply them over that schema without error, so every script has to be re-runnable.
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            try (Connection conn = postgres.getPostgresDatabase().getConnection();
+                 Statement stmt = conn.createStatement()) {
+                for (String script : List.of("V0__base_schema.sql", "V1__active_loan_unique_index.sql",
+                        "V2__circulation_stats.sql", "V3__borrowing_view.sql")) {
+                    stmt.execute(Files.readString(migrationDirectory().resolve(script)));
+                }
+                stmt.execute("INSERT INTO books (code, title, author) VALUES ('B1', 'Dune', 'Frank Herbert')");
+                stmt.execute("INSERT INTO members (name, email) VALUES ('Ann', 'ann@example.com')");
+                stmt.execute("INSERT INTO borrowings (book_code, member_id, borrow_date) VALUES ('B1', 1, CURRENT_DATE)");
+            }
+
+            MigrationRunner runner = new MigrationRunner(postgres.getPostgresDatabase(), "db/migration");
+            assertEquals(5, runner.pending().size(), "nothing is recorded until the runner has run");
+            assertEquals(5, runner.migrate());
+            assertEquals(0, runner.migrate());
+            assertEquals(List.of(), runner.pending());
+
+            try (Connection conn = postgres.getPostgresDatabase().getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT loan_count FROM book_circulation WHERE book_code = 'B1'")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getLong(1), "re-applying V2 must not double the backfilled counts");
+            }
+        }
+    }
+
+    @Test
+    void testAddsIdToBorrowingsCreatedWithoutOne() throws Exception {
+        // The tables as the application created them before any migration existed.
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            try (Connection conn = postgres.getPostgresDatabase().getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE books (code VARCHAR(20) PRIMARY KEY, title VARCHAR(255) NOT NULL, "
+                        + "author VARCHAR(255) NOT NULL)");
+                stmt.execute("CREATE TABLE members (id SERIAL PRIMARY KEY, name VARCHAR(255) NOT NULL, "
+                        + "email VARCHAR(255) NOT NULL UNIQUE, join_date DATE NOT NULL DEFAULT CURRENT_DATE)");
+                stmt.execute("CREATE TABLE borrowings (book_code VARCHAR(20) NOT NULL REFERENCES books (code), "
+                        + "member_id INT NOT NULL REFERENCES members (id), borrow_date DATE NOT NULL, return_date DATE)");
+                stmt.execute("INSERT INTO books (code, title, author) VALUES ('B1', 'Dune', 'Frank Herbert')");
+                stmt.execute("INSERT INTO members (name, email) VALUES ('Ann', 'ann@example.com')");
+                stmt.execute("INSERT INTO borrowings (book_code, member_id, borrow_date, return_date) "
+                        + "VALUES ('B1', 1, DATE '2024-01-02', DATE '2024-01-09'), ('B1', 1, DATE '2024-02-01', NULL)");
+            }
+
+            assertEquals(5, new MigrationRunner(postgres.getPostgresDatabase(), "db/migration").migrate());
+
+            try (Connection conn = postgres.getPostgresDatabase().getConnection();
+                 Statement stmt = conn.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery(
+                        "SELECT count(*), count(DISTINCT id), count(id) FROM borrowing_view")) {
+                    assertTrue(rs.next());
+                    assertEquals(2, rs.getInt(1));
+                    assertEquals(2, rs.getInt(2));
+                    assertEquals(2, rs.getInt(3));
+                }
+                stmt.execute("INSERT INTO borrowings (book_code, member_id, borrow_date, return_date) "
+                        + "VALUES ('B1', 1, DATE '2023-12-01', DATE '2023-12-05')");
+                try (ResultSet rs = stmt.executeQuery("SELECT max(id) FROM borrowings")) {
+                    assertTrue(rs.next());
+                    assertEquals(3, rs.getLong(1), "new loans continue the sequence after the backfilled ids");
+                }
+            }
+        }
+    }
+
+    private Path migrationDirectory() throws URISyntaxException {
+        return Paths.get(Objects.requireNonNull(getClass().getClassLoader().getResource("db/migration/index.txt"))
+                .toURI()).getParent();
+    }
+}
@@ -0,0 +1,122 @@
+package util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SqlProfilerTest {
+
+    private static final String SELECT_MEMBER = "SELECT 1 FROM members WHERE id = ?";
+
+    private Connection physical;
+    private PreparedStatement prepared;
+    private SqlProfiler.RequestStats stats;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        physical = mock(Connection.class);
+        prepared = mock(PreparedStatement.class);
+        when(physical.prepareStatement(SELECT_MEMBER)).thenReturn(prepared);
+        when(prepared.executeQuery()).thenReturn(mock(ResultSet.class));
+        stats = new SqlProfiler.RequestStats();
+        SqlProfiler.bind(stats);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SqlProfiler.bind(null);
+    }
+
+    @Test
+    void testCountsEachExecutionAgainstTheRequest() throws Exception {
+        Connection connection = SqlProfiler.wrap(physical);
+        for (int id = 1; id <= 3; id++) {
+            try (PreparedStatement stmt = connection.prepareStatement(SELECT_MEMBER)) {
+                stmt.setInt(1, id);
+                stmt.executeQuery();
+            }
+        }
+        connection.commit();
+
+        assertEquals(4, stats.getRoundTrips());
+        assertEquals("3x " + SELECT_MEMBER + "; 1x COMMIT", stats.describeStatements());
+        verify(prepared).setInt(1, 3);
+        verify(physical).commit();
+    }
+
+    @Test
+    void testPlainStatementsAreTimedWithTheirSql() throws Exception {
+        Statement plain = mock(Statement.class);
+        when(physical.createStatement()).thenReturn(plain);
+
+        SqlProfiler.wrap(physical).createStatement().execute("SELECT 1");
+
+        assertEquals("1x SELECT 1", stats.describeStatements());
+        verify(plain).execute("SELECT 1");
+    }
+
+    @Test
+    void testBudgetFlagsRequestsWithTooManyRoundTrips() throws Exception {
+        Connection connection = SqlProfiler.wrap(physical);
+        PreparedStatement stmt = connection.prepareStatement(SELECT_MEMBER);
+        for (int i = 0; i < SqlProfiler.getRequestBudget(); i++) {
+            stmt.executeQuery();
+        }
+        assertFalse(stats.isOverBudget());
+
+        stmt.executeQuery();
+
+        assertTrue(stats.isOverBudget());
+    }
+
+    @Test
+    void testNothingIsChargedWithoutARequest() throws Exception {
+        SqlProfiler.bind(null);
+
+        SqlProfiler.wrap(physical).prepareStatement(SELECT_MEMBER).executeQuery();
+
+        assertEquals(0, stats.getRoundTrips());
+    }
+
+    @Test
+    void testDriverErrorsAndUnwrapPassThrough() throws Exception {
+        PGConnection pg = mock(PGConnection.class);
+        when(physical.unwrap(PGConnection.class)).thenReturn(pg);
+        when(prepared.executeUpdate()).thenThrow(new SQLException("duplicate key", "23505"));
+        Connection connection = SqlProfiler.wrap(physical);
+
+        assertSame(pg, connection.unwrap(PGConnection.class));
+        SQLException e = assertThrows(SQLException.class, () -> connection.prepareStatement(SELECT_MEMBER).executeUpdate());
+        assertEquals("23505", e.getSQLState());
+        assertEquals(1, stats.getRoundTrips());
+    }
+
+    @Test
+    void testCancelStopsTheRunningStatementAndLaterOnes() throws Exception {
+        // The watchdog cancels while the query is on the server.
+        when(prepared.executeQuery()).thenAnswer(invocation -> {
+            assertTrue(stats.cancel());
+            return mock(ResultSet.class);
+        });
+        Connection connection = SqlProfiler.wrap(physical);
+
+        try (PreparedStatement stmt = connection.prepareStatement(SELECT_MEMBER)) {
+            stmt.executeQuery();
+            verify(prepared).cancel();
+            assertThrows(SQLTimeoutException.class, stmt::executeQuery);
+        }
+        assertFalse(stats.cancel());
+        verify(prepared, times(1)).executeQuery();
+    }
+}
@@ -0,0 +1,61 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateTest {
+
+    private static String render(Template template, Map<String, String> values) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(out, values);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testRenderSubstitutesPlaceholders() throws IOException {
+        Template template = Template.compile("t.html", "<h1>${title}</h1><p>${body}</p>");
+
+        assertEquals("<h1>Books</h1><p>ünïcode</p>", render(template, Map.of("title", "Books", "body", "ünïcode")));
+    }
+
+    @Test
+    void testMissingValueRendersEmpty() throws IOException {
+        Template template = Template.compile("t.html", "a${missing}b");
+
+        assertEquals("ab", render(template, Map.of()));
+    }
+
+    @Test
+    void testPlaceholdersInCommentsAreLeftAlone() throws IOException {
+        Template template = Template.compile("t.html", "<!-- ${rows} -->[${rows}]");
+
+        assertEquals("<!-- ${rows} -->[x]", render(template, Map.of("rows", "x")));
+    }
+
+    @Test
+    void testNonPlaceholderBracesAreLiteral() throws IOException {
+        Template template = Template.compile("t.html", "var s = `${a + b}`; ${name}");
+
+        assertEquals("var s = `${a + b}`; n", render(template, Map.of("name", "n")));
+    }
+
+    @Test
+    void testRenderAroundPlaceholder() throws IOException {
+        Template template = Template.compile("t.html", "${messages}<table>${rows}</table>${pagination}");
+        Map<String, String> values = Map.of("messages", "M", "pagination", "P");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        template.renderBefore("rows", out, values);
+        out.write("<tr/>".getBytes(StandardCharsets.UTF_8));
+        template.renderAfter("rows", out, values);
+
+        assertEquals("M<table><tr/></table>P", out.toString(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> template.renderBefore("unknown", out, values));
+    }
+}
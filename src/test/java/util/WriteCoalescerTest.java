@@ -0,0 +1,238 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteCoalescerTest {
+
+    @Test
+    void testSingleRequestGetsItsResult() throws Exception {
+        try (WriteCoalescer<Integer, String> coalescer = new WriteCoalescer<>("test", 8, 1, 5_000, TimeUnit.MILLISECONDS,
+                requests -> requests.stream().map(r -> "row" + r).toList())) {
+
+            assertEquals("row7", coalescer.submit(7));
+            assertEquals(1, coalescer.getBatchCount());
+        }
+    }
+
+    @Test
+    void testConcurrentRequestsShareBatchesAndKeepTheirOwnResults() throws Exception {
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        WriteCoalescer.Batch<Integer, Integer> batch = requests -> {
+            batchSizes.add(requests.size());
+            if (batchSizes.size() == 1) {
+                firstBatchStarted.countDown();
+                awaitQuietly(releaseFirstBatch);
+            }
+            return requests.stream().map(r -> r * 10).toList();
+        };
+
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try (WriteCoalescer<Integer, Integer> coalescer =
+                     new WriteCoalescer<>("test", 4, 50, 5_000, TimeUnit.MILLISECONDS, batch)) {
+            Future<Integer> first = callers.submit(() -> coalescer.submit(0));
+            assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+
+            // These queue up while the first batch is being written.
+            List<Future<Integer>> queued = new ArrayList<>();
+            for (int i = 1; i <= 6; i++) {
+                int request = i;
+                queued.add(callers.submit(() -> coalescer.submit(request)));
+            }
+            while (coalescer.getQueueSize() < 6) {
+                Thread.sleep(5);
+            }
+            releaseFirstBatch.countDown();
+
+            assertEquals(0, first.get(5, TimeUnit.SECONDS));
+            for (int i = 0; i < queued.size(); i++) {
+                assertEquals((i + 1) * 10, queued.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(7, coalescer.getRequestCount());
+            assertEquals(List.of(1, 4, 2), batchSizes);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFailedBatchIsRetriedSoOnlyTheBadRowFails() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        WriteCoalescer.Batch<Integer, Integer> batch = requests -> {
+            batchSizes.add(requests.size());
+            if (batchSizes.size() == 1) {
+                awaitQuietly(release);
+            }
+            if (requests.contains(-1)) {
+                throw new SQLIntegrityConstraintViolationException("negative");
+            }
+            return requests;
+        };
+
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try (WriteCoalescer<Integer, Integer> coalescer =
+                     new WriteCoalescer<>("test", 8, 50, 5_000, TimeUnit.MILLISECONDS, batch)) {
+            Future<Integer> blocker = callers.submit(() -> coalescer.submit(0));
+            while (batchSizes.isEmpty()) {
+                Thread.sleep(5);
+            }
+            Future<Integer> good = callers.submit(() -> coalescer.submit(1));
+            Future<Integer> bad = callers.submit(() -> coalescer.submit(-1));
+            Future<Integer> alsoGood = callers.submit(() -> coalescer.submit(2));
+            while (coalescer.getQueueSize() < 3) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertEquals(0, blocker.get(5, TimeUnit.SECONDS));
+            assertEquals(1, good.get(5, TimeUnit.SECONDS));
+            assertEquals(2, alsoGood.get(5, TimeUnit.SECONDS));
+            Exception e = assertThrows(Exception.class, () -> bad.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(SQLIntegrityConstraintViolationException.class, e.getCause());
+            assertEquals(List.of(1, 3, 1, 1, 1), batchSizes);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSubmitAfterCloseIsRejected() {
+        WriteCoalescer<Integer, Integer> coalescer =
+                new WriteCoalescer<>("test", 8, 1, 5_000, TimeUnit.MILLISECONDS, requests -> requests);
+        coalescer.close();
+
+        assertThrows(IllegalStateException.class, () -> coalescer.submit(1));
+    }
+
+    @Test
+    void testConnectionFailureFailsTheBatchWithoutRetrying() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        WriteCoalescer.Batch<Integer, Integer> batch = requests -> {
+            batchSizes.add(requests.size());
+            if (batchSizes.size() == 1) {
+                awaitQuietly(release);
+                return requests;
+            }
+            throw new SQLTransientConnectionException("connection lost", "08006");
+        };
+
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try (WriteCoalescer<Integer, Integer> coalescer =
+                     new WriteCoalescer<>("test", 8, 50, 5_000, TimeUnit.MILLISECONDS, batch)) {
+            Future<Integer> blocker = callers.submit(() -> coalescer.submit(0));
+            while (batchSizes.isEmpty()) {
+                Thread.sleep(5);
+            }
+            Future<Integer> first = callers.submit(() -> coalescer.submit(1));
+            Future<Integer> second = callers.submit(() -> coalescer.submit(2));
+            while (coalescer.getQueueSize() < 2) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertEquals(0, blocker.get(5, TimeUnit.SECONDS));
+            for (Future<Integer> failed : List.of(first, second)) {
+                Exception e = assertThrows(Exception.class, () -> failed.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(SQLTransientConnectionException.class, e.getCause());
+            }
+            assertEquals(List.of(1, 2), batchSizes);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCallerStopsWaitingAfterTheTimeoutAndLeavesTheQueue() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> written = new CopyOnWriteArrayList<>();
+        WriteCoalescer.Batch<Integer, Integer> batch = requests -> {
+            written.addAll(requests);
+            awaitQuietly(release);
+            return requests;
+        };
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try (WriteCoalescer<Integer, Integer> coalescer =
+                     new WriteCoalescer<>("test", 1, 1, 200, TimeUnit.MILLISECONDS, batch)) {
+            Future<Integer> stuck = callers.submit(() -> coalescer.submit(0));
+            while (written.isEmpty()) {
+                Thread.sleep(5);
+            }
+
+            // Queued behind the hung batch: gives up on its own, and is never written.
+            assertThrows(SQLTimeoutException.class, () -> coalescer.submit(1));
+            assertEquals(0, coalescer.getQueueSize());
+
+            release.countDown();
+            Exception e = assertThrows(Exception.class, () -> stuck.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(SQLTimeoutException.class, e.getCause());
+            assertEquals(List.of(0), written);
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCancellingTheRequestReleasesTheCaller() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        WriteCoalescer.Batch<Integer, Integer> batch = requests -> {
+            awaitQuietly(release);
+            return requests;
+        };
+        SqlProfiler.RequestStats stats = new SqlProfiler.RequestStats();
+
+        ExecutorService callers = Executors.newFixedThreadPool(1);
+        try (WriteCoalescer<Integer, Integer> coalescer =
+                     new WriteCoalescer<>("test", 1, 1, 5_000, TimeUnit.MILLISECONDS, batch)) {
+            Future<Integer> caller = callers.submit(() -> {
+                SqlProfiler.RequestStats previous = SqlProfiler.bind(stats);
+                try {
+                    return coalescer.submit(1);
+                } finally {
+                    SqlProfiler.bind(previous);
+                }
+            });
+            while (coalescer.getRequestCount() == 0) {
+                Thread.sleep(5);
+            }
+
+            long start = System.nanoTime();
+            stats.cancel();
+            Exception e = assertThrows(Exception.class, () -> caller.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(SQLTimeoutException.class, e.getCause());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+            release.countDown();
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) throws SQLException {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new SQLException("test latch not released");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+    }
+}